@@ -0,0 +1,129 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.opensymphony.xwork2.Action;
+import com.opensymphony.xwork2.ActionContext;
+import com.opensymphony.xwork2.ActionSupport;
+import com.opensymphony.xwork2.config.Configuration;
+import com.opensymphony.xwork2.config.ConfigurationManager;
+import com.opensymphony.xwork2.mock.MockActionInvocation;
+import com.opensymphony.xwork2.mock.MockActionProxy;
+import com.opensymphony.xwork2.util.ValueStackFactory;
+import com.opensymphony.xwork2.util.XWorkTestCaseHelper;
+
+/**
+ * Measures going through a whole flow with one interceptor shared between
+ * threads, each thread with its own session. Run with <code>-t 1</code>,
+ * <code>-t 2</code>, ... to see that the time of a flow doesn't grow with the
+ * number of threads.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentFlowBenchmark {
+
+    private ConfigurationManager configurationManager;
+
+    private Configuration configuration;
+
+    private ActionFlowInterceptor interceptor;
+
+    private String namespace;
+
+    @Setup
+    public void setUp() throws Exception {
+        configurationManager = XWorkTestCaseHelper.loadConfigurationProviders(
+                null, new GeneratedFlowPackagesProvider(1));
+        configuration = configurationManager.getConfiguration();
+        namespace = "/" + GeneratedFlowPackagesProvider.PACKAGE_PREFIX + 0;
+
+        interceptor = configuration.getContainer().inject(
+                ActionFlowInterceptor.class);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        XWorkTestCaseHelper.tearDown(configurationManager);
+    }
+
+    /** Session of the benchmark thread. */
+    @State(Scope.Thread)
+    public static class Session {
+        private Map<String, Object> session;
+
+        @Setup
+        public void setUp() {
+            session = new HashMap<String, Object>();
+        }
+    }
+
+    @Benchmark
+    public String flow(final Session thread) throws Exception {
+        thread.session.clear();
+
+        String result = intercept(thread.session, "next");
+        for (int step = 1; step <= GeneratedFlowPackagesProvider.STEPS; step++) {
+            result = intercept(thread.session, "step" + step);
+        }
+        return result;
+    }
+
+    private String intercept(final Map<String, Object> session,
+            final String actionName) throws Exception {
+        final ActionContext context = new ActionContext(
+                new HashMap<String, Object>());
+        context.setName(actionName);
+        context.setSession(session);
+        context.setParameters(new HashMap<String, Object>());
+        context.setValueStack(configuration.getContainer()
+                .getInstance(ValueStackFactory.class).createValueStack());
+
+        final MockActionProxy proxy = new MockActionProxy();
+        proxy.setConfig(configuration.getRuntimeConfiguration()
+                .getActionConfig(namespace, "step1"));
+
+        final MockActionInvocation invocation = new MockActionInvocation();
+        invocation.setInvocationContext(context);
+        invocation.setProxy(proxy);
+        invocation.setAction(new ActionSupport());
+        invocation.setResultCode(Action.SUCCESS);
+
+        return interceptor.intercept(invocation);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.opensymphony.xwork2.config.ConfigurationManager;
+import com.opensymphony.xwork2.util.XWorkTestCaseHelper;
+
+/**
+ * Compares compiling action flows package by package, where each package
+ * rebuilds the runtime configuration, with compiling all of them at once.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class FlowCompilationBenchmark {
+
+    /** Number of the packages with action flows. */
+    @Param({ "10", "100", "1000" })
+    private int packages;
+
+    private ConfigurationManager configurationManager;
+
+    private ActionFlowConfigBuilder flowConfigBuilder;
+
+    private Map<String, ActionFlowInterceptor> flowInterceptors;
+
+    @Setup(Level.Invocation)
+    public void setUp() throws Exception {
+        configurationManager = XWorkTestCaseHelper.loadConfigurationProviders(
+                null, new GeneratedFlowPackagesProvider(packages));
+        flowConfigBuilder = configurationManager.getConfiguration()
+                .getContainer().inject(ActionFlowConfigBuilder.class);
+
+        flowInterceptors = new LinkedHashMap<String, ActionFlowInterceptor>();
+        for (int i = 0; i < packages; i++) {
+            flowInterceptors.put(GeneratedFlowPackagesProvider.PACKAGE_PREFIX
+                    + i, new ActionFlowInterceptor());
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() throws Exception {
+        XWorkTestCaseHelper.tearDown(configurationManager);
+    }
+
+    @Benchmark
+    public ActionFlowConfigBuilder perPackage() {
+        for (String packageName : flowInterceptors.keySet()) {
+            flowConfigBuilder.compileFlow(packageName, "next", "prev", "View",
+                    "execute");
+        }
+        return flowConfigBuilder;
+    }
+
+    @Benchmark
+    public ActionFlowConfigBuilder batched() {
+        flowConfigBuilder.compileFlows(flowInterceptors);
+        return flowConfigBuilder;
+    }
+}
@@ -0,0 +1,534 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow;
+
+import com.opensymphony.xwork2.ActionSupport;
+
+/**
+ * Action with fifty action flow scope fields.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+@ActionFlowScope
+public class FlowScopeAction extends ActionSupport {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Number of the action flow scope fields. */
+    public static final int FIELDS = 50;
+
+    @ActionFlowScope
+    private String field0;
+    @ActionFlowScope
+    private String field1;
+    @ActionFlowScope
+    private String field2;
+    @ActionFlowScope
+    private String field3;
+    @ActionFlowScope
+    private String field4;
+    @ActionFlowScope
+    private String field5;
+    @ActionFlowScope
+    private String field6;
+    @ActionFlowScope
+    private String field7;
+    @ActionFlowScope
+    private String field8;
+    @ActionFlowScope
+    private String field9;
+    @ActionFlowScope
+    private String field10;
+    @ActionFlowScope
+    private String field11;
+    @ActionFlowScope
+    private String field12;
+    @ActionFlowScope
+    private String field13;
+    @ActionFlowScope
+    private String field14;
+    @ActionFlowScope
+    private String field15;
+    @ActionFlowScope
+    private String field16;
+    @ActionFlowScope
+    private String field17;
+    @ActionFlowScope
+    private String field18;
+    @ActionFlowScope
+    private String field19;
+    @ActionFlowScope
+    private String field20;
+    @ActionFlowScope
+    private String field21;
+    @ActionFlowScope
+    private String field22;
+    @ActionFlowScope
+    private String field23;
+    @ActionFlowScope
+    private String field24;
+    @ActionFlowScope
+    private String field25;
+    @ActionFlowScope
+    private String field26;
+    @ActionFlowScope
+    private String field27;
+    @ActionFlowScope
+    private String field28;
+    @ActionFlowScope
+    private String field29;
+    @ActionFlowScope
+    private String field30;
+    @ActionFlowScope
+    private String field31;
+    @ActionFlowScope
+    private String field32;
+    @ActionFlowScope
+    private String field33;
+    @ActionFlowScope
+    private String field34;
+    @ActionFlowScope
+    private String field35;
+    @ActionFlowScope
+    private String field36;
+    @ActionFlowScope
+    private String field37;
+    @ActionFlowScope
+    private String field38;
+    @ActionFlowScope
+    private String field39;
+    @ActionFlowScope
+    private String field40;
+    @ActionFlowScope
+    private String field41;
+    @ActionFlowScope
+    private String field42;
+    @ActionFlowScope
+    private String field43;
+    @ActionFlowScope
+    private String field44;
+    @ActionFlowScope
+    private String field45;
+    @ActionFlowScope
+    private String field46;
+    @ActionFlowScope
+    private String field47;
+    @ActionFlowScope
+    private String field48;
+    @ActionFlowScope
+    private String field49;
+
+    public String getField0() {
+        return field0;
+    }
+
+    public void setField0(String field0) {
+        this.field0 = field0;
+    }
+
+    public String getField1() {
+        return field1;
+    }
+
+    public void setField1(String field1) {
+        this.field1 = field1;
+    }
+
+    public String getField2() {
+        return field2;
+    }
+
+    public void setField2(String field2) {
+        this.field2 = field2;
+    }
+
+    public String getField3() {
+        return field3;
+    }
+
+    public void setField3(String field3) {
+        this.field3 = field3;
+    }
+
+    public String getField4() {
+        return field4;
+    }
+
+    public void setField4(String field4) {
+        this.field4 = field4;
+    }
+
+    public String getField5() {
+        return field5;
+    }
+
+    public void setField5(String field5) {
+        this.field5 = field5;
+    }
+
+    public String getField6() {
+        return field6;
+    }
+
+    public void setField6(String field6) {
+        this.field6 = field6;
+    }
+
+    public String getField7() {
+        return field7;
+    }
+
+    public void setField7(String field7) {
+        this.field7 = field7;
+    }
+
+    public String getField8() {
+        return field8;
+    }
+
+    public void setField8(String field8) {
+        this.field8 = field8;
+    }
+
+    public String getField9() {
+        return field9;
+    }
+
+    public void setField9(String field9) {
+        this.field9 = field9;
+    }
+
+    public String getField10() {
+        return field10;
+    }
+
+    public void setField10(String field10) {
+        this.field10 = field10;
+    }
+
+    public String getField11() {
+        return field11;
+    }
+
+    public void setField11(String field11) {
+        this.field11 = field11;
+    }
+
+    public String getField12() {
+        return field12;
+    }
+
+    public void setField12(String field12) {
+        this.field12 = field12;
+    }
+
+    public String getField13() {
+        return field13;
+    }
+
+    public void setField13(String field13) {
+        this.field13 = field13;
+    }
+
+    public String getField14() {
+        return field14;
+    }
+
+    public void setField14(String field14) {
+        this.field14 = field14;
+    }
+
+    public String getField15() {
+        return field15;
+    }
+
+    public void setField15(String field15) {
+        this.field15 = field15;
+    }
+
+    public String getField16() {
+        return field16;
+    }
+
+    public void setField16(String field16) {
+        this.field16 = field16;
+    }
+
+    public String getField17() {
+        return field17;
+    }
+
+    public void setField17(String field17) {
+        this.field17 = field17;
+    }
+
+    public String getField18() {
+        return field18;
+    }
+
+    public void setField18(String field18) {
+        this.field18 = field18;
+    }
+
+    public String getField19() {
+        return field19;
+    }
+
+    public void setField19(String field19) {
+        this.field19 = field19;
+    }
+
+    public String getField20() {
+        return field20;
+    }
+
+    public void setField20(String field20) {
+        this.field20 = field20;
+    }
+
+    public String getField21() {
+        return field21;
+    }
+
+    public void setField21(String field21) {
+        this.field21 = field21;
+    }
+
+    public String getField22() {
+        return field22;
+    }
+
+    public void setField22(String field22) {
+        this.field22 = field22;
+    }
+
+    public String getField23() {
+        return field23;
+    }
+
+    public void setField23(String field23) {
+        this.field23 = field23;
+    }
+
+    public String getField24() {
+        return field24;
+    }
+
+    public void setField24(String field24) {
+        this.field24 = field24;
+    }
+
+    public String getField25() {
+        return field25;
+    }
+
+    public void setField25(String field25) {
+        this.field25 = field25;
+    }
+
+    public String getField26() {
+        return field26;
+    }
+
+    public void setField26(String field26) {
+        this.field26 = field26;
+    }
+
+    public String getField27() {
+        return field27;
+    }
+
+    public void setField27(String field27) {
+        this.field27 = field27;
+    }
+
+    public String getField28() {
+        return field28;
+    }
+
+    public void setField28(String field28) {
+        this.field28 = field28;
+    }
+
+    public String getField29() {
+        return field29;
+    }
+
+    public void setField29(String field29) {
+        this.field29 = field29;
+    }
+
+    public String getField30() {
+        return field30;
+    }
+
+    public void setField30(String field30) {
+        this.field30 = field30;
+    }
+
+    public String getField31() {
+        return field31;
+    }
+
+    public void setField31(String field31) {
+        this.field31 = field31;
+    }
+
+    public String getField32() {
+        return field32;
+    }
+
+    public void setField32(String field32) {
+        this.field32 = field32;
+    }
+
+    public String getField33() {
+        return field33;
+    }
+
+    public void setField33(String field33) {
+        this.field33 = field33;
+    }
+
+    public String getField34() {
+        return field34;
+    }
+
+    public void setField34(String field34) {
+        this.field34 = field34;
+    }
+
+    public String getField35() {
+        return field35;
+    }
+
+    public void setField35(String field35) {
+        this.field35 = field35;
+    }
+
+    public String getField36() {
+        return field36;
+    }
+
+    public void setField36(String field36) {
+        this.field36 = field36;
+    }
+
+    public String getField37() {
+        return field37;
+    }
+
+    public void setField37(String field37) {
+        this.field37 = field37;
+    }
+
+    public String getField38() {
+        return field38;
+    }
+
+    public void setField38(String field38) {
+        this.field38 = field38;
+    }
+
+    public String getField39() {
+        return field39;
+    }
+
+    public void setField39(String field39) {
+        this.field39 = field39;
+    }
+
+    public String getField40() {
+        return field40;
+    }
+
+    public void setField40(String field40) {
+        this.field40 = field40;
+    }
+
+    public String getField41() {
+        return field41;
+    }
+
+    public void setField41(String field41) {
+        this.field41 = field41;
+    }
+
+    public String getField42() {
+        return field42;
+    }
+
+    public void setField42(String field42) {
+        this.field42 = field42;
+    }
+
+    public String getField43() {
+        return field43;
+    }
+
+    public void setField43(String field43) {
+        this.field43 = field43;
+    }
+
+    public String getField44() {
+        return field44;
+    }
+
+    public void setField44(String field44) {
+        this.field44 = field44;
+    }
+
+    public String getField45() {
+        return field45;
+    }
+
+    public void setField45(String field45) {
+        this.field45 = field45;
+    }
+
+    public String getField46() {
+        return field46;
+    }
+
+    public void setField46(String field46) {
+        this.field46 = field46;
+    }
+
+    public String getField47() {
+        return field47;
+    }
+
+    public void setField47(String field47) {
+        this.field47 = field47;
+    }
+
+    public String getField48() {
+        return field48;
+    }
+
+    public void setField48(String field48) {
+        this.field48 = field48;
+    }
+
+    public String getField49() {
+        return field49;
+    }
+
+    public void setField49(String field49) {
+        this.field49 = field49;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow;
+
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amashchenko.struts2.actionflow.entities.ActionFlowActionConfig;
+import com.amashchenko.struts2.actionflow.entities.ActionFlowConfig;
+import com.amashchenko.struts2.actionflow.entities.ActionFlowState;
+import com.amashchenko.struts2.actionflow.entities.ActionFlowStepConfig;
+import com.opensymphony.xwork2.ActionSupport;
+
+/**
+ * Compares storing and restoring of the action flow scope fields through
+ * reflective {@link Method#invoke(Object, Object...)} calls, as it was before,
+ * with method handles bound when the action flow is compiled and with the
+ * copier generated by the processor. The generated copier always copies all
+ * fifty fields, only the first scopeFields of them have values, so compare it
+ * with fifty fields.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FlowScopeBenchmark {
+
+    /** Number of the action flow scope fields. */
+    @Param({ "1", "10", "50" })
+    private int scopeFields;
+
+    private List<PropertyDescriptor> descriptors;
+
+    private ActionFlowConfig flowConfig;
+
+    private ActionFlowConfig copierFlowConfig;
+
+    private ActionFlowInterceptor interceptor;
+
+    private FlowScopeAction action;
+
+    private ActionFlowState state;
+
+    private ActionFlowState copierState;
+
+    @Setup
+    public void setUp() throws Exception {
+        descriptors = new ArrayList<PropertyDescriptor>();
+        for (PropertyDescriptor pd : Introspector.getBeanInfo(
+                FlowScopeAction.class, ActionSupport.class)
+                .getPropertyDescriptors()) {
+            if (descriptors.size() < scopeFields) {
+                descriptors.add(pd);
+            }
+        }
+
+        final Map<String, List<PropertyDescriptor>> flowScopeFields = new HashMap<String, List<PropertyDescriptor>>();
+        flowScopeFields.put(FlowScopeAction.class.getName(), descriptors);
+        flowConfig = new ActionFlowConfig(
+                new HashMap<String, ActionFlowStepConfig>(), flowScopeFields,
+                null, new HashMap<String, ActionFlowActionConfig>());
+
+        interceptor = new ActionFlowInterceptor();
+
+        final Map<String, ActionFlowScopeCopier> copiers = new HashMap<String, ActionFlowScopeCopier>();
+        copiers.put(FlowScopeAction.class.getName(),
+                new FlowScopeAction_ActionFlowScopeCopier());
+        copierFlowConfig = new ActionFlowConfig(
+                new HashMap<String, ActionFlowStepConfig>(),
+                new HashMap<String, List<PropertyDescriptor>>(), copiers,
+                null, new HashMap<String, ActionFlowActionConfig>());
+
+        action = new FlowScopeAction();
+        state = new ActionFlowState();
+        for (PropertyDescriptor pd : descriptors) {
+            pd.getWriteMethod().invoke(action, "value");
+            state.setScopeValue(
+                    flowConfig.getScopeOrdinal(pd.getReadMethod()), "value");
+        }
+        copierState = new ActionFlowState();
+        interceptor.handleFlowScope(copierFlowConfig, action,
+                copierState, false);
+    }
+
+    @Benchmark
+    public ActionFlowState reflectionStore() throws Exception {
+        reflectionHandleFlowScope(action, state, false);
+        return state;
+    }
+
+    @Benchmark
+    public ActionFlowState methodHandleStore() throws Exception {
+        interceptor.handleFlowScope(flowConfig, action, state, false);
+        return state;
+    }
+
+    @Benchmark
+    public ActionFlowState copierStore() throws Exception {
+        interceptor.handleFlowScope(copierFlowConfig, action,
+                copierState, false);
+        return copierState;
+    }
+
+    @Benchmark
+    public FlowScopeAction reflectionRestore() throws Exception {
+        final FlowScopeAction restored = new FlowScopeAction();
+        reflectionHandleFlowScope(restored, state, true);
+        return restored;
+    }
+
+    @Benchmark
+    public FlowScopeAction methodHandleRestore() throws Exception {
+        final FlowScopeAction restored = new FlowScopeAction();
+        interceptor.handleFlowScope(flowConfig, restored, state, true);
+        return restored;
+    }
+
+    @Benchmark
+    public FlowScopeAction copierRestore() throws Exception {
+        final FlowScopeAction restored = new FlowScopeAction();
+        interceptor.handleFlowScope(copierFlowConfig, restored,
+                copierState, true);
+        return restored;
+    }
+
+    /** The previous reflective implementation of handleFlowScope. */
+    private void reflectionHandleFlowScope(final Object action,
+            final ActionFlowState state, final boolean fromFlowScope)
+            throws Exception {
+        for (PropertyDescriptor pd : descriptors) {
+            final Method getter = pd.getReadMethod();
+            if (getter != null) {
+                final Object val = getter.invoke(action);
+                final int ordinal = flowConfig.getScopeOrdinal(getter);
+
+                if (fromFlowScope) {
+                    final Object scopeVal = state.getScopeValue(ordinal);
+                    if (val == null && scopeVal != null) {
+                        final Method setter = pd.getWriteMethod();
+                        if (setter != null) {
+                            setter.invoke(action, scopeVal);
+                        }
+                    }
+                } else if (val != null) {
+                    state.setScopeValue(ordinal, val);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amashchenko.struts2.actionflow.entities.ActionFlowState;
+
+/**
+ * Compares serialization of the action flow state held in five session
+ * attributes with string keys, as it was before, with the compact external
+ * form of {@link ActionFlowState}. Session attributes are written as name and
+ * value pairs, the same way servlet containers do it. Serialized sizes are
+ * printed on setup.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FlowStateSerializationBenchmark {
+
+    /** Number of the action flow scope fields. */
+    @Param({ "1", "10" })
+    private int scopeFields;
+
+    /** Session attributes of the previous layout. */
+    private Map<String, Object> legacyAttributes;
+
+    /** Session attributes of the single flow state. */
+    private Map<String, Object> stateAttributes;
+
+    private byte[] legacyBytes;
+
+    private byte[] stateBytes;
+
+    @Setup
+    public void setUp() throws Exception {
+        // the middle of ten steps wizard with one skipped step
+        final Map<String, String> skipActions = new HashMap<String, String>();
+        skipActions.put("saveStep6", "saveStep4");
+        final Map<String, Object> scope = new HashMap<String, Object>();
+
+        final ActionFlowState state = new ActionFlowState();
+        state.setPreviousAction(5);
+        state.setHighestCurrentIndex(5);
+        state.setSkipAction(6, 4);
+
+        for (int i = 0; i < scopeFields; i++) {
+            final String value = "value" + i;
+            scope.put("public java.lang.String com.example.wizard.WizardAction.getField"
+                    + i + "()", value);
+            state.setScopeValue(i, value);
+        }
+
+        legacyAttributes = new LinkedHashMap<String, Object>();
+        legacyAttributes.put("actionFlowPreviousAction", "saveStep5");
+        legacyAttributes.put("actionFlowHighestCurrentActionIndex",
+                Integer.valueOf(5));
+        legacyAttributes.put("actionFlowSkipActionsMap", skipActions);
+        legacyAttributes.put("actionFlowOverrideActionName", null);
+        legacyAttributes.put("actionFlowScope", scope);
+
+        stateAttributes = new LinkedHashMap<String, Object>();
+        stateAttributes.put("actionFlowState", state);
+
+        legacyBytes = write(legacyAttributes);
+        stateBytes = write(stateAttributes);
+
+        System.out.println();
+        System.out.println("Serialized size with " + scopeFields
+                + " scope field(s), legacy: " + legacyBytes.length
+                + " bytes, flow state: " + stateBytes.length + " bytes.");
+    }
+
+    @Benchmark
+    public byte[] legacySerialize() throws IOException {
+        return write(legacyAttributes);
+    }
+
+    @Benchmark
+    public byte[] stateSerialize() throws IOException {
+        return write(stateAttributes);
+    }
+
+    @Benchmark
+    public Map<String, Object> legacyDeserialize() throws Exception {
+        return read(legacyBytes, legacyAttributes.size());
+    }
+
+    @Benchmark
+    public Map<String, Object> stateDeserialize() throws Exception {
+        return read(stateBytes, stateAttributes.size());
+    }
+
+    private static byte[] write(final Map<String, Object> attributes)
+            throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(bytes);
+        for (Entry<String, Object> entry : attributes.entrySet()) {
+            out.writeObject(entry.getKey());
+            out.writeObject(entry.getValue());
+        }
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static Map<String, Object> read(final byte[] bytes,
+            final int count) throws Exception {
+        final Map<String, Object> attributes = new HashMap<String, Object>();
+        final ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(bytes));
+        for (int i = 0; i < count; i++) {
+            attributes.put((String) in.readObject(), in.readObject());
+        }
+        in.close();
+        return attributes;
+    }
+}
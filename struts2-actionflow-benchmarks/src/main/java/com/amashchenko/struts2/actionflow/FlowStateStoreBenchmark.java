@@ -0,0 +1,135 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amashchenko.struts2.actionflow.entities.ActionFlowState;
+
+/**
+ * Compares action flow state stores under concurrent load. Every thread plays
+ * several users, each operation loads the state of the next user, changes it
+ * and stores it back, as a flow step does.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class FlowStateStoreBenchmark {
+
+    /** Key of the action flow state. */
+    private static final String FLOW_STATE_KEY = "actionFlowState";
+
+    /** Number of users played by each thread. */
+    private static final int USERS_PER_THREAD = 64;
+
+    @Param({ SessionActionFlowStateStore.NAME, MemoryActionFlowStateStore.NAME,
+            FileActionFlowStateStore.NAME })
+    public String store;
+
+    private ActionFlowStateStore stateStore;
+
+    private File directory;
+
+    @Setup
+    public void setUp() throws Exception {
+        if (MemoryActionFlowStateStore.NAME.equals(store)) {
+            stateStore = new MemoryActionFlowStateStore();
+        } else if (FileActionFlowStateStore.NAME.equals(store)) {
+            directory = File.createTempFile("actionflow", "");
+            directory.delete();
+            final FileActionFlowStateStore fileStore = new FileActionFlowStateStore();
+            fileStore.setDirectory(directory.getAbsolutePath());
+            stateStore = fileStore;
+        } else {
+            stateStore = new SessionActionFlowStateStore();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        if (directory != null) {
+            final File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            directory.delete();
+        }
+    }
+
+    @Benchmark
+    public ActionFlowState loadAndStore(final Users users) throws Exception {
+        final Map<String, Object> session = users.next();
+
+        ActionFlowState state = stateStore.load(session, FLOW_STATE_KEY);
+        if (state == null) {
+            state = new ActionFlowState();
+            state.setScopeValue(0, "name");
+            state.setScopeValue(1, "phone");
+        }
+        state.setPreviousAction(state.getPreviousAction() + 1);
+        stateStore.store(session, FLOW_STATE_KEY, state);
+
+        return state;
+    }
+
+    /**
+     * Sessions of users played by one thread.
+     */
+    @State(Scope.Thread)
+    public static class Users {
+        private final Map<?, ?>[] sessions = new Map<?, ?>[USERS_PER_THREAD];
+        private int current;
+
+        @Setup
+        public void setUp() {
+            for (int i = 0; i < sessions.length; i++) {
+                sessions[i] = new HashMap<String, Object>();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> next() {
+            current = (current + 1) % sessions.length;
+            return (Map<String, Object>) sessions[current];
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amashchenko.struts2.actionflow.entities.ActionFlowState;
+
+/**
+ * Measures encoding and decoding of the signed action flow state token used by
+ * {@link TokenActionFlowStateStore}. Token sizes are printed on setup.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FlowStateTokenBenchmark {
+
+    /** Key of the action flow state the token is issued for. */
+    private static final String KEY = "actionFlowState.flow";
+
+    /** Number of the action flow scope fields. */
+    @Param({ "0", "10" })
+    private int scopeFields;
+
+    /** Whether to deflate the state. */
+    @Param({ "false", "true" })
+    private boolean compress;
+
+    private ActionFlowStateTokenCodec codec;
+
+    private ActionFlowState state;
+
+    private String token;
+
+    @Setup
+    public void setUp() throws Exception {
+        codec = new ActionFlowStateTokenCodec("benchmark-secret".getBytes(),
+                compress, true);
+
+        // the middle of ten steps wizard with one skipped step
+        state = new ActionFlowState();
+        state.setPreviousAction(5);
+        state.setHighestCurrentIndex(5);
+        state.setSkipAction(6, 4);
+        for (int i = 0; i < scopeFields; i++) {
+            state.setScopeValue(i, "value" + i);
+        }
+
+        token = codec.encode(KEY, state);
+
+        System.out.println();
+        System.out.println("Token size with " + scopeFields
+                + " scope field(s), compress " + compress + ": "
+                + token.length() + " characters.");
+    }
+
+    @Benchmark
+    public String encode() {
+        return codec.encode(KEY, state);
+    }
+
+    @Benchmark
+    public ActionFlowState decode() {
+        return codec.decode(KEY, token);
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amashchenko.struts2.actionflow.entities.ActionFlowState;
+import com.opensymphony.xwork2.Action;
+import com.opensymphony.xwork2.ActionContext;
+import com.opensymphony.xwork2.ActionSupport;
+import com.opensymphony.xwork2.config.Configuration;
+import com.opensymphony.xwork2.config.ConfigurationManager;
+import com.opensymphony.xwork2.interceptor.PreResultListener;
+import com.opensymphony.xwork2.mock.MockActionInvocation;
+import com.opensymphony.xwork2.mock.MockActionProxy;
+import com.opensymphony.xwork2.util.ValueStackFactory;
+import com.opensymphony.xwork2.util.XWorkTestCaseHelper;
+
+/**
+ * Measures transition from the first flow step to the view action of the
+ * second one. Run with <code>-prof gc</code> to see allocations of the
+ * interceptor, the invocation used here doesn't allocate anything.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FlowTransitionBenchmark {
+
+    /** Prefix of the session key of the action flow state. */
+    private static final String FLOW_STATE_KEY = "actionFlowState";
+
+    private ConfigurationManager configurationManager;
+
+    private ActionFlowInterceptor interceptor;
+
+    private ReusableActionInvocation invocation;
+
+    private Map<String, Object> session;
+
+    private String stateKey;
+
+    @Setup
+    public void setUp() throws Exception {
+        configurationManager = XWorkTestCaseHelper.loadConfigurationProviders(
+                null, new GeneratedFlowPackagesProvider(1));
+        final Configuration configuration = configurationManager
+                .getConfiguration();
+        final String packageName = GeneratedFlowPackagesProvider.PACKAGE_PREFIX + 0;
+        stateKey = FLOW_STATE_KEY + "." + packageName;
+
+        interceptor = configuration.getContainer().inject(
+                ActionFlowInterceptor.class);
+
+        session = new HashMap<String, Object>();
+
+        final ActionContext context = new ActionContext(
+                new HashMap<String, Object>());
+        context.setName("step1");
+        context.setSession(session);
+        context.setParameters(new HashMap<String, Object>());
+        context.setValueStack(configuration.getContainer()
+                .getInstance(ValueStackFactory.class).createValueStack());
+
+        final MockActionProxy proxy = new MockActionProxy();
+        proxy.setConfig(configuration.getRuntimeConfiguration()
+                .getActionConfig("/" + packageName, "step1"));
+
+        invocation = new ReusableActionInvocation();
+        invocation.setInvocationContext(context);
+        invocation.setProxy(proxy);
+        invocation.setAction(new ActionSupport());
+
+        // compile action flow and fill session
+        transition();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        XWorkTestCaseHelper.tearDown(configurationManager);
+    }
+
+    @Benchmark
+    public String transition() throws Exception {
+        // back to the beginning of the flow
+        final ActionFlowState state = (ActionFlowState) session
+                .get(stateKey);
+        if (state != null) {
+            state.setPreviousAction(ActionFlowState.NO_ACTION);
+        }
+        invocation.setResultCode(Action.SUCCESS);
+
+        return interceptor.intercept(invocation);
+    }
+
+    /**
+     * Action invocation which can be invoked many times without allocations.
+     */
+    private static class ReusableActionInvocation extends
+            MockActionInvocation {
+        private PreResultListener listener;
+
+        /** {@inheritDoc} */
+        @Override
+        public void addPreResultListener(PreResultListener listener) {
+            this.listener = listener;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String invoke() throws Exception {
+            if (listener != null) {
+                listener.beforeResult(this, getResultCode());
+                listener = null;
+            }
+            return getResultCode();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow;
+
+import com.opensymphony.xwork2.Action;
+import com.opensymphony.xwork2.ActionSupport;
+import com.opensymphony.xwork2.config.Configuration;
+import com.opensymphony.xwork2.config.ConfigurationException;
+import com.opensymphony.xwork2.config.ConfigurationProvider;
+import com.opensymphony.xwork2.config.entities.ActionConfig;
+import com.opensymphony.xwork2.config.entities.PackageConfig;
+import com.opensymphony.xwork2.config.entities.ResultConfig;
+import com.opensymphony.xwork2.inject.ContainerBuilder;
+import com.opensymphony.xwork2.inject.Scope;
+import com.opensymphony.xwork2.util.location.LocatableProperties;
+
+/**
+ * Configuration provider generating given number of packages with action
+ * flows. Packages are named <code>flow0</code>, <code>flow1</code>, etc.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+public class GeneratedFlowPackagesProvider implements ConfigurationProvider {
+
+    /** Prefix of the generated package names and namespaces. */
+    public static final String PACKAGE_PREFIX = "flow";
+
+    /** Number of the action flow steps in each package. */
+    public static final int STEPS = 3;
+
+    /** Number of the packages to generate. */
+    private final int packages;
+
+    /** XWork configuration. */
+    private Configuration configuration;
+
+    /**
+     * @param packages
+     *            Number of the packages to generate.
+     */
+    public GeneratedFlowPackagesProvider(final int packages) {
+        this.packages = packages;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void destroy() {
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void init(Configuration configuration)
+            throws ConfigurationException {
+        this.configuration = configuration;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean needsReload() {
+        return false;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void register(ContainerBuilder builder, LocatableProperties props)
+            throws ConfigurationException {
+        builder.factory(ActionFlowConfigBuilder.class, Scope.SINGLETON);
+        builder.factory(ActionFlowStateReaper.class, Scope.SINGLETON);
+        builder.factory(ActionFlowStateStore.class,
+                SessionActionFlowStateStore.NAME,
+                SessionActionFlowStateStore.class, Scope.SINGLETON);
+        builder.factory(ActionFlowStateStore.class,
+                MemoryActionFlowStateStore.NAME,
+                MemoryActionFlowStateStore.class, Scope.SINGLETON);
+        builder.factory(ActionFlowStateStore.class,
+                FileActionFlowStateStore.NAME, FileActionFlowStateStore.class,
+                Scope.SINGLETON);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void loadPackages() throws ConfigurationException {
+        for (int i = 0; i < packages; i++) {
+            final String packageName = PACKAGE_PREFIX + i;
+            final PackageConfig.Builder pcb = new PackageConfig.Builder(
+                    packageName).namespace("/" + packageName)
+                    .defaultClassRef(ActionSupport.class.getName());
+
+            for (int step = 1; step <= STEPS; step++) {
+                final ResultConfig input = new ResultConfig.Builder(
+                        Action.INPUT, "dummyResult").build();
+                final ActionConfig actionConfig = new ActionConfig.Builder(
+                        packageName, "step" + step,
+                        ActionSupport.class.getName())
+                        .addParam("actionFlowStep", String.valueOf(step))
+                        .addResultConfig(input).build();
+                pcb.addActionConfig(actionConfig.getName(), actionConfig);
+            }
+
+            configuration.addPackageConfig(packageName, pcb.build());
+        }
+    }
+}
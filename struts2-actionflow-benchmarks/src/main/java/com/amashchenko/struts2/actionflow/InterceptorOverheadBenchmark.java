@@ -0,0 +1,119 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.opensymphony.xwork2.Action;
+import com.opensymphony.xwork2.ActionContext;
+import com.opensymphony.xwork2.ActionSupport;
+import com.opensymphony.xwork2.config.Configuration;
+import com.opensymphony.xwork2.config.ConfigurationManager;
+import com.opensymphony.xwork2.mock.MockActionInvocation;
+import com.opensymphony.xwork2.mock.MockActionProxy;
+import com.opensymphony.xwork2.util.XWorkTestCaseHelper;
+
+/**
+ * Measures overhead of the action flow interceptor on an action which has no
+ * role in action flow compared to invoking the action without it.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InterceptorOverheadBenchmark {
+
+    private ConfigurationManager configurationManager;
+
+    private ActionFlowInterceptor interceptor;
+
+    private ActionFlowInterceptor bypassInterceptor;
+
+    private MockActionInvocation invocation;
+
+    @Setup
+    public void setUp() throws Exception {
+        configurationManager = XWorkTestCaseHelper.loadConfigurationProviders(
+                null, new GeneratedFlowPackagesProvider(1));
+        final Configuration configuration = configurationManager
+                .getConfiguration();
+        final String packageName = GeneratedFlowPackagesProvider.PACKAGE_PREFIX + 0;
+
+        interceptor = configuration.getContainer().inject(
+                ActionFlowInterceptor.class);
+        bypassInterceptor = configuration.getContainer().inject(
+                ActionFlowInterceptor.class);
+        bypassInterceptor.setBypassNonFlowActions("true");
+
+        final ActionContext context = new ActionContext(
+                new HashMap<String, Object>());
+        context.setName("index");
+        context.setSession(new HashMap<String, Object>());
+        context.setParameters(new HashMap<String, Object>());
+
+        final MockActionProxy proxy = new MockActionProxy();
+        proxy.setConfig(configuration.getRuntimeConfiguration()
+                .getActionConfig("/" + packageName, "step1"));
+
+        invocation = new MockActionInvocation();
+        invocation.setInvocationContext(context);
+        invocation.setProxy(proxy);
+        invocation.setAction(new ActionSupport());
+        invocation.setResultCode(Action.SUCCESS);
+
+        // compile action flow
+        interceptor.intercept(invocation);
+        bypassInterceptor.intercept(invocation);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        XWorkTestCaseHelper.tearDown(configurationManager);
+    }
+
+    @Benchmark
+    public String bareStack() throws Exception {
+        return invocation.invoke();
+    }
+
+    @Benchmark
+    public String interceptor() throws Exception {
+        return interceptor.intercept(invocation);
+    }
+
+    @Benchmark
+    public String bypassInterceptor() throws Exception {
+        return bypassInterceptor.intercept(invocation);
+    }
+}
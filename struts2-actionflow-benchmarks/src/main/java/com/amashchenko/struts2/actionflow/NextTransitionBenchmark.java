@@ -0,0 +1,128 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpSession;
+
+import org.apache.struts2.dispatcher.Dispatcher;
+import org.apache.struts2.util.StrutsTestCaseHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.mock.web.MockServletContext;
+
+import com.amashchenko.struts2.actionflow.entities.ActionFlowState;
+import com.opensymphony.xwork2.ActionProxyFactory;
+
+/**
+ * Measures the 'next' action executing the first flow action through the
+ * whole Struts2 stack, with its <code>chain</code> result and with the
+ * <code>directNext</code> interceptor parameter. Spring servlet mocks stand in
+ * for the servlet container.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NextTransitionBenchmark {
+
+    /** Prefix of the session key of the action flow state. */
+    private static final String FLOW_STATE_KEY = "actionFlowState";
+
+    private MockServletContext servletContext;
+
+    private Dispatcher dispatcher;
+
+    private ActionProxyFactory actionProxyFactory;
+
+    private HttpSession chainSession;
+
+    private HttpSession directSession;
+
+    @Setup
+    public void setUp() throws Exception {
+        servletContext = new MockServletContext();
+
+        final Map<String, String> params = new HashMap<String, String>();
+        params.put("config",
+                "struts-default.xml,struts-plugin.xml,struts-benchmark.xml");
+        dispatcher = StrutsTestCaseHelper.initDispatcher(servletContext,
+                params);
+        actionProxyFactory = dispatcher.getContainer().getInstance(
+                ActionProxyFactory.class);
+
+        chainSession = new MockHttpSession(servletContext);
+        directSession = new MockHttpSession(servletContext);
+
+        // compile action flows and fill sessions
+        chain();
+        direct();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        StrutsTestCaseHelper.tearDown();
+    }
+
+    @Benchmark
+    public String chain() throws Exception {
+        return next("/chainFlow", chainSession);
+    }
+
+    @Benchmark
+    public String direct() throws Exception {
+        return next("/directFlow", directSession);
+    }
+
+    private String next(final String namespace, final HttpSession session)
+            throws Exception {
+        // back to the beginning of the flow
+        final ActionFlowState state = (ActionFlowState) session
+                .getAttribute(FLOW_STATE_KEY + namespace.replace('/', '.'));
+        if (state != null) {
+            state.setPreviousAction(ActionFlowState.NO_ACTION);
+        }
+
+        final MockHttpServletRequest request = new MockHttpServletRequest(
+                servletContext);
+        request.setSession(session);
+        final Map<String, Object> extraContext = dispatcher.createContextMap(
+                request, new MockHttpServletResponse(), null, servletContext);
+
+        return actionProxyFactory.createActionProxy(namespace, "next", null,
+                extraContext).execute();
+    }
+}
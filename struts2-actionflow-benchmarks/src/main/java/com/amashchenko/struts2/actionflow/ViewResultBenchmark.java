@@ -0,0 +1,169 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.struts2.StrutsStatics;
+import org.apache.struts2.dispatcher.Dispatcher;
+import org.apache.struts2.util.StrutsTestCaseHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+
+import com.opensymphony.xwork2.ActionContext;
+import com.opensymphony.xwork2.ActionSupport;
+import com.opensymphony.xwork2.ObjectFactory;
+import com.opensymphony.xwork2.config.RuntimeConfiguration;
+import com.opensymphony.xwork2.config.entities.ActionConfig;
+import com.opensymphony.xwork2.mock.MockActionInvocation;
+import com.opensymphony.xwork2.mock.MockActionProxy;
+import com.opensymphony.xwork2.util.ValueStack;
+import com.opensymphony.xwork2.util.ValueStackFactory;
+
+/**
+ * Measures redirect of the flow action to the view action of the next step
+ * with the generated <code>redirectAction</code> result and with
+ * {@link ActionFlowViewResult}. Each operation builds and executes the result
+ * like the action invocation does. Spring servlet mocks stand in for the
+ * servlet container.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ViewResultBenchmark {
+
+    private MockServletContext servletContext;
+
+    private Dispatcher dispatcher;
+
+    private ObjectFactory objectFactory;
+
+    private ValueStackFactory valueStackFactory;
+
+    private ActionConfig redirectActionConfig;
+
+    private ActionConfig viewActionConfig;
+
+    private String viewUri;
+
+    @Setup
+    public void setUp() throws Exception {
+        servletContext = new MockServletContext();
+
+        final Map<String, String> params = new HashMap<String, String>();
+        params.put("config",
+                "struts-default.xml,struts-plugin.xml,struts-benchmark.xml");
+        dispatcher = StrutsTestCaseHelper.initDispatcher(servletContext,
+                params);
+        objectFactory = dispatcher.getContainer().getInstance(
+                ObjectFactory.class);
+        valueStackFactory = dispatcher.getContainer().getInstance(
+                ValueStackFactory.class);
+
+        final RuntimeConfiguration runtimeConfiguration = dispatcher
+                .getConfigurationManager().getConfiguration()
+                .getRuntimeConfiguration();
+        redirectActionConfig = runtimeConfiguration.getActionConfig(
+                "/chainFlow", "step1");
+        viewActionConfig = runtimeConfiguration.getActionConfig("/viewFlow",
+                "step1");
+
+        // precompiled on startup
+        viewUri = dispatcher.getContainer()
+                .getInstance(ActionFlowConfigBuilder.class)
+                .getCompiledFlow("viewFlow").getFlowMap().get("step2")
+                .getViewUri();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        StrutsTestCaseHelper.tearDown();
+    }
+
+    @Benchmark
+    public String redirectAction() throws Exception {
+        final MockActionInvocation invocation = createInvocation(redirectActionConfig);
+        invocation.getStack().set(ActionFlowInterceptor.VIEW_ACTION_PARAM,
+                "step2View");
+        return execute(invocation);
+    }
+
+    @Benchmark
+    public String actionFlowView() throws Exception {
+        final MockActionInvocation invocation = createInvocation(viewActionConfig);
+        invocation.getInvocationContext().put(
+                ActionFlowInterceptor.VIEW_URI_KEY, viewUri);
+        return execute(invocation);
+    }
+
+    private MockActionInvocation createInvocation(
+            final ActionConfig actionConfig) {
+        final ValueStack stack = valueStackFactory.createValueStack();
+        stack.getContext().putAll(
+                dispatcher.createContextMap(new MockHttpServletRequest(
+                        servletContext), new MockHttpServletResponse(), null,
+                        servletContext));
+        final ActionContext context = new ActionContext(stack.getContext());
+        ActionContext.setContext(context);
+
+        final MockActionProxy proxy = new MockActionProxy();
+        proxy.setConfig(actionConfig);
+        proxy.setNamespace("/" + actionConfig.getPackageName());
+
+        final ActionSupport action = new ActionSupport();
+        stack.push(action);
+
+        final MockActionInvocation invocation = new MockActionInvocation();
+        invocation.setInvocationContext(context);
+        invocation.setStack(stack);
+        invocation.setProxy(proxy);
+        invocation.setAction(action);
+        invocation.setResultCode(ActionFlowInterceptor.GLOBAL_VIEW_RESULT);
+        return invocation;
+    }
+
+    private String execute(final MockActionInvocation invocation)
+            throws Exception {
+        objectFactory.buildResult(
+                invocation.getProxy().getConfig().getResults()
+                        .get(ActionFlowInterceptor.GLOBAL_VIEW_RESULT),
+                invocation.getInvocationContext().getContextMap()).execute(
+                invocation);
+        return ((MockHttpServletResponse) invocation.getInvocationContext()
+                .get(StrutsStatics.HTTP_RESPONSE))
+                .getRedirectedUrl();
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpSession;
+
+import org.apache.struts2.dispatcher.Dispatcher;
+import org.apache.struts2.dispatcher.mapper.ActionMapper;
+import org.apache.struts2.util.StrutsTestCaseHelper;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.mock.web.MockServletContext;
+
+import com.opensymphony.xwork2.ActionContext;
+
+/**
+ * Load test completing wizards with redirected and with forwarded
+ * (<code>forwardView</code> interceptor parameter) view actions. Each user
+ * starts the wizard and submits all its steps, following redirects like a
+ * browser does. Prints number of requests per completed wizard and latency
+ * percentiles of the steps, from the submit to the rendered page. Spring
+ * servlet mocks stand in for the servlet container.
+ * 
+ * <pre>
+ * java -cp benchmarks.jar com.amashchenko.struts2.actionflow.WizardLoadTest [users] [wizards per user]
+ * </pre>
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+public class WizardLoadTest {
+
+    /** Page rendered by the last flow action. */
+    private static final String FINISH_PAGE = "finish";
+
+    private final MockServletContext servletContext;
+
+    private final Dispatcher dispatcher;
+
+    private final ActionMapper actionMapper;
+
+    /**
+     * Initializes dispatcher with the benchmark configuration.
+     */
+    public WizardLoadTest() {
+        servletContext = new MockServletContext();
+
+        final Map<String, String> params = new HashMap<String, String>();
+        params.put("config",
+                "struts-default.xml,struts-plugin.xml,struts-benchmark.xml");
+        dispatcher = StrutsTestCaseHelper.initDispatcher(servletContext,
+                params);
+        actionMapper = dispatcher.getContainer()
+                .getInstance(ActionMapper.class);
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int users = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        final int wizards = args.length > 1 ? Integer.parseInt(args[1])
+                : 2000;
+
+        final WizardLoadTest test = new WizardLoadTest();
+        try {
+            for (String namespace : new String[] { "/redirectWizard",
+                    "/forwardWizard" }) {
+                // warmup
+                test.run(namespace, users, wizards);
+                test.run(namespace, users, wizards).print(namespace);
+            }
+        } finally {
+            StrutsTestCaseHelper.tearDown();
+        }
+    }
+
+    /**
+     * Completes wizards of the given namespace concurrently.
+     * 
+     * @param namespace
+     *            Namespace of the wizard.
+     * @param users
+     *            Number of the concurrent users.
+     * @param wizards
+     *            Number of the wizards each user completes.
+     * @return Statistics of the run.
+     * @throws Exception
+     *             when a wizard isn't completed.
+     */
+    Stats run(final String namespace, final int users, final int wizards)
+            throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(users);
+        try {
+            final List<Future<Stats>> futures = new ArrayList<Future<Stats>>();
+            for (int i = 0; i < users; i++) {
+                futures.add(executor.submit(new Callable<Stats>() {
+                    @Override
+                    public Stats call() throws Exception {
+                        Dispatcher.setInstance(dispatcher);
+                        final Stats stats = new Stats(wizards
+                                * GeneratedFlowPackagesProvider.STEPS);
+                        for (int w = 0; w < wizards; w++) {
+                            completeWizard(namespace, stats);
+                        }
+                        return stats;
+                    }
+                }));
+            }
+
+            final Stats total = new Stats(users * wizards
+                    * GeneratedFlowPackagesProvider.STEPS);
+            for (Future<Stats> future : futures) {
+                total.add(future.get());
+            }
+            return total;
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    private void completeWizard(final String namespace, final Stats stats)
+            throws Exception {
+        final HttpSession session = new MockHttpSession(servletContext);
+
+        MockHttpServletResponse response = request(session, "GET", namespace
+                + "/start.action", stats);
+
+        for (int step = 0; step < GeneratedFlowPackagesProvider.STEPS; step++) {
+            final long start = System.nanoTime();
+            response = request(session, "POST", namespace + "/next.action",
+                    stats);
+            stats.latencies[stats.steps++] = System.nanoTime() - start;
+        }
+
+        if (!FINISH_PAGE.equals(response.getForwardedUrl())) {
+            throw new IllegalStateException("Wizard of " + namespace
+                    + " isn't completed, the last page is "
+                    + response.getForwardedUrl());
+        }
+        stats.wizards++;
+    }
+
+    /**
+     * Executes request following redirects.
+     * 
+     * @return Response of the last request, i.e. the rendered page.
+     */
+    private MockHttpServletResponse request(final HttpSession session,
+            final String method, final String uri, final Stats stats)
+            throws Exception {
+        String location = uri;
+        String requestMethod = method;
+        while (true) {
+            final MockHttpServletRequest request = new MockHttpServletRequest(
+                    servletContext, requestMethod, location);
+            request.setServletPath(location);
+            request.setSession(session);
+            final MockHttpServletResponse response = new MockHttpServletResponse();
+
+            dispatcher.serviceAction(request, response,
+                    actionMapper.getMapping(request,
+                            dispatcher.getConfigurationManager()));
+            // like the filter does after each request
+            ActionContext.setContext(null);
+            stats.requests++;
+
+            if (response.getRedirectedUrl() == null) {
+                return response;
+            }
+            location = response.getRedirectedUrl();
+            final int query = location.indexOf('?');
+            if (query != -1) {
+                location = location.substring(0, query);
+            }
+            requestMethod = "GET";
+        }
+    }
+
+    /**
+     * Statistics of completed wizards.
+     */
+    static class Stats {
+        private final long[] latencies;
+        private int steps;
+        private int wizards;
+        private long requests;
+
+        Stats(final int maxSteps) {
+            latencies = new long[maxSteps];
+        }
+
+        void add(final Stats stats) {
+            System.arraycopy(stats.latencies, 0, latencies, steps,
+                    stats.steps);
+            steps += stats.steps;
+            wizards += stats.wizards;
+            requests += stats.requests;
+        }
+
+        long percentile(final long[] sorted, final double percentile) {
+            return sorted[Math.max(0,
+                    (int) Math.ceil(percentile * sorted.length) - 1)];
+        }
+
+        void print(final String namespace) {
+            final long[] sorted = Arrays.copyOf(latencies, steps);
+            Arrays.sort(sorted);
+            System.out.println(String.format(
+                    "%-16s %d wizards, %.2f requests per wizard, step latency"
+                            + " p50 %d us, p99 %d us", namespace, wizards,
+                    (double) requests / wizards,
+                    TimeUnit.NANOSECONDS.toMicros(percentile(sorted, 0.5)),
+                    TimeUnit.NANOSECONDS.toMicros(percentile(sorted, 0.99))));
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.UUID;
+
+import com.amashchenko.struts2.actionflow.entities.ActionFlowState;
+
+/**
+ * Base class for {@link ActionFlowStateStore}s which keep action flow state
+ * outside of the session. Only a short generated identifier is put into the
+ * session, once, when the state is stored for the first time.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+public abstract class AbstractExternalActionFlowStateStore implements
+        ExpiringActionFlowStateStore {
+
+    /** Key for holding in session the identifier of the action flow state. */
+    public static final String STATE_ID_KEY = "actionFlowStateId";
+
+    /** {@inheritDoc} */
+    @Override
+    public ActionFlowState load(final Map<String, Object> session,
+            final String key) {
+        final String id = getStateId(session, false);
+        if (id == null) {
+            return null;
+        }
+        return load(id + '.' + key);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void store(final Map<String, Object> session, final String key,
+            final ActionFlowState state) {
+        store(getStateId(session, true) + '.' + key, state);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void remove(final Map<String, Object> session, final String key) {
+        final String id = getStateId(session, false);
+        if (id != null) {
+            remove(id + '.' + key);
+        }
+    }
+
+    /**
+     * Gets identifier of the action flow state from session.
+     * 
+     * @param session
+     *            session map.
+     * @param create
+     *            whether to create the identifier if there is none.
+     * @return Identifier of the action flow state or <code>null</code>.
+     */
+    String getStateId(final Map<String, Object> session, final boolean create) {
+        final Object id = session.get(STATE_ID_KEY);
+        if (id instanceof String) {
+            return (String) id;
+        }
+        if (!create) {
+            return null;
+        }
+        final String newId = UUID.randomUUID().toString();
+        session.put(STATE_ID_KEY, newId);
+        return newId;
+    }
+
+    /**
+     * Computes serialized size of action flow state.
+     * 
+     * @param state
+     *            action flow state.
+     * @return Number of bytes of serialized state.
+     */
+    protected static long serializedSize(final ActionFlowState state) {
+        final CountingOutputStream counter = new CountingOutputStream();
+        try {
+            final ObjectOutputStream out = new ObjectOutputStream(counter);
+            out.writeObject(state);
+            out.close();
+        } catch (IOException e) {
+            // scope value isn't serializable, count what was written
+        }
+        return counter.count;
+    }
+
+    /**
+     * Loads action flow state.
+     * 
+     * @param storeKey
+     *            unique key of the action flow state in this store.
+     * @return Action flow state or <code>null</code> if there is none.
+     */
+    protected abstract ActionFlowState load(String storeKey);
+
+    /**
+     * Stores action flow state.
+     * 
+     * @param storeKey
+     *            unique key of the action flow state in this store.
+     * @param state
+     *            action flow state.
+     */
+    protected abstract void store(String storeKey, ActionFlowState state);
+
+    /**
+     * Removes action flow state.
+     * 
+     * @param storeKey
+     *            unique key of the action flow state in this store.
+     */
+    protected abstract void remove(String storeKey);
+
+    /** Output stream which only counts bytes. */
+    private static final class CountingOutputStream extends OutputStream {
+        private long count;
+
+        /** {@inheritDoc} */
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
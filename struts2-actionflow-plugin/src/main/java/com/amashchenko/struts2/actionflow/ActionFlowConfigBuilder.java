@@ -18,29 +18,40 @@ package com.amashchenko.struts2.actionflow;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.struts2.dispatcher.ServletActionRedirectResult;
+import org.apache.struts2.dispatcher.mapper.ActionMapper;
+import org.apache.struts2.dispatcher.mapper.ActionMapping;
 
+import com.amashchenko.struts2.actionflow.entities.ActionFlowActionConfig;
+import com.amashchenko.struts2.actionflow.entities.ActionFlowConfig;
+import com.amashchenko.struts2.actionflow.entities.ActionFlowStatistics;
 import com.amashchenko.struts2.actionflow.entities.ActionFlowStepConfig;
 import com.opensymphony.xwork2.Action;
 import com.opensymphony.xwork2.ActionChainResult;
 import com.opensymphony.xwork2.ActionSupport;
+import com.opensymphony.xwork2.ObjectFactory;
 import com.opensymphony.xwork2.config.Configuration;
 import com.opensymphony.xwork2.config.ConfigurationException;
 import com.opensymphony.xwork2.config.entities.ActionConfig;
+import com.opensymphony.xwork2.config.entities.InterceptorMapping;
 import com.opensymphony.xwork2.config.entities.PackageConfig;
 import com.opensymphony.xwork2.config.entities.ResultConfig;
+import com.opensymphony.xwork2.config.providers.InterceptorBuilder;
 import com.opensymphony.xwork2.inject.Inject;
 import com.opensymphony.xwork2.util.logging.Logger;
 import com.opensymphony.xwork2.util.logging.LoggerFactory;
@@ -60,10 +71,126 @@ public class ActionFlowConfigBuilder {
     /** Parameter indicating that this action belongs to action flow. */
     private static final String PARAM_ACTION_FLOW_STEP = "actionFlowStep";
 
+    /** Parameter indicating that this action starts action flow. */
+    private static final String PARAM_ACTION_FLOW_START = "actionFlowStart";
+
+    /** Name matching all interceptors of the flow action. */
+    private static final String ALL_INTERCEPTORS = "*";
+
     /** XWork configuration. */
     @Inject
     private Configuration configuration;
 
+    /** Builds interceptors of the default interceptor reference. */
+    @Inject
+    private ObjectFactory objectFactory;
+
+    /** Creates URIs of the view actions for {@link ActionFlowViewResult}. */
+    @Inject(required = false)
+    private ActionMapper actionMapper;
+
+    /** Compiled action flows, where key is the name of the package. */
+    private final Map<String, ActionFlowConfig> compiledFlows = new ConcurrentHashMap<String, ActionFlowConfig>();
+
+    /** Counters of the action flows, where key is the name of the package. */
+    private final ConcurrentMap<String, ActionFlowStatistics> flowStatistics = new ConcurrentHashMap<String, ActionFlowStatistics>();
+
+    /**
+     * Compiles action flow and action flow scope fields for given package name
+     * and keeps them for later retrieval with {@link #getCompiledFlow(String)}.
+     * If the flow of this package is already compiled it is returned instead,
+     * so concurrent callers share the same result.
+     * 
+     * @param packageName
+     *            Name of the package.
+     * @param nextActionName
+     *            Name of the next action.
+     * @param prevActionName
+     *            Name of the previous action.
+     * @param viewActionPostfix
+     *            View action postfix.
+     * @param viewActionMethod
+     *            View action method.
+     * @return Compiled action flow.
+     */
+    protected synchronized ActionFlowConfig compileFlow(
+            final String packageName, final String nextActionName,
+            final String prevActionName, final String viewActionPostfix,
+            final String viewActionMethod) {
+        ActionFlowConfig flowConfig = compiledFlows.get(packageName);
+        if (flowConfig == null) {
+            final Map<String, ActionFlowStepConfig> flowMap = createFlowMap(
+                    packageName, nextActionName, prevActionName,
+                    viewActionPostfix, viewActionMethod);
+            flowConfig = createFlowConfig(packageName, flowMap,
+                    nextActionName, prevActionName, viewActionPostfix);
+
+            compiledFlows.put(packageName, flowConfig);
+        }
+        return flowConfig;
+    }
+
+    /**
+     * Gets compiled action flow for given package name.
+     * 
+     * @param packageName
+     *            Name of the package.
+     * @return Compiled action flow or <code>null</code> if the flow of this
+     *         package wasn't compiled yet.
+     */
+    protected ActionFlowConfig getCompiledFlow(final String packageName) {
+        return compiledFlows.get(packageName);
+    }
+
+    /**
+     * Gets counters of the action flow of the given package. Counters are
+     * shared by all actions and interceptors of the package and survive
+     * compiling the flow again.
+     * 
+     * @param packageName
+     *            Name of the package.
+     * @return Counters of the action flow, never <code>null</code>.
+     */
+    public ActionFlowStatistics getFlowStatistics(final String packageName) {
+        ActionFlowStatistics statistics = flowStatistics.get(packageName);
+        if (statistics == null) {
+            final ActionFlowStatistics created = new ActionFlowStatistics();
+            statistics = flowStatistics.putIfAbsent(packageName, created);
+            if (statistics == null) {
+                statistics = created;
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Gets compiled action flow map for given package name.
+     * 
+     * @param packageName
+     *            Name of the package.
+     * @return Map of the action flow or <code>null</code> if the flow of this
+     *         package wasn't compiled yet.
+     */
+    protected Map<String, ActionFlowStepConfig> getCompiledFlowMap(
+            final String packageName) {
+        final ActionFlowConfig flowConfig = compiledFlows.get(packageName);
+        return flowConfig == null ? null : flowConfig.getFlowMap();
+    }
+
+    /**
+     * Gets compiled action flow scope fields for given package name.
+     * 
+     * @param packageName
+     *            Name of the package.
+     * @return Map of the action flow scope fields or <code>null</code> if the
+     *         flow of this package wasn't compiled yet.
+     */
+    protected Map<String, List<PropertyDescriptor>> getCompiledFlowScopeFields(
+            final String packageName) {
+        final ActionFlowConfig flowConfig = compiledFlows.get(packageName);
+        return flowConfig == null ? null : flowConfig.getFlowScopeFields();
+    }
+
     /**
      * Creates action flow map for given package name.
      * 
@@ -84,25 +211,241 @@ public class ActionFlowConfigBuilder {
             final String packageName, final String nextActionName,
             final String prevActionName, final String viewActionPostfix,
             final String viewActionMethod) {
-        // holds all actions with PARAM_ACTION_FLOW_STEP parameter
-        // using TreeMap for natural ordering of keys
-        Map<String, ActionConfig> actionsStepMap = new TreeMap<String, ActionConfig>();
+        final Map<String, PackageConfig> flowPackageConfigs = new LinkedHashMap<String, PackageConfig>();
+
+        final Map<String, ActionFlowStepConfig> actionFlows = createFlowMap(
+                packageName, nextActionName, prevActionName,
+                viewActionPostfix, viewActionMethod, flowPackageConfigs);
+
+        replacePackageConfigs(flowPackageConfigs, true);
+
+        return actionFlows;
+    }
+
+    /**
+     * Compiles action flows and action flow scope fields for all given
+     * packages. Unlike calling {@link #compileFlow} for each package the
+     * runtime configuration is rebuilt only once. Packages with wrong action
+     * flow configuration are skipped, so they will be reported on their first
+     * request.
+     * 
+     * @param flowInterceptors
+     *            Map of the action flow interceptors, where key is the name of
+     *            the package and value is the interceptor which parameters are
+     *            used to compile the flow.
+     */
+    protected void compileFlows(
+            final Map<String, ActionFlowInterceptor> flowInterceptors) {
+        compileFlows(flowInterceptors, true);
+    }
+
+    /**
+     * Compiles action flows and action flow scope fields for all given
+     * packages.
+     * 
+     * @param flowInterceptors
+     *            Map of the action flow interceptors, where key is the name of
+     *            the package and value is the interceptor which parameters are
+     *            used to compile the flow.
+     * @param rebuild
+     *            Whether to rebuild runtime configuration after replacing
+     *            package configurations. Package providers pass
+     *            <code>false</code> because the configuration is rebuilt after
+     *            all of them are loaded.
+     */
+    protected synchronized void compileFlows(
+            final Map<String, ActionFlowInterceptor> flowInterceptors,
+            final boolean rebuild) {
+        final Map<String, PackageConfig> flowPackageConfigs = new LinkedHashMap<String, PackageConfig>();
+        final Map<String, Map<String, ActionFlowStepConfig>> flowMaps = new LinkedHashMap<String, Map<String, ActionFlowStepConfig>>();
+
+        for (Entry<String, ActionFlowInterceptor> entry : flowInterceptors
+                .entrySet()) {
+            final String packageName = entry.getKey();
+            final ActionFlowInterceptor interceptor = entry.getValue();
+            try {
+                flowMaps.put(packageName, createFlowMap(packageName,
+                        interceptor.getNextActionName(),
+                        interceptor.getPrevActionName(),
+                        interceptor.getViewActionPostfix(),
+                        interceptor.getViewActionMethod(), flowPackageConfigs));
+            } catch (ConfigurationException e) {
+                LOG.warn("Cannot compile action flow of the '" + packageName
+                        + "' package.", e);
+            }
+        }
 
-        Map<String, Map<String, ActionConfig>> runtimeActionConfigs = configuration
-                .getRuntimeConfiguration().getActionConfigs();
+        replacePackageConfigs(flowPackageConfigs, rebuild);
+
+        for (Entry<String, Map<String, ActionFlowStepConfig>> entry : flowMaps
+                .entrySet()) {
+            final String packageName = entry.getKey();
+            try {
+                final ActionFlowInterceptor interceptor = flowInterceptors
+                        .get(packageName);
+                compiledFlows.put(packageName, createFlowConfig(packageName,
+                        entry.getValue(), interceptor.getNextActionName(),
+                        interceptor.getPrevActionName(),
+                        interceptor.getViewActionPostfix()));
+            } catch (ConfigurationException e) {
+                LOG.warn("Cannot compile action flow of the '" + packageName
+                        + "' package.", e);
+            }
+        }
+    }
+
+    /**
+     * Creates compiled action flow from the given action flow map.
+     * 
+     * @param packageName
+     *            Name of the package.
+     * @param flowMap
+     *            Map of the action flow.
+     * @param nextActionName
+     *            Name of the next action.
+     * @param prevActionName
+     *            Name of the previous action.
+     * @param viewActionPostfix
+     *            View action postfix.
+     * @return Compiled action flow.
+     */
+    private ActionFlowConfig createFlowConfig(final String packageName,
+            final Map<String, ActionFlowStepConfig> flowMap,
+            final String nextActionName, final String prevActionName,
+            final String viewActionPostfix) {
+        final String startAction = createStartAction(packageName, flowMap,
+                viewActionPostfix);
+        return new ActionFlowConfig(flowMap,
+                createFlowScopeFields(packageName),
+                createFlowScopeCopiers(packageName), startAction,
+                createActionsMap(flowMap, startAction, nextActionName,
+                        prevActionName, viewActionPostfix),
+                getFlowStatistics(packageName));
+    }
+
+    /**
+     * Creates map of the actions having role in action flow.
+     * 
+     * @param flowMap
+     *            Map of the action flow.
+     * @param startAction
+     *            Name of the start action, can be <code>null</code>.
+     * @param nextActionName
+     *            Name of the next action.
+     * @param prevActionName
+     *            Name of the previous action.
+     * @param viewActionPostfix
+     *            View action postfix.
+     * @return Map of the actions, where key is the name of the action and
+     *         value is {@link ActionFlowActionConfig}.
+     */
+    protected Map<String, ActionFlowActionConfig> createActionsMap(
+            final Map<String, ActionFlowStepConfig> flowMap,
+            final String startAction, final String nextActionName,
+            final String prevActionName, final String viewActionPostfix) {
+        final Map<String, ActionFlowActionConfig> actions = new HashMap<String, ActionFlowActionConfig>();
+
+        if (startAction != null) {
+            actions.put(startAction, new ActionFlowActionConfig(
+                    ActionFlowActionConfig.Type.START, null, null, null));
+        }
+        actions.put(prevActionName, new ActionFlowActionConfig(
+                ActionFlowActionConfig.Type.PREV, null, null, null));
+        actions.put(nextActionName, new ActionFlowActionConfig(
+                ActionFlowActionConfig.Type.NEXT, null, null, null));
+
+        // view actions
+        for (Entry<String, ActionFlowStepConfig> entry : flowMap.entrySet()) {
+            final String viewActionName = entry.getKey() + viewActionPostfix;
+            actions.put(viewActionName, new ActionFlowActionConfig(
+                    ActionFlowActionConfig.Type.VIEW, entry.getKey(),
+                    viewActionName, entry.getValue()));
+        }
+
+        // flow actions
+        for (Entry<String, ActionFlowStepConfig> entry : flowMap.entrySet()) {
+            actions.put(entry.getKey(), new ActionFlowActionConfig(
+                    ActionFlowActionConfig.Type.FLOW, entry.getKey(),
+                    entry.getKey() + viewActionPostfix, entry.getValue()));
+        }
+
+        return actions;
+    }
+
+    /**
+     * Replaces package configurations with the given ones and rebuilds runtime
+     * configuration once.
+     * 
+     * @param packageConfigs
+     *            Map of the package configurations, where key is the name of
+     *            the package.
+     * @param rebuild
+     *            Whether to rebuild runtime configuration.
+     */
+    private void replacePackageConfigs(
+            final Map<String, PackageConfig> packageConfigs,
+            final boolean rebuild) {
+        if (!packageConfigs.isEmpty()) {
+            for (Entry<String, PackageConfig> entry : packageConfigs
+                    .entrySet()) {
+                configuration.removePackageConfig(entry.getKey());
+                configuration.addPackageConfig(entry.getKey(),
+                        entry.getValue());
+            }
+            if (rebuild) {
+                configuration.rebuildRuntimeConfiguration();
+            }
+        }
+    }
+
+    /**
+     * Creates action flow map for given package name. New package
+     * configuration with special actions is put into the given map instead of
+     * the XWork configuration.
+     * 
+     * @param packageName
+     *            Name of the package.
+     * @param nextActionName
+     *            Name of the next action.
+     * @param prevActionName
+     *            Name of the previous action.
+     * @param viewActionPostfix
+     *            View action postfix.
+     * @param viewActionMethod
+     *            View action method.
+     * @param flowPackageConfigs
+     *            Map to put the new package configuration into.
+     * @return Map of the action flow, where key is the name of the action and
+     *         value is {@link ActionFlowStepConfig}.
+     */
+    private Map<String, ActionFlowStepConfig> createFlowMap(
+            final String packageName, final String nextActionName,
+            final String prevActionName, final String viewActionPostfix,
+            final String viewActionMethod,
+            final Map<String, PackageConfig> flowPackageConfigs) {
+        // holds all actions with PARAM_ACTION_FLOW_STEP parameter
+        // using TreeMap for numeric ordering of keys
+        Map<Integer, ActionConfig> actionsStepMap = new TreeMap<Integer, ActionConfig>();
 
         PackageConfig packageConfig = configuration
                 .getPackageConfig(packageName);
 
-        // Map<String, ActionConfig> actionConfigs = packageConfig
-        // .getAllActionConfigs();
-        Map<String, ActionConfig> actionConfigs = runtimeActionConfigs
-                .get(packageConfig.getNamespace());
+        Map<String, ActionConfig> actionConfigs = getActionConfigs(packageConfig);
         for (Entry<String, ActionConfig> entrActConf : actionConfigs.entrySet()) {
             ActionConfig actionConfig = entrActConf.getValue();
             if (actionConfig.getParams().containsKey(PARAM_ACTION_FLOW_STEP)) {
-                String key = actionConfig.getParams().get(
-                        PARAM_ACTION_FLOW_STEP);
+                final Integer key;
+                try {
+                    key = Integer.valueOf(actionConfig.getParams()
+                            .get(PARAM_ACTION_FLOW_STEP).trim());
+                } catch (NumberFormatException e) {
+                    throw new ConfigurationException("The value of '"
+                            + PARAM_ACTION_FLOW_STEP
+                            + "' parameter must be an integer. Action '"
+                            + actionConfig.getName() + "' in '"
+                            + actionConfig.getPackageName() + "' package.",
+                            actionConfig);
+                }
 
                 // action flow steps check
                 if (actionsStepMap.containsKey(key)) {
@@ -124,21 +467,28 @@ public class ActionFlowConfigBuilder {
             LOG.debug("Found action flows: " + actionsStepMap);
         }
 
+        // precompiled view result redirects to the URIs of the view actions
+        final ResultConfig viewResultConfig = packageConfig
+                .getAllGlobalResults().get(
+                        ActionFlowInterceptor.GLOBAL_VIEW_RESULT);
+        final boolean precompiledViewResult = viewResultConfig != null
+                && ActionFlowViewResult.class.getName().equals(
+                        viewResultConfig.getClassName());
+
         // holds action flows: {1:{nextAction:2,prevAction:0,index:1}}
         Map<String, ActionFlowStepConfig> actionFlows = new HashMap<String, ActionFlowStepConfig>();
 
         List<ActionConfig> viewActionConfigs = new ArrayList<ActionConfig>();
 
-        List<String> keys = new ArrayList<String>(actionsStepMap.keySet());
-        ListIterator<String> mapkeyitr = keys.listIterator();
+        // interceptors of the actions without own interceptor references
+        List<InterceptorMapping> defaultInterceptors = null;
 
-        String prevKey = null;
-        // starting from 1 because of the FIRST_FLOW_ACTION_NAME
-        int index = 1;
-        while (mapkeyitr.hasNext()) {
-            String key = mapkeyitr.next();
+        // flow actions in step order, neighbours are linked by index
+        final ActionConfig[] stepActionConfigs = actionsStepMap.values()
+                .toArray(new ActionConfig[actionsStepMap.size()]);
 
-            ActionConfig actionConfig = actionsStepMap.get(key);
+        for (int i = 0; i < stepActionConfigs.length; i++) {
+            ActionConfig actionConfig = stepActionConfigs[i];
 
             // create view action
             if (actionConfigs.containsKey(actionConfig.getName()
@@ -161,33 +511,34 @@ public class ActionFlowConfigBuilder {
                 ResultConfig resultConfig = new ResultConfig.Builder(
                         Action.SUCCESS, inputResultConfig.getClassName())
                         .addParams(inputResultConfig.getParams()).build();
+
+                List<InterceptorMapping> interceptors = actionConfig
+                        .getInterceptors();
+                if (interceptors.isEmpty()) {
+                    if (defaultInterceptors == null) {
+                        defaultInterceptors = getDefaultInterceptors(packageConfig);
+                    }
+                    interceptors = defaultInterceptors;
+                }
+
                 // build action configuration
                 ActionConfig act = new ActionConfig.Builder(packageName,
                         actionConfig.getName() + viewActionPostfix,
                         actionConfig.getClassName())
                         .methodName(viewActionMethod)
-                        .addInterceptors(actionConfig.getInterceptors())
+                        .addInterceptors(
+                                createViewActionInterceptors(interceptors))
                         .addResultConfig(resultConfig).build();
                 viewActionConfigs.add(act);
             }
 
-            String nextKey = null;
-            if (mapkeyitr.hasNext()) {
-                // peek
-                nextKey = mapkeyitr.next();
-                mapkeyitr.previous();
-            }
-
             String nextActionVal = null;
             String prevActionVal = null;
-            if (nextKey == null) {
-                nextActionVal = null;
-            } else {
-                ActionConfig nextActionConfig = actionsStepMap.get(nextKey);
-                nextActionVal = nextActionConfig.getName();
+            if (i + 1 < stepActionConfigs.length) {
+                nextActionVal = stepActionConfigs[i + 1].getName();
             }
 
-            if (prevKey == null) {
+            if (i == 0) {
                 prevActionVal = ActionFlowInterceptor.FIRST_FLOW_ACTION_NAME;
 
                 // first action
@@ -198,16 +549,19 @@ public class ActionFlowConfigBuilder {
                 actionFlows.put(ActionFlowInterceptor.FIRST_FLOW_ACTION_NAME,
                         stepConfig);
             } else {
-                prevActionVal = actionsStepMap.get(prevKey).getName();
+                prevActionVal = stepActionConfigs[i - 1].getName();
             }
 
+            // starting from 1 because of the FIRST_FLOW_ACTION_NAME
             ActionFlowStepConfig.Builder stepConfigBuilder = new ActionFlowStepConfig.Builder(
-                    index, nextActionVal, prevActionVal);
+                    i + 1, nextActionVal, prevActionVal).viewAction(
+                    actionConfig.getName() + viewActionPostfix);
+            if (precompiledViewResult) {
+                stepConfigBuilder.viewUri(createViewUri(packageConfig,
+                        actionConfig.getName() + viewActionPostfix));
+            }
             ActionFlowStepConfig stepConfig = stepConfigBuilder.build();
             actionFlows.put(actionConfig.getName(), stepConfig);
-
-            prevKey = key;
-            index++;
         }
 
         if (LOG.isDebugEnabled()) {
@@ -223,12 +577,19 @@ public class ActionFlowConfigBuilder {
                     ActionFlowInterceptor.GLOBAL_VIEW_RESULT)) {
                 ResultConfig rs = packageConfig.getAllGlobalResults().get(
                         ActionFlowInterceptor.GLOBAL_VIEW_RESULT);
-                if (!ServletActionRedirectResult.class.getName().equals(
+                if (precompiledViewResult) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("The '"
+                                + ActionFlowInterceptor.GLOBAL_VIEW_RESULT
+                                + "' global result in '" + packageName
+                                + "' package redirects to precompiled URIs.");
+                    }
+                } else if (!ServletActionRedirectResult.class.getName().equals(
                         rs.getClassName())) {
                     throw new ConfigurationException(
                             "The '"
                                     + ActionFlowInterceptor.GLOBAL_VIEW_RESULT
-                                    + "' global result type must be 'redirectAction' in package '"
+                                    + "' global result type must be 'redirectAction' or 'actionFlowView' in package '"
                                     + packageName + "'.", rs);
                 } else if (!("${" + ActionFlowInterceptor.VIEW_ACTION_PARAM + "}")
                         .equals(rs.getParams().get(
@@ -250,12 +611,15 @@ public class ActionFlowConfigBuilder {
                 }
 
                 // add view global result
-                ResultConfig viewGlobalResult = new ResultConfig.Builder(
-                        ActionFlowInterceptor.GLOBAL_VIEW_RESULT,
-                        ServletActionRedirectResult.class.getName()).addParam(
-                        ServletActionRedirectResult.DEFAULT_PARAM,
-                        "${" + ActionFlowInterceptor.VIEW_ACTION_PARAM + "}")
-                        .build();
+                ResultConfig viewGlobalResult = addFlowInstanceParams(
+                        new ResultConfig.Builder(
+                                ActionFlowInterceptor.GLOBAL_VIEW_RESULT,
+                                ServletActionRedirectResult.class.getName())
+                                .addParam(
+                                        ServletActionRedirectResult.DEFAULT_PARAM,
+                                        "${"
+                                                + ActionFlowInterceptor.VIEW_ACTION_PARAM
+                                                + "}")).build();
                 pcb.addGlobalResultConfig(viewGlobalResult);
             }
 
@@ -312,12 +676,14 @@ public class ActionFlowConfigBuilder {
                 }
 
                 // add previous action
-                ResultConfig prevResultConfig = new ResultConfig.Builder(
-                        Action.SUCCESS,
-                        ServletActionRedirectResult.class.getName()).addParam(
-                        ServletActionRedirectResult.DEFAULT_PARAM,
-                        "${" + ActionFlowInterceptor.PREV_ACTION_PARAM + "}")
-                        .build();
+                ResultConfig prevResultConfig = addFlowInstanceParams(
+                        new ResultConfig.Builder(Action.SUCCESS,
+                                ServletActionRedirectResult.class.getName())
+                                .addParam(
+                                        ServletActionRedirectResult.DEFAULT_PARAM,
+                                        "${"
+                                                + ActionFlowInterceptor.PREV_ACTION_PARAM
+                                                + "}")).build();
                 // build previous action configuration
                 ActionConfig prevAct = new ActionConfig.Builder(packageName,
                         prevActionName, "").addResultConfig(prevResultConfig)
@@ -378,44 +744,239 @@ public class ActionFlowConfigBuilder {
             }
 
             // build flow package
-            PackageConfig pconf = pcb.build();
-
-            configuration.removePackageConfig(packageName);
-            configuration.addPackageConfig(packageName, pconf);
-            configuration.rebuildRuntimeConfiguration();
+            flowPackageConfigs.put(packageName, pcb.build());
         }
         return Collections.unmodifiableMap(actionFlows);
     }
 
     /**
-     * Creates action flow scope fields map for given package name.
+     * Gets action configurations of the package with the global results, as
+     * they will be in the runtime configuration. The runtime configuration
+     * itself isn't used, because it is built only after all packages are
+     * loaded.
      * 
-     * @param packageName
-     *            Name of the package.
-     * @return Map of the action flow scope fields, where key is the name of the
-     *         action class (as returned by {@link Class#getName()}) and value
-     *         is list of {@link PropertyDescriptor}.
+     * @param packageConfig
+     *            Configuration of the package.
+     * @return Map of the action configurations, where key is the name of the
+     *         action.
      */
-    protected Map<String, List<PropertyDescriptor>> createFlowScopeFields(
-            final String packageName) {
-        Map<String, List<PropertyDescriptor>> flowScopeFields = new HashMap<String, List<PropertyDescriptor>>();
+    Map<String, ActionConfig> getActionConfigs(
+            final PackageConfig packageConfig) {
+        final Map<String, ActionConfig> actionConfigs = new LinkedHashMap<String, ActionConfig>();
+        for (Entry<String, ActionConfig> entry : packageConfig
+                .getAllActionConfigs().entrySet()) {
+            final ActionConfig actionConfig = entry.getValue();
+
+            // inherited actions use global results of their own package
+            PackageConfig resultsPackage = packageConfig;
+            if (!packageConfig.getName().equals(actionConfig.getPackageName())
+                    && configuration.getPackageConfig(actionConfig
+                            .getPackageName()) != null) {
+                resultsPackage = configuration.getPackageConfig(actionConfig
+                        .getPackageName());
+            }
 
-        Map<String, Map<String, ActionConfig>> runtimeActionConfigs = configuration
-                .getRuntimeConfiguration().getActionConfigs();
+            final Map<String, ResultConfig> results = new LinkedHashMap<String, ResultConfig>(
+                    resultsPackage.getAllGlobalResults());
+            results.putAll(actionConfig.getResults());
+            actionConfigs.put(entry.getKey(), new ActionConfig.Builder(
+                    actionConfig).addResultConfigs(results).build());
+        }
+        return actionConfigs;
+    }
 
+    /**
+     * Gets interceptors of the default interceptor reference of the package,
+     * which the actions without own interceptor references get in the runtime
+     * configuration. Interceptors of a stack are shared, a single interceptor
+     * is built anew.
+     * 
+     * @param packageConfig
+     *            Configuration of the package.
+     * @return Interceptors of the default interceptor reference.
+     */
+    List<InterceptorMapping> getDefaultInterceptors(
+            final PackageConfig packageConfig) {
+        final String refName = packageConfig.getFullDefaultInterceptorRef();
+        if (refName == null) {
+            return Collections.emptyList();
+        }
+        return InterceptorBuilder.constructInterceptorReference(packageConfig,
+                refName, new LinkedHashMap<String, String>(),
+                packageConfig.getLocation(), objectFactory);
+    }
+
+    /**
+     * Creates interceptors of the generated view action from the interceptors
+     * of the flow action. Only the action flow interceptor and the interceptors
+     * named in its <code>viewActionInterceptors</code> parameter are kept.
+     * 
+     * @param interceptors
+     *            Interceptors of the flow action.
+     * @return Interceptors of the view action.
+     */
+    List<InterceptorMapping> createViewActionInterceptors(
+            final List<InterceptorMapping> interceptors) {
+        ActionFlowInterceptor flowInterceptor = null;
+        for (InterceptorMapping im : interceptors) {
+            if (im.getInterceptor() instanceof ActionFlowInterceptor) {
+                flowInterceptor = (ActionFlowInterceptor) im.getInterceptor();
+                break;
+            }
+        }
+
+        if (flowInterceptor == null
+                || flowInterceptor.getViewActionInterceptors().contains(
+                        ALL_INTERCEPTORS)) {
+            return interceptors;
+        }
+
+        final List<InterceptorMapping> viewInterceptors = new ArrayList<InterceptorMapping>();
+        for (InterceptorMapping im : interceptors) {
+            if (im.getInterceptor() == flowInterceptor
+                    || flowInterceptor.getViewActionInterceptors().contains(
+                            im.getName())) {
+                viewInterceptors.add(im);
+            }
+        }
+        return viewInterceptors;
+    }
+
+    /**
+     * Creates URI of the view action for the precompiled view result.
+     * 
+     * @param packageConfig
+     *            Configuration of the package.
+     * @param viewActionName
+     *            Name of the view action.
+     * @return URI of the view action without context path.
+     */
+    private String createViewUri(final PackageConfig packageConfig,
+            final String viewActionName) {
+        if (actionMapper == null) {
+            throw new ConfigurationException("There is no action mapper for '"
+                    + ActionFlowInterceptor.GLOBAL_VIEW_RESULT
+                    + "' global result in '" + packageConfig.getName()
+                    + "' package.", packageConfig);
+        }
+        return actionMapper.getUriFromActionMapping(new ActionMapping(
+                viewActionName, packageConfig.getNamespace(), null, null));
+    }
+
+    /**
+     * Adds action flow instance identifier to the redirect result. Nothing is
+     * added to the URL if action flow instances aren't used.
+     * 
+     * @param builder
+     *            builder of the redirect result.
+     * @return The same builder.
+     */
+    private ResultConfig.Builder addFlowInstanceParams(
+            final ResultConfig.Builder builder) {
+        return builder.addParam(ActionFlowInterceptor.FLOW_INSTANCE_PARAM,
+                "${#" + ActionFlowInterceptor.FLOW_INSTANCE_PARAM + "}")
+                .addParam("suppressEmptyParameters", "true");
+    }
+
+    /**
+     * Gets names of the action classes of the given package.
+     * 
+     * @param packageName
+     *            Name of the package.
+     * @return Set of the action class names.
+     */
+    private Set<String> getActionClassNames(final String packageName) {
         PackageConfig packageConfig = configuration
                 .getPackageConfig(packageName);
 
-        // Map<String, ActionConfig> actionConfigs = packageConfig
-        // .getAllActionConfigs();
-        Collection<ActionConfig> actionConfigs = runtimeActionConfigs.get(
-                packageConfig.getNamespace()).values();
+        Collection<ActionConfig> actionConfigs = packageConfig
+                .getAllActionConfigs().values();
 
         // get all unique action class names
         Set<String> classNames = new HashSet<String>();
         for (ActionConfig ac : actionConfigs) {
             classNames.add(ac.getClassName());
         }
+        return classNames;
+    }
+
+    /**
+     * Loads generated action flow scope copier of the action class.
+     * 
+     * @param clazz
+     *            Action class.
+     * @return Generated copier or <code>null</code> if there is none.
+     */
+    ActionFlowScopeCopier findScopeCopier(final Class<?> clazz) {
+        try {
+            final Class<?> copierClass = Class.forName(clazz.getName()
+                    + ActionFlowScopeCopier.CLASS_POSTFIX, true,
+                    clazz.getClassLoader());
+            return (ActionFlowScopeCopier) copierClass
+                    .getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException e) {
+            if (LOG.isTraceEnabled()) {
+                LOG.trace("In findScopeCopier", e);
+            }
+        } catch (InvocationTargetException e) {
+            // thrown by the constructor of the copier
+            LOG.warn("In findScopeCopier", e.getCause());
+        } catch (Exception e) {
+            LOG.warn("In findScopeCopier", e);
+        }
+        return null;
+    }
+
+    /**
+     * Creates generated action flow scope copiers map for given package name.
+     * 
+     * @param packageName
+     *            Name of the package.
+     * @return Map of the generated action flow scope copiers, where key is the
+     *         name of the action class (as returned by {@link Class#getName()}
+     *         ).
+     */
+    protected Map<String, ActionFlowScopeCopier> createFlowScopeCopiers(
+            final String packageName) {
+        Map<String, ActionFlowScopeCopier> copiers = new HashMap<String, ActionFlowScopeCopier>();
+
+        for (String className : getActionClassNames(packageName)) {
+            try {
+                Class<?> clazz = Class.forName(className);
+                if (clazz.isAnnotationPresent(ActionFlowScope.class)) {
+                    ActionFlowScopeCopier copier = findScopeCopier(clazz);
+                    if (copier != null) {
+                        copiers.put(clazz.getName(), copier);
+                    }
+                }
+            } catch (Exception e) {
+                LOG.warn("In createFlowScopeCopiers", e);
+            }
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Found generated action flow scope copiers: "
+                    + copiers.keySet());
+        }
+
+        return Collections.unmodifiableMap(copiers);
+    }
+
+    /**
+     * Creates action flow scope fields map for given package name. Action
+     * classes having generated copier are skipped, so they aren't introspected.
+     * 
+     * @param packageName
+     *            Name of the package.
+     * @return Map of the action flow scope fields, where key is the name of the
+     *         action class (as returned by {@link Class#getName()}) and value
+     *         is list of {@link PropertyDescriptor}.
+     */
+    protected Map<String, List<PropertyDescriptor>> createFlowScopeFields(
+            final String packageName) {
+        Map<String, List<PropertyDescriptor>> flowScopeFields = new HashMap<String, List<PropertyDescriptor>>();
+
+        Set<String> classNames = getActionClassNames(packageName);
 
         if (classNames != null && !classNames.isEmpty()) {
             for (String className : classNames) {
@@ -423,7 +984,8 @@ public class ActionFlowConfigBuilder {
                     Class<?> clazz = Class.forName(className);
                     String classKey = clazz.getName();
 
-                    if (clazz.isAnnotationPresent(ActionFlowScope.class)) {
+                    if (clazz.isAnnotationPresent(ActionFlowScope.class)
+                            && findScopeCopier(clazz) == null) {
                         List<PropertyDescriptor> pds = new ArrayList<PropertyDescriptor>();
                         for (PropertyDescriptor pd : Introspector.getBeanInfo(
                                 clazz, ActionSupport.class)
@@ -456,6 +1018,101 @@ public class ActionFlowConfigBuilder {
         return Collections.unmodifiableMap(flowScopeFields);
     }
 
+    /**
+     * Finds the action which starts action flow of the given package. The
+     * action can be declared with <code>actionFlowStart</code> parameter,
+     * otherwise it is the only not flow action which success result is the
+     * same as the input result of the first flow action.
+     * 
+     * @param packageName
+     *            Name of the package.
+     * @param flowMap
+     *            Map of the action flow.
+     * @param viewActionPostfix
+     *            View action postfix.
+     * @return Name of the start action or <code>null</code> if there is none.
+     */
+    protected String createStartAction(final String packageName,
+            final Map<String, ActionFlowStepConfig> flowMap,
+            final String viewActionPostfix) {
+        final PackageConfig packageConfig = configuration
+                .getPackageConfig(packageName);
+        final Map<String, ActionConfig> actionConfigs = getActionConfigs(packageConfig);
+
+        String startAction = null;
+        boolean ambiguous = false;
+        for (ActionConfig actionConfig : actionConfigs.values()) {
+            if (Boolean.parseBoolean(actionConfig.getParams().get(
+                    PARAM_ACTION_FLOW_START))) {
+                // start action check
+                if (startAction != null) {
+                    throw new ConfigurationException(
+                            "There is more than one action defined with '"
+                                    + PARAM_ACTION_FLOW_START
+                                    + "' parameter. Action '" + startAction
+                                    + "' and '" + actionConfig.getName()
+                                    + "' in '" + packageName + "' package.",
+                            actionConfig);
+                }
+                startAction = actionConfig.getName();
+            }
+        }
+
+        final ActionFlowStepConfig firstStep = flowMap
+                .get(ActionFlowInterceptor.FIRST_FLOW_ACTION_NAME);
+        if (startAction == null && firstStep != null
+                && actionConfigs.containsKey(firstStep.getNextAction())) {
+            final ResultConfig firstInputResult = actionConfigs
+                    .get(firstStep.getNextAction()).getResults()
+                    .get(Action.INPUT);
+
+            for (ActionConfig actionConfig : actionConfigs.values()) {
+                final String name = actionConfig.getName();
+                // flow and view actions
+                if (actionConfig.getParams().containsKey(
+                        PARAM_ACTION_FLOW_STEP)
+                        || (name.endsWith(viewActionPostfix) && flowMap
+                                .containsKey(name.substring(0,
+                                        name.length()
+                                                - viewActionPostfix.length())))) {
+                    continue;
+                }
+
+                final ResultConfig resultConfig = actionConfig.getResults()
+                        .get(Action.SUCCESS);
+                if (firstInputResult != null
+                        && resultConfig != null
+                        && firstInputResult.getClassName().equals(
+                                resultConfig.getClassName())
+                        && firstInputResult.getParams().equals(
+                                resultConfig.getParams())) {
+                    if (startAction != null) {
+                        // ambiguous, cannot derive
+                        startAction = null;
+                        ambiguous = true;
+                        break;
+                    }
+                    startAction = name;
+                }
+            }
+        }
+
+        if (startAction == null && firstStep != null) {
+            LOG.warn("Cannot "
+                    + (ambiguous ? "choose" : "find")
+                    + " the action which starts action flow of the '"
+                    + packageName
+                    + "' package, action flow data won't be cleared when the flow is started again. Add '"
+                    + PARAM_ACTION_FLOW_START
+                    + "' parameter to the start action.");
+        } else if (LOG.isDebugEnabled()) {
+            LOG.debug("The start action of '" + packageName + "' package is: "
+                    + startAction);
+        }
+
+        return startAction;
+    }
+
     /**
      * Tries to find field by name in given class or it super classes up to
      * (excluded) ActionSupport or Object.
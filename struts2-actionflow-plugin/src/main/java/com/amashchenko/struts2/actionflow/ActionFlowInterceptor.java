@@ -15,20 +15,35 @@
  */
 package com.amashchenko.struts2.actionflow;
 
-import java.beans.PropertyDescriptor;
-import java.lang.reflect.Method;
+import java.security.SecureRandom;
 import java.util.HashMap;
-import java.util.List;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.TreeMap;
-
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.amashchenko.struts2.actionflow.entities.ActionFlowActionConfig;
+import com.amashchenko.struts2.actionflow.entities.ActionFlowConfig;
+import com.amashchenko.struts2.actionflow.entities.ActionFlowScopeConfig;
+import com.amashchenko.struts2.actionflow.entities.ActionFlowState;
+import com.amashchenko.struts2.actionflow.entities.ActionFlowStatistics;
 import com.amashchenko.struts2.actionflow.entities.ActionFlowStepConfig;
 import com.amashchenko.struts2.actionflow.entities.ActionFlowStepsData;
 import com.opensymphony.xwork2.Action;
+import com.opensymphony.xwork2.ActionContext;
 import com.opensymphony.xwork2.ActionInvocation;
+import com.opensymphony.xwork2.ActionProxy;
+import com.opensymphony.xwork2.ActionProxyFactory;
+import com.opensymphony.xwork2.config.ConfigurationException;
+import com.opensymphony.xwork2.inject.Container;
 import com.opensymphony.xwork2.inject.Inject;
 import com.opensymphony.xwork2.interceptor.AbstractInterceptor;
 import com.opensymphony.xwork2.interceptor.PreResultListener;
+import com.opensymphony.xwork2.util.TextParseUtil;
+import com.opensymphony.xwork2.util.ValueStack;
 import com.opensymphony.xwork2.util.logging.Logger;
 import com.opensymphony.xwork2.util.logging.LoggerFactory;
 
@@ -64,6 +79,52 @@ import com.opensymphony.xwork2.util.logging.LoggerFactory;
  * <li>stepParameterName (optional) - Name of the form parameter holding
  * previous action value. The default is <code>step</code>.</li>
  * <p/>
+ * <li>bypassNonFlowActions (optional) - To invoke actions which have no role
+ * in action flow right away, without accessing session. Such actions won't
+ * receive {@link ActionFlowStepsData}. The default is <code>false</code>.</li>
+ * <p/>
+ * <li>stateStore (optional) - Name of the {@link ActionFlowStateStore} bean
+ * keeping action flow state: <code>session</code>, <code>memory</code>,
+ * <code>file</code>, <code>token</code> or a custom one. The default is
+ * <code>session</code>.</li>
+ * <p/>
+ * <li>maxFlowInstances (optional) - Maximum number of action flow instances,
+ * e.g. the same wizard in several browser tabs, kept per session and package.
+ * The least recently used instances are removed when there are more. The
+ * instance is identified by the <code>actionFlowInstance</code> form parameter.
+ * The default is <code>0</code>, meaning one action flow state per session and
+ * package.</li>
+ * <p/>
+ * <li>flowTimeout (optional) - Number of seconds of inactivity after which the
+ * action flow state expires. Any action of the flow prolongs the state, at most
+ * twice per timeout for the actions which don't change it. Expired state is
+ * removed on access, and from stores outside of the session by
+ * {@link ActionFlowStateReaper}. The default is <code>0</code>, meaning the
+ * state doesn't expire.</li>
+ * <p/>
+ * <li>scopeHashCheck (optional) - To detect changes made inside of action flow
+ * scope values, e.g. an element added to a list, by comparing their hash codes
+ * with the ones taken when the values were set into the action. Otherwise a
+ * value which is the same object as the stored one is never written again. The
+ * default is <code>false</code>.</li>
+ * <p/>
+ * <li>directNext (optional) - To execute the next flow action right from the
+ * 'next' action instead of its <code>chain</code> result. The rest of the
+ * interceptor stack of the 'next' action isn't invoked and its properties
+ * aren't copied into the flow action. The default is <code>false</code>.</li>
+ * <p/>
+ * <li>forwardView (optional) - To execute the view action of the next step
+ * within the request of the flow action instead of redirecting to it. It saves
+ * a request per step, but the Post/Redirect/Get pattern isn't used, so the
+ * browser refresh button submits the flow action again. The default is
+ * <code>false</code>.</li>
+ * <p/>
+ * <li>viewActionInterceptors (optional) - Comma separated names of the
+ * interceptors of the flow action which generated view actions invoke besides
+ * this interceptor, <code>*</code> for all of them. Rendering of the step
+ * doesn't need parameters nor validation. The default is
+ * <code>i18n</code>.</li>
+ * <p/>
  * </ul>
  * <p/>
  * <p/>
@@ -84,6 +145,11 @@ import com.opensymphony.xwork2.util.logging.LoggerFactory;
  * 
  * <pre>
  * <!-- START SNIPPET: example-configuration -->
+ * &lt;action name="start" class="com.example.FlowAction"&gt;
+ *     &lt;param name="actionFlowStart"&gt;true&lt;/param&gt;
+ * 
+ *     &lt;result name="success"&gt;input_result.jsp&lt;/result&gt;
+ * &lt;/action&gt;
  * &lt;action name="saveName" method="saveName" class="com.example.FlowAction"&gt;
  *     &lt;param name="actionFlowStep"&gt;1&lt;/param&gt;
  * 
@@ -99,7 +165,7 @@ import com.opensymphony.xwork2.util.logging.LoggerFactory;
  * <pre>
  * <!-- START SNIPPET: example-form -->
  * &lt;s:form action="next"&gt;
- *     &lt;s:hidden name="step" value="%{#session['actionFlowPreviousAction']}" /&gt;
+ *     &lt;s:hidden name="step" value="%{#actionFlowPreviousAction}" /&gt;
  * 
  *     &lt;s:textfield name="name" label="Name" /&gt;
  *     &lt;s:submit value="previous" action="prev" /&gt;
@@ -112,7 +178,8 @@ import com.opensymphony.xwork2.util.logging.LoggerFactory;
  * @author Aleksandr Mashchenko
  * 
  */
-public class ActionFlowInterceptor extends AbstractInterceptor {
+public class ActionFlowInterceptor extends AbstractInterceptor implements
+        PreResultListener {
 
     /** Serial version uid. */
     private static final long serialVersionUID = -8931708101962468929L;
@@ -121,15 +188,35 @@ public class ActionFlowInterceptor extends AbstractInterceptor {
     public static final Logger LOG = LoggerFactory
             .getLogger(ActionFlowInterceptor.class);
 
-    /** Key for holding in session the name of the previous flow action. */
+    /**
+     * Key of the action flow state in the action context and prefix of its key
+     * in the action flow state store.
+     */
+    private static final String FLOW_STATE_KEY = "actionFlowState";
+    /**
+     * Key for holding in action context the name of the previous flow action.
+     */
     private static final String PREVIOUS_FLOW_ACTION = "actionFlowPreviousAction";
-    /** Key for holding in session current highest action index. */
-    private static final String HIGHEST_CURRENT_ACTION_INDEX = "actionFlowHighestCurrentActionIndex";
-    /** Key for holding in session map of skip actions. */
-    private static final String SKIP_ACTIONS = "actionFlowSkipActionsMap";
-
-    /** Key for holding in session overridden action name. */
-    private static final String OVERRIDE_ACTION_NAME = "actionFlowOverrideActionName";
+    /**
+     * Prefix of the key for holding in session the recently used action flow
+     * instances of the package.
+     */
+    private static final String FLOW_INSTANCES_KEY = "actionFlowInstances";
+    /** Maximum length of action flow instance identifier. */
+    private static final int MAX_INSTANCE_ID_LENGTH = 13;
+    /** Generator of action flow instance identifiers. */
+    private static final Random INSTANCE_ID_RANDOM = new SecureRandom();
+    /** Key for holding in action context whether the state was loaded. */
+    private static final String FLOW_STATE_STORED_KEY = "actionFlowStateStored";
+    /** Key for holding in action context whether it is the expected action. */
+    private static final String NEXT_FLOW_ACTION_KEY = "actionFlowNextAction";
+    /**
+     * Key for holding in action context hash codes of the action flow scope
+     * values set into the action.
+     */
+    private static final String SCOPE_HASHES_KEY = "actionFlowScopeHashes";
+    /** Key for holding in action context the view action to forward to. */
+    private static final String FORWARD_VIEW_ACTION_KEY = "actionFlowForwardViewAction";
 
     /** Default next action name. */
     private static final String DEFAULT_NEXT_ACTION_NAME = "next";
@@ -143,110 +230,174 @@ public class ActionFlowInterceptor extends AbstractInterceptor {
     /** Default postfix for view actions. */
     private static final String DEFAULT_VIEW_ACTION_POSTFIX = "View";
     private static final String DEFAULT_VIEW_ACTION_METHOD = "execute";
+    private static final String DEFAULT_VIEW_ACTION_INTERCEPTORS = "i18n";
     private static final String DEFAULT_STEP_PARAM_NAME = "step";
+    private static final String DEFAULT_STATE_STORE = SessionActionFlowStateStore.NAME;
 
     protected static final String NEXT_ACTION_PARAM = "nextAction";
     protected static final String PREV_ACTION_PARAM = "prevAction";
     protected static final String VIEW_ACTION_PARAM = "viewAction";
-
-    private static final String FLOW_SCOPE_KEY = "actionFlowScope";
-    private Map<String, List<PropertyDescriptor>> flowScopeFields;
-
-    /** Previous not special nor flow action. */
-    private String prevSimpleAction;
-    /** Action before first next. */
-    private String startAction;
+    /** Action context key of the view action URI for the view result. */
+    protected static final String VIEW_URI_KEY = "actionFlowViewUri";
+    /**
+     * Request parameter and action context key of the action flow instance
+     * identifier.
+     */
+    protected static final String FLOW_INSTANCE_PARAM = "actionFlowInstance";
 
     // interceptor parameters
     private String nextActionName = DEFAULT_NEXT_ACTION_NAME;
     private String prevActionName = DEFAULT_PREV_ACTION_NAME;
     private boolean forceFlowStepsOrder = true;
+    private boolean bypassNonFlowActions = false;
     private String viewActionPostfix = DEFAULT_VIEW_ACTION_POSTFIX;
     private String viewActionMethod = DEFAULT_VIEW_ACTION_METHOD;
     private String stepParameterName = DEFAULT_STEP_PARAM_NAME;
+    private String stateStoreName = DEFAULT_STATE_STORE;
+    private int maxFlowInstances = 0;
+    private long flowTimeout = 0;
+    private boolean scopeHashCheck = false;
+    private boolean directNext = false;
+    private boolean forwardView = false;
+    private Set<String> viewActionInterceptors = TextParseUtil
+            .commaDelimitedStringToSet(DEFAULT_VIEW_ACTION_INTERCEPTORS);
 
-    /** Holds action flow. */
-    private Map<String, ActionFlowStepConfig> flowMap;
-
-    /** Holds action flow steps data. */
-    private TreeMap<Integer, String> steps;
+    /**
+     * Compiled action flows of the packages using this interceptor, by package
+     * name. Inherited interceptor stacks share one instance among packages.
+     */
+    private final ConcurrentMap<String, ActionFlowConfig> flowConfigs = new ConcurrentHashMap<String, ActionFlowConfig>();
 
     /** Action flow configuration builder. */
     @Inject
     private ActionFlowConfigBuilder flowConfigBuilder;
 
+    /** Container for looking up action flow state store. */
+    @Inject
+    private Container container;
+
+    /** Remover of expired action flow states. */
+    @Inject
+    private ActionFlowStateReaper stateReaper;
+
+    /** Creates proxy of the next flow action in direct mode. */
+    @Inject
+    private ActionProxyFactory actionProxyFactory;
+
+    /** Action flow state store, resolved on first use. */
+    private volatile ActionFlowStateStore stateStore;
+
+    /** Store registered in the state reaper, guarded by this. */
+    private ExpiringActionFlowStateStore reapedStore;
+
     /** {@inheritDoc} */
-    @SuppressWarnings("unchecked")
     @Override
     public String intercept(ActionInvocation invocation) throws Exception {
         final String actionName = invocation.getInvocationContext().getName();
 
         // initialize action flow configuration
-        if (flowMap == null) {
-            initFlowConfiguration(invocation.getProxy().getConfig()
-                    .getPackageName());
+        final ActionFlowConfig flow = getFlowConfig(invocation);
+        final Map<String, ActionFlowStepConfig> flowMap = flow.getFlowMap();
+
+        // classify action
+        final ActionFlowActionConfig actionConfig = flow.getAction(actionName);
+        final ActionFlowActionConfig.Type actionType = actionConfig.getType();
+
+        // no role in action flow, just invoke
+        if (bypassNonFlowActions
+                && actionType == ActionFlowActionConfig.Type.OTHER) {
+            return invocation.invoke();
         }
 
-        Integer stepCount = 1;
+        final boolean flowAction = actionType == ActionFlowActionConfig.Type.FLOW;
+        final boolean flowViewAction = actionType == ActionFlowActionConfig.Type.VIEW;
+        final ActionFlowStepConfig stepConfig = actionConfig.getStepConfig();
 
-        final boolean flowAction;
-        final boolean lastFlowAction;
-        if (flowMap.containsKey(actionName)) {
-            flowAction = true;
+        // this is needed when input result is returned
+        final int stepCount = stepConfig == null ? 1 : stepConfig.getIndex();
 
-            // this is needed when input result is returned
-            stepCount = flowMap.get(actionName).getIndex();
+        final Map<String, Object> session = invocation.getInvocationContext()
+                .getSession();
+        final String packageName = invocation.getProxy().getConfig()
+                .getPackageName();
 
-            lastFlowAction = flowMap.get(actionName).getNextAction() == null;
-        } else {
-            flowAction = false;
-            lastFlowAction = false;
+        ActionFlowStateStore store = stateStore;
+        if (store == null) {
+            store = initStateStore();
         }
 
-        boolean flowViewAction = false;
-        // action name w/o view postfix
-        String plainActionName = null;
-        if (actionName.endsWith(viewActionPostfix)) {
-            plainActionName = actionName.substring(0,
-                    actionName.indexOf(viewActionPostfix));
-            if (flowMap.containsKey(plainActionName)) {
-                flowViewAction = true;
-
-                stepCount = flowMap.get(plainActionName).getIndex();
+        // start action begins new flow instance
+        final String instanceId = maxFlowInstances > 0 ? getFlowInstanceId(
+                invocation, actionType) : null;
+        invocation.getInvocationContext().put(FLOW_INSTANCE_PARAM, instanceId);
+
+        // the only read of the action flow state
+        ActionFlowState state = store.load(session,
+                getStateKey(packageName, instanceId));
+        if (state != null && state.getExpiryTime() != 0
+                && state.isExpired(System.currentTimeMillis())) {
+            // abandoned action flow
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Removing expired action flow state " + state);
             }
+            store.remove(session, getStateKey(packageName, instanceId));
+            if (instanceId != null) {
+                removeFlowInstance(session, packageName, instanceId);
+            }
+            flow.getStatistics().expiredState();
+            state = null;
+        }
+        final boolean stored = state != null;
+        if (stored && instanceId != null) {
+            touchFlowInstance(session, packageName, instanceId);
+        }
+        if (stored && flowTimeout > 0
+                && actionType != ActionFlowActionConfig.Type.START) {
+            prolongState(store, session, packageName, instanceId, state);
         }
-
-        Map<String, Object> session = invocation.getInvocationContext()
-                .getSession();
 
         // start
-        if (startAction != null && startAction.equals(actionName)) {
-            clearSession(session);
+        if (actionType == ActionFlowActionConfig.Type.START) {
+            if (stored) {
+                store.remove(session, getStateKey(packageName, instanceId));
+            } else {
+                flow.getStatistics().skippedSessionWrite();
+            }
+            state = null;
         }
 
+        // for the step parameter of the form
+        invocation.getInvocationContext().put(PREVIOUS_FLOW_ACTION,
+                state == null ? null : flow.getStepAction(state
+                        .getPreviousAction()));
+
         // action flow steps aware
         if (invocation.getAction() instanceof ActionFlowStepsAware) {
             ((ActionFlowStepsAware) invocation.getAction())
-                    .setActionFlowSteps(new ActionFlowStepsData(steps,
-                            stepCount));
+                    .setActionFlowSteps(flow.getStepsData(stepCount));
         }
 
         // scope
         if (flowAction || flowViewAction) {
-            handleFlowScope(invocation.getAction(), session, true);
+            handleFlowScope(flow, invocation.getAction(), state, true);
         }
 
         // not a flow nor next nor previous action, just invoke
-        if (!flowAction && !prevActionName.equals(actionName)
-                && !nextActionName.equals(actionName)) {
-            prevSimpleAction = actionName;
+        if (!flowAction && actionType != ActionFlowActionConfig.Type.PREV
+                && actionType != ActionFlowActionConfig.Type.NEXT) {
             return invocation.invoke();
         }
 
-        String previousFlowAction = (String) session.get(PREVIOUS_FLOW_ACTION);
+        if (state == null) {
+            state = new ActionFlowState();
+        }
+
+        int previousIndex = state.getPreviousAction();
+        String previousFlowAction = flow.getStepAction(previousIndex);
 
         if (previousFlowAction == null) {
             previousFlowAction = FIRST_FLOW_ACTION_NAME;
+            previousIndex = flow.getStepIndex(previousFlowAction);
         }
 
         // handling of back/forward buttons
@@ -254,7 +405,7 @@ public class ActionFlowInterceptor extends AbstractInterceptor {
                 .getParameters().get(stepParameterName);
         boolean overriddenWithStep = false;
         if (stepParam != null && stepParam.length > 0) {
-            String step = "" + stepParam[0];
+            String step = String.valueOf(stepParam[0]);
 
             if (step.isEmpty()) {
                 step = FIRST_FLOW_ACTION_NAME;
@@ -275,6 +426,7 @@ public class ActionFlowInterceptor extends AbstractInterceptor {
                 }
 
                 previousFlowAction = step;
+                previousIndex = flowMap.get(step).getIndex();
                 overriddenWithStep = true;
             }
         }
@@ -282,9 +434,11 @@ public class ActionFlowInterceptor extends AbstractInterceptor {
         String nextAction = null;
         String prevAction = null;
 
-        if (flowMap.containsKey(previousFlowAction)) {
-            nextAction = flowMap.get(previousFlowAction).getNextAction();
-            prevAction = flowMap.get(previousFlowAction).getPrevAction();
+        // neighbours are resolved by step index, the first flow action is
+        // previous to itself
+        if (previousIndex != ActionFlowState.NO_ACTION) {
+            nextAction = flow.getStepAction(previousIndex + 1);
+            prevAction = flow.getStepAction(Math.max(previousIndex - 1, 0));
         }
 
         if (LOG.isDebugEnabled()) {
@@ -293,281 +447,828 @@ public class ActionFlowInterceptor extends AbstractInterceptor {
                     + ", prevAction: " + prevAction);
         }
 
-        final Integer highestCurrentIndex;
-        if (session.containsKey(HIGHEST_CURRENT_ACTION_INDEX)
-                && session.get(HIGHEST_CURRENT_ACTION_INDEX) != null) {
-            highestCurrentIndex = (Integer) session
-                    .get(HIGHEST_CURRENT_ACTION_INDEX);
-        } else {
-            highestCurrentIndex = 0;
-        }
+        final int highestCurrentIndex = state.getHighestCurrentIndex();
 
         // force order of flow actions
         if (forceFlowStepsOrder
                 && flowAction
-                && (highestCurrentIndex.intValue() + 1) < flowMap.get(
-                        actionName).getIndex()) {
+                && (highestCurrentIndex + 1) < stepConfig
+                        .getIndex()) {
             if (LOG.isDebugEnabled()) {
                 LOG.debug("The forceFlowStepsOrder parameter is set to true. The '"
                         + actionName
                         + "' action will not be executed because it is called in the wrong order.");
             }
 
-            if (overriddenWithStep) {
-                invocation
-                        .getInvocationContext()
-                        .getValueStack()
-                        .set(VIEW_ACTION_PARAM,
-                                previousFlowAction + viewActionPostfix);
-            } else {
-                invocation.getInvocationContext().getValueStack()
-                        .set(VIEW_ACTION_PARAM, nextAction + viewActionPostfix);
+            final String viewFlowAction = overriddenWithStep ? previousFlowAction
+                    : nextAction;
+            if (forwardView) {
+                return executeAction(invocation,
+                        getViewActionName(flowMap, viewFlowAction));
             }
+            setViewAction(invocation, flowMap, viewFlowAction);
             return GLOBAL_VIEW_RESULT;
         }
 
-        Map<String, String> skipMap = null;
-        if (session.containsKey(SKIP_ACTIONS)
-                && session.get(SKIP_ACTIONS) instanceof Map) {
-            skipMap = (Map<String, String>) session.get(SKIP_ACTIONS);
-        }
-
-        if (nextActionName.equals(actionName)) {
-            // set start action
-            if (startAction == null) {
-                startAction = prevSimpleAction;
-            }
-
+        if (actionType == ActionFlowActionConfig.Type.NEXT) {
             invocation.getInvocationContext().getValueStack()
                     .set(NEXT_ACTION_PARAM, nextAction);
-        } else if (prevActionName.equals(actionName)) {
+
+            if (directNext && nextAction != null) {
+                return executeAction(invocation, nextAction);
+            }
+        } else if (actionType == ActionFlowActionConfig.Type.PREV) {
             String prevView = null;
             if (FIRST_FLOW_ACTION_NAME.equals(previousFlowAction)) {
                 prevView = nextAction;
             } else {
-                if (skipMap != null && skipMap.containsKey(nextAction)) {
-                    prevView = skipMap.get(nextAction);
+                final int skipAction = state.getSkipAction(flow
+                        .getStepIndex(nextAction));
+                if (skipAction != ActionFlowState.NO_ACTION) {
+                    prevView = flow.getStepAction(skipAction);
 
                     // override prevAction
-                    prevAction = flowMap.get(prevView).getPrevAction();
+                    prevAction = flow.getStepAction(skipAction - 1);
                 } else {
                     prevView = previousFlowAction;
                 }
             }
 
             invocation.getInvocationContext().getValueStack()
-                    .set(PREV_ACTION_PARAM, prevView + viewActionPostfix);
-
-            session.put(PREVIOUS_FLOW_ACTION, prevAction);
-        }
-
-        // add pre-result listener on correct flow action
-        if (flowAction && nextAction.equals(actionName)) {
-            invocation.addPreResultListener(new PreResultListener() {
-                public void beforeResult(ActionInvocation invocation,
-                        String resultCode) {
-                    if (Action.SUCCESS.equals(resultCode)) {
-                        Map<String, Object> session = invocation
-                                .getInvocationContext().getSession();
-
-                        // action flow aware
-                        String nextFromAction = null;
-                        if (invocation.getAction() instanceof ActionFlowAware) {
-                            nextFromAction = ((ActionFlowAware) invocation
-                                    .getAction())
-                                    .nextActionFlowAction(actionName);
-
-                            // if null just ignore otherwise check if returned
-                            // action is a flow action
-                            if (nextFromAction != null
-                                    && !flowMap.containsKey(nextFromAction)) {
-                                nextFromAction = null;
-                            }
-                        }
+                    .set(PREV_ACTION_PARAM,
+                            getViewActionName(flowMap, prevView));
 
-                        Map<String, String> skipMap = null;
-                        if (session.containsKey(SKIP_ACTIONS)
-                                && session.get(SKIP_ACTIONS) instanceof Map) {
-                            skipMap = (Map<String, String>) session
-                                    .get(SKIP_ACTIONS);
-                        } else {
-                            skipMap = new HashMap<String, String>();
-                        }
-                        if (nextFromAction != null) {
-                            skipMap.put(nextFromAction, actionName);
+            state.setPreviousAction(flow.getStepIndex(prevAction));
+            invocation.getInvocationContext().put(PREVIOUS_FLOW_ACTION,
+                    prevAction);
 
-                            String overriddenName = flowMap.get(nextFromAction)
-                                    .getPrevAction();
+            // before invoke, result could execute view action right away
+            putState(flow, store, session, packageName, instanceId, state);
+        }
 
-                            // override actionName
-                            session.put(OVERRIDE_ACTION_NAME, overriddenName);
-                        } else if (!lastFlowAction) {
-                            // get next action if it isn't the last flow action
-                            // and not overridden from ActionFlowAware
-                            nextFromAction = flowMap.get(actionName)
-                                    .getNextAction();
+        // add pre-result listener on flow action, the state is completed
+        // before the result, which could render or redirect right away
+        if (flowAction) {
+            final ActionContext context = invocation.getInvocationContext();
+            context.put(FLOW_STATE_KEY, state);
+            context.put(FLOW_STATE_STORED_KEY, Boolean.valueOf(stored));
+            context.put(NEXT_FLOW_ACTION_KEY,
+                    Boolean.valueOf(nextAction.equals(actionName)));
+            invocation.addPreResultListener(this);
+        }
 
-                            skipMap.remove(nextFromAction);
-                        }
+        final String result = invocation.invoke();
 
-                        session.put(SKIP_ACTIONS, skipMap);
-
-                        // execute global view result on not last flow action or
-                        // if next action is overridden from ActionFlowAware
-                        if (!lastFlowAction || nextFromAction != null) {
-                            invocation
-                                    .getInvocationContext()
-                                    .getValueStack()
-                                    .set(VIEW_ACTION_PARAM,
-                                            nextFromAction + viewActionPostfix);
-                            invocation.setResultCode(GLOBAL_VIEW_RESULT);
-                        }
-                    }
+        if (flowAction) {
+            final ActionContext context = invocation.getInvocationContext();
+            // listener wasn't called, e.g. the result wasn't executed
+            if (context.get(FLOW_STATE_KEY) == state) {
+                completeFlowAction(invocation, result);
+            }
+
+            // view of the next step in place of the redirect
+            final String forwardViewAction = (String) context
+                    .get(FORWARD_VIEW_ACTION_KEY);
+            if (forwardViewAction != null) {
+                context.put(FORWARD_VIEW_ACTION_KEY, null);
+                return executeAction(invocation, forwardViewAction);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Executes the given action of the same namespace within the current
+     * request, i.e. the next flow action in place of the <code>chain</code>
+     * result of the 'next' action or the view action in place of the redirect
+     * of the flow action. Action flow data is kept in the action flow state, so
+     * the current action is removed from the value stack and the chaining
+     * interceptor of the executed action doesn't copy its properties.
+     * 
+     * @param invocation
+     *            current action invocation.
+     * @param nextAction
+     *            name of the action to execute.
+     * @return {@link Action#NONE}, the result of the executed action is
+     *         already executed.
+     * @throws Exception
+     *             when the executed action fails.
+     */
+    private String executeAction(final ActionInvocation invocation,
+            final String nextAction) throws Exception {
+        final ActionContext context = invocation.getInvocationContext();
+        final ValueStack stack = context.getValueStack();
+        stack.getRoot().remove(invocation.getAction());
+
+        final Map<String, Object> extraContext = new HashMap<String, Object>();
+        extraContext.put(ActionContext.VALUE_STACK, stack);
+        extraContext.put(ActionContext.PARAMETERS, context.getParameters());
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Executing action " + nextAction + " in place of "
+                    + context.getName());
+        }
+
+        final ActionProxy proxy = actionProxyFactory.createActionProxy(
+                invocation.getProxy().getNamespace(), nextAction, null,
+                extraContext, invocation.getProxy().getExecuteResult(), true);
+        proxy.execute();
+
+        return Action.NONE;
+    }
+
+    /**
+     * Handles result of the flow action. The interceptor itself is used as
+     * listener, so it is stateless and gets everything from the given
+     * invocation and compiled action flow.
+     * 
+     * @param invocation
+     *            action invocation.
+     * @param resultCode
+     *            result code of the action.
+     */
+    @Override
+    public void beforeResult(ActionInvocation invocation, String resultCode) {
+        String result = resultCode;
+        if (Action.SUCCESS.equals(resultCode)
+                && Boolean.TRUE.equals(invocation.getInvocationContext().get(
+                        NEXT_FLOW_ACTION_KEY))) {
+            final String actionName = invocation.getInvocationContext()
+                    .getName();
+            final ActionFlowConfig flow = getFlowConfig(invocation);
+            final Map<String, ActionFlowStepConfig> flowMap = flow
+                    .getFlowMap();
+            final ActionFlowStepConfig stepConfig = flowMap.get(actionName);
+            final boolean lastFlowAction = flow.getStepAction(stepConfig
+                    .getIndex() + 1) == null;
+
+            // put into action context by intercept
+            final ActionFlowState state = (ActionFlowState) invocation
+                    .getInvocationContext().get(FLOW_STATE_KEY);
+
+            // action flow aware
+            String nextFromAction = null;
+            if (invocation.getAction() instanceof ActionFlowAware) {
+                nextFromAction = ((ActionFlowAware) invocation.getAction())
+                        .nextActionFlowAction(actionName);
+
+                // if null just ignore otherwise check if returned
+                // action is a flow action
+                if (nextFromAction != null
+                        && !flowMap.containsKey(nextFromAction)) {
+                    nextFromAction = null;
                 }
-            });
+            }
+
+            if (nextFromAction != null) {
+                final int nextFromIndex = flowMap.get(nextFromAction)
+                        .getIndex();
+                state.setSkipAction(nextFromIndex, stepConfig.getIndex());
+
+                // override actionName with the step before the returned one
+                state.setOverrideAction(nextFromIndex - 1);
+            } else if (!lastFlowAction) {
+                // get next action if it isn't the last flow action
+                // and not overridden from ActionFlowAware
+                nextFromAction = flow.getStepAction(stepConfig.getIndex() + 1);
+
+                state.setSkipAction(flow.getStepIndex(nextFromAction),
+                        ActionFlowState.NO_ACTION);
+            }
+
+            // execute global view result on not last flow action or
+            // if next action is overridden from ActionFlowAware
+            if (!lastFlowAction || nextFromAction != null) {
+                if (forwardView) {
+                    // view action is executed by intercept after this result
+                    invocation.getInvocationContext().put(
+                            FORWARD_VIEW_ACTION_KEY,
+                            getViewActionName(flowMap, nextFromAction));
+                    invocation.setResultCode(Action.NONE);
+                } else {
+                    setViewAction(invocation, flowMap, nextFromAction);
+                    invocation.setResultCode(GLOBAL_VIEW_RESULT);
+                }
+                result = GLOBAL_VIEW_RESULT;
+            }
         }
 
-        final String result = invocation.invoke();
+        completeFlowAction(invocation, result);
+    }
 
-        // scope
-        if (flowAction) {
-            handleFlowScope(invocation.getAction(), session, false);
+    /**
+     * Completes action flow state after the flow action was executed and
+     * stores it.
+     * 
+     * @param invocation
+     *            action invocation.
+     * @param result
+     *            result code of the action.
+     */
+    private void completeFlowAction(final ActionInvocation invocation,
+            final String result) {
+        final ActionContext context = invocation.getInvocationContext();
+
+        // put into action context by intercept
+        final ActionFlowState state = (ActionFlowState) context
+                .get(FLOW_STATE_KEY);
+        if (state == null) {
+            return;
         }
+        // flow action is completed only once
+        context.put(FLOW_STATE_KEY, null);
+
+        final String actionName = context.getName();
+        final ActionFlowConfig flow = getFlowConfig(invocation);
+        final Map<String, ActionFlowStepConfig> flowMap = flow.getFlowMap();
+        final ActionFlowStateStore store = stateStore;
+        final Map<String, Object> session = context.getSession();
+        final String packageName = invocation.getProxy().getConfig()
+                .getPackageName();
+        final String instanceId = (String) context.get(FLOW_INSTANCE_PARAM);
+
+        // scope
+        handleFlowScope(flow, invocation.getAction(), state, false);
 
-        if (GLOBAL_VIEW_RESULT.equals(result) && flowAction) {
+        if (GLOBAL_VIEW_RESULT.equals(result)) {
             // check if action name is overridden in ActionFlowAware
-            // remove override action name from session
-            String actionNameOverridden = (String) session
-                    .remove(OVERRIDE_ACTION_NAME);
+            // remove override action name from state
+            String actionNameOverridden = flow.getStepAction(state
+                    .getOverrideAction());
+            state.setOverrideAction(ActionFlowState.NO_ACTION);
 
             if (actionNameOverridden == null) {
                 actionNameOverridden = actionName;
             }
 
-            session.put(PREVIOUS_FLOW_ACTION, actionNameOverridden);
+            final int overriddenIndex = flowMap.get(actionNameOverridden)
+                    .getIndex();
+            state.setPreviousAction(overriddenIndex);
+            context.put(PREVIOUS_FLOW_ACTION, actionNameOverridden);
 
             // set highest current action index on a view result
-            if (flowMap.get(actionNameOverridden).getIndex() > highestCurrentIndex) {
-                session.put(HIGHEST_CURRENT_ACTION_INDEX,
-                        flowMap.get(actionNameOverridden).getIndex());
+            if (overriddenIndex > state.getHighestCurrentIndex()) {
+                state.setHighestCurrentIndex(overriddenIndex);
+            }
+        }
+
+        if (Action.SUCCESS.equals(result)
+                && flow.getStepAction(flowMap.get(actionName)
+                        .getIndex() + 1) == null) {
+            // last flow action
+            context.put(PREVIOUS_FLOW_ACTION, null);
+            if (Boolean.TRUE.equals(context.get(FLOW_STATE_STORED_KEY))) {
+                store.remove(session, getStateKey(packageName, instanceId));
+                if (instanceId != null) {
+                    removeFlowInstance(session, packageName, instanceId);
+                }
+            } else {
+                flow.getStatistics().skippedSessionWrite();
             }
+        } else {
+            // the only write of the action flow state
+            putState(flow, store, session, packageName, instanceId, state);
         }
+    }
 
-        // last flow action
-        if (Action.SUCCESS.equals(result) && flowAction && lastFlowAction) {
-            clearSession(session);
+    /**
+     * Sets view action which the action flow view result redirects to.
+     * {@link ActionFlowViewResult} gets the precompiled URI of the view action
+     * from the action context, the <code>redirectAction</code> result gets the
+     * name of the view action from the value stack.
+     * 
+     * @param invocation
+     *            action invocation.
+     * @param flowMap
+     *            map of the action flow.
+     * @param flowActionName
+     *            name of the flow action which view action to redirect to.
+     */
+    private void setViewAction(final ActionInvocation invocation,
+            final Map<String, ActionFlowStepConfig> flowMap,
+            final String flowActionName) {
+        final ActionFlowStepConfig stepConfig = flowMap.get(flowActionName);
+        if (stepConfig != null && stepConfig.getViewUri() != null) {
+            invocation.getInvocationContext().put(VIEW_URI_KEY,
+                    stepConfig.getViewUri());
+        } else {
+            invocation.getInvocationContext().getValueStack()
+                    .set(VIEW_ACTION_PARAM,
+                            getViewActionName(flowMap, flowActionName));
         }
+    }
 
-        return result;
+    /**
+     * Gets the name of the view action of the given flow action.
+     * 
+     * @param flowMap
+     *            map of the action flow.
+     * @param flowActionName
+     *            name of the flow action.
+     * @return Precomputed name of the view action or name of the flow action
+     *         with {@link #viewActionPostfix}.
+     */
+    private String getViewActionName(
+            final Map<String, ActionFlowStepConfig> flowMap,
+            final String flowActionName) {
+        final ActionFlowStepConfig stepConfig = flowMap.get(flowActionName);
+        if (stepConfig != null && stepConfig.getViewAction() != null) {
+            return stepConfig.getViewAction();
+        }
+        return flowActionName + viewActionPostfix;
+    }
+
+    /**
+     * Gets compiled action flow of the package of the given invocation.
+     * 
+     * @param invocation
+     *            action invocation.
+     * @return Compiled action flow.
+     */
+    private ActionFlowConfig getFlowConfig(final ActionInvocation invocation) {
+        final String packageName = invocation.getProxy().getConfig()
+                .getPackageName();
+        final ActionFlowConfig flow = flowConfigs.get(packageName);
+        if (flow != null) {
+            return flow;
+        }
+        return initFlowConfiguration(packageName);
     }
 
-    private void initFlowConfiguration(final String packageName) {
-        flowMap = flowConfigBuilder.createFlowMap(packageName, nextActionName,
+    private ActionFlowConfig initFlowConfiguration(final String packageName) {
+        // flows are compiled on startup by ActionFlowPackageProvider
+        ActionFlowConfig flow = flowConfigBuilder.getCompiledFlow(packageName);
+        if (flow == null) {
+            flow = compileFlow(packageName);
+        }
+
+        // builder returns the same instance to all threads
+        final ActionFlowConfig existing = flowConfigs.putIfAbsent(packageName,
+                flow);
+        return existing == null ? flow : existing;
+    }
+
+    /**
+     * Compiles action flow of the given package using parameters of this
+     * interceptor.
+     * 
+     * @param packageName
+     *            Name of the package.
+     * @return Compiled action flow.
+     */
+    ActionFlowConfig compileFlow(final String packageName) {
+        return flowConfigBuilder.compileFlow(packageName, nextActionName,
                 prevActionName, viewActionPostfix, viewActionMethod);
+    }
+
+    /**
+     * Looks up action flow state store configured for this interceptor.
+     * 
+     * @return Action flow state store.
+     */
+    private synchronized ActionFlowStateStore initStateStore() {
+        if (stateStore != null) {
+            return stateStore;
+        }
+        final ActionFlowStateStore store = container.getInstance(
+                ActionFlowStateStore.class, stateStoreName);
+        if (store == null) {
+            throw new ConfigurationException(
+                    "There is no action flow state store with name '"
+                            + stateStoreName + "'.");
+        }
+        if (flowTimeout > 0 && store instanceof ExpiringActionFlowStateStore
+                && stateReaper != null) {
+            reapedStore = (ExpiringActionFlowStateStore) store;
+            stateReaper.register(reapedStore);
+        }
+        stateStore = store;
+        return store;
+    }
+
+    /**
+     * Prolongs expiry time of the action flow state of an active user. The
+     * state is written only when more than half of the timeout has passed
+     * since the last prolongation, so reading requests rarely write.
+     * 
+     * @param store
+     *            action flow state store.
+     * @param session
+     *            session map.
+     * @param packageName
+     *            name of the action flow package.
+     * @param instanceId
+     *            action flow instance identifier or <code>null</code>.
+     * @param state
+     *            action flow state.
+     */
+    private void prolongState(final ActionFlowStateStore store,
+            final Map<String, Object> session, final String packageName,
+            final String instanceId, final ActionFlowState state) {
+        final long now = System.currentTimeMillis();
+        final long timeout = flowTimeout * 1000L;
+        if (state.getExpiryTime() - now < timeout / 2) {
+            state.setExpiryTime(now + timeout);
+            if (!state.isModified()) {
+                store.store(session, getStateKey(packageName, instanceId),
+                        state);
+            }
+        }
+    }
+
+    /**
+     * Stores action flow state if it was modified. Every put into session marks
+     * it as dirty, e.g. for replication in cluster.
+     * 
+     * @param flow
+     *            compiled action flow, counts the skipped writes.
+     * @param store
+     *            action flow state store.
+     * @param session
+     *            session map.
+     * @param packageName
+     *            name of the action flow package.
+     * @param instanceId
+     *            action flow instance identifier or <code>null</code>.
+     * @param state
+     *            action flow state.
+     */
+    private void putState(final ActionFlowConfig flow,
+            final ActionFlowStateStore store,
+            final Map<String, Object> session, final String packageName,
+            final String instanceId, final ActionFlowState state) {
+        if (state.isModified()) {
+            if (flowTimeout > 0) {
+                state.setExpiryTime(System.currentTimeMillis() + flowTimeout
+                        * 1000L);
+            }
+            store.store(session, getStateKey(packageName, instanceId), state);
+            state.setModified(false);
+            if (instanceId != null) {
+                addFlowInstance(store, session, packageName, instanceId);
+            }
+        } else {
+            flow.getStatistics().skippedSessionWrite();
+        }
+    }
 
-        flowScopeFields = flowConfigBuilder.createFlowScopeFields(packageName);
+    /**
+     * Gets the key of action flow state. The key is namespaced with the
+     * package, so flows of different packages don't share the state in one
+     * session.
+     * 
+     * @param packageName
+     *            name of the action flow package.
+     * @param instanceId
+     *            action flow instance identifier or <code>null</code>.
+     * @return Key of action flow state in the state store.
+     */
+    private static String getStateKey(final String packageName,
+            final String instanceId) {
+        if (instanceId == null) {
+            return FLOW_STATE_KEY + '.' + packageName;
+        }
+        return FLOW_STATE_KEY + '.' + packageName + '.' + instanceId;
+    }
 
-        // create action flow steps data
-        if (flowMap != null) {
-            steps = new TreeMap<Integer, String>();
-            for (ActionFlowStepConfig cfg : flowMap.values()) {
-                if (cfg.getIndex() < flowMap.size() - 1) {
-                    steps.put(cfg.getIndex() + 1, cfg.getNextAction());
+    /**
+     * Gets action flow instance identifier from request. New identifier is
+     * generated for the start action and for the flow action without one.
+     * 
+     * @param invocation
+     *            action invocation.
+     * @param actionType
+     *            type of the action.
+     * @return Action flow instance identifier or <code>null</code> if there is
+     *         none.
+     */
+    String getFlowInstanceId(final ActionInvocation invocation,
+            final ActionFlowActionConfig.Type actionType) {
+        if (actionType != ActionFlowActionConfig.Type.START) {
+            final Object param = invocation.getInvocationContext()
+                    .getParameters().get(FLOW_INSTANCE_PARAM);
+            if (param instanceof Object[] && ((Object[]) param).length > 0) {
+                final String id = String.valueOf(((Object[]) param)[0]);
+                if (isFlowInstanceId(id)) {
+                    return id;
                 }
             }
+            if (actionType != ActionFlowActionConfig.Type.FLOW) {
+                return null;
+            }
         }
+        return Long.toString(INSTANCE_ID_RANDOM.nextLong() & Long.MAX_VALUE,
+                Character.MAX_RADIX);
     }
 
-    void clearSession(final Map<String, Object> session) {
-        session.put(PREVIOUS_FLOW_ACTION, null);
-        session.put(FLOW_SCOPE_KEY, null);
+    private static boolean isFlowInstanceId(final String id) {
+        if (id.isEmpty() || id.length() > MAX_INSTANCE_ID_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            final char c = id.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'z')) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-        session.put(HIGHEST_CURRENT_ACTION_INDEX, null);
+    /**
+     * Marks action flow instance as the most recently used one.
+     * 
+     * @param session
+     *            session map.
+     * @param packageName
+     *            name of the action flow package.
+     * @param instanceId
+     *            action flow instance identifier.
+     */
+    private void touchFlowInstance(final Map<String, Object> session,
+            final String packageName, final String instanceId) {
+        final Map<String, Boolean> instances = getFlowInstances(session,
+                packageName, false);
+        if (instances != null) {
+            synchronized (instances) {
+                instances.get(instanceId);
+            }
+        }
+    }
 
-        session.put(SKIP_ACTIONS, null);
+    /**
+     * Registers action flow instance and removes the least recently used ones
+     * above {@link #maxFlowInstances}.
+     * 
+     * @param store
+     *            action flow state store.
+     * @param session
+     *            session map.
+     * @param packageName
+     *            name of the action flow package.
+     * @param instanceId
+     *            action flow instance identifier.
+     */
+    private void addFlowInstance(final ActionFlowStateStore store,
+            final Map<String, Object> session, final String packageName,
+            final String instanceId) {
+        final Map<String, Boolean> instances = getFlowInstances(session,
+                packageName, true);
+        synchronized (instances) {
+            if (instances.containsKey(instanceId)) {
+                return;
+            }
+            instances.put(instanceId, Boolean.TRUE);
+
+            final Iterator<String> it = instances.keySet().iterator();
+            while (instances.size() > maxFlowInstances) {
+                final String eldest = it.next();
+                it.remove();
+                store.remove(session, getStateKey(packageName, eldest));
 
-        session.put(OVERRIDE_ACTION_NAME, null);
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Removed the least recently used action flow instance '"
+                            + eldest + "'.");
+                }
+            }
+            // changed, put again for replication
+            session.put(FLOW_INSTANCES_KEY + '.' + packageName, instances);
+        }
+    }
+
+    /**
+     * Unregisters finished action flow instance.
+     * 
+     * @param session
+     *            session map.
+     * @param packageName
+     *            name of the action flow package.
+     * @param instanceId
+     *            action flow instance identifier.
+     */
+    private void removeFlowInstance(final Map<String, Object> session,
+            final String packageName, final String instanceId) {
+        final Map<String, Boolean> instances = getFlowInstances(session,
+                packageName, false);
+        if (instances != null) {
+            synchronized (instances) {
+                if (instances.remove(instanceId) != null) {
+                    session.put(FLOW_INSTANCES_KEY + '.' + packageName,
+                            instances);
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Boolean> getFlowInstances(
+            final Map<String, Object> session, final String packageName,
+            final boolean create) {
+        final String key = FLOW_INSTANCES_KEY + '.' + packageName;
+        Object instances = session.get(key);
+        if (instances == null && create) {
+            // access ordered, the eldest is the least recently used
+            instances = new LinkedHashMap<String, Boolean>(16, 0.75f, true);
+            session.put(key, instances);
+        }
+        return (Map<String, Boolean>) instances;
     }
 
     /**
      * Handles action flow scope fields.
      * 
+     * @param flow
+     *            compiled action flow.
      * @param action
      *            action object.
-     * @param session
-     *            session map.
+     * @param state
+     *            action flow state.
      * @param fromFlowScope
-     *            whether to store value into the session or retrieve it. On
-     *            <code>true</code> sets value from session into the action
+     *            whether to store value into the flow state or retrieve it. On
+     *            <code>true</code> sets value from flow state into the action
      *            field, on <code>false</code> puts value from action field to
-     *            session.
+     *            flow state.
      */
-    @SuppressWarnings("unchecked")
-    void handleFlowScope(final Object action,
-            final Map<String, Object> session, final boolean fromFlowScope) {
-        if (action != null && flowScopeFields != null && session != null) {
-            final String actionClassName = action.getClass().getName();
-
-            Map<String, Object> scopeMap = null;
-            if (session.containsKey(FLOW_SCOPE_KEY)
-                    && session.get(FLOW_SCOPE_KEY) instanceof Map) {
-                scopeMap = (Map<String, Object>) session.get(FLOW_SCOPE_KEY);
-            }
-            if (scopeMap == null) {
-                scopeMap = new HashMap<String, Object>();
-            }
+    void handleFlowScope(final ActionFlowConfig flow, final Object action,
+            final ActionFlowState state, final boolean fromFlowScope) {
+        if (action != null && flow != null && state != null) {
+            final ActionFlowScopeConfig scope = flow.getScopeConfig(action
+                    .getClass().getName());
+
+            // nothing to restore into the action
+            if (scope != null && (!fromFlowScope || state.hasScopeValues())) {
+                final Object[] values = new Object[scope.size()];
+                try {
+                    scope.getCopier().read(action, values);
+
+                    if (fromFlowScope) {
+                        boolean restore = false;
+                        for (int i = 0; i < values.length; i++) {
+                            final Object scopeVal = values[i] == null ? state
+                                    .getScopeValue(scope.getOrdinal(i)) : null;
+                            if (scopeVal != null) {
+                                if (LOG.isDebugEnabled()) {
+                                    LOG.debug("Setting the value: '"
+                                            + scopeVal
+                                            + "' for field: '"
+                                            + scope.getScopeKey(i)
+                                            + "' from the action flow scope into the action.");
+                                }
 
-            if (flowScopeFields.containsKey(actionClassName)
-                    && flowScopeFields.get(actionClassName) != null) {
-                for (PropertyDescriptor pd : flowScopeFields
-                        .get(actionClassName)) {
-                    try {
-                        final Method getter = pd.getReadMethod();
-                        if (getter != null) {
-                            final Object val = getter.invoke(action);
-                            final String scopeFieldKey = getter.toString();
-
-                            if (fromFlowScope) {
-                                if (val == null
-                                        && scopeMap.containsKey(scopeFieldKey)) {
-                                    final Method setter = pd.getWriteMethod();
-                                    if (setter != null) {
+                                restore = true;
+                            }
+                            // only fields without value are written
+                            values[i] = scopeVal;
+                        }
+                        if (restore) {
+                            scope.getCopier().write(action, values);
+                        }
+                        if (scopeHashCheck) {
+                            putScopeHashes(scope, state);
+                        }
+                    } else {
+                        state.ensureScopeCapacity(flow.getScopeSize());
+                        final int[] hashes = scopeHashCheck ? getScopeHashes(scope)
+                                : null;
+                        for (int i = 0; i < values.length; i++) {
+                            if (values[i] != null) {
+                                // the same object as the stored one is
+                                // written only if it was changed inside
+                                if (values[i] == state.getScopeValue(scope
+                                        .getOrdinal(i))) {
+                                    if (hashes != null
+                                            && hashes[i] != values[i]
+                                                    .hashCode()) {
                                         if (LOG.isDebugEnabled()) {
-                                            LOG.debug("Setting the value: '"
-                                                    + scopeMap
-                                                            .get(scopeFieldKey)
-                                                    + "' for key: '"
-                                                    + scopeFieldKey
-                                                    + "' from the action flow scope into the action.");
+                                            LOG.debug("The value of field: '"
+                                                    + scope.getScopeKey(i)
+                                                    + "' was changed inside.");
                                         }
-
-                                        setter.invoke(action,
-                                                scopeMap.get(scopeFieldKey));
+                                        state.setModified(true);
+                                    } else {
+                                        flow.getStatistics()
+                                                .avoidedScopeWrite();
                                     }
+                                    continue;
                                 }
-                            } else {
-                                if (val != null) {
-                                    if (LOG.isDebugEnabled()) {
-                                        LOG.debug("Storing the value: '"
-                                                + val
-                                                + "' for key: '"
-                                                + scopeFieldKey
-                                                + "' from the action into the action flow scope.");
-                                    }
 
-                                    scopeMap.put(scopeFieldKey, val);
-                                    session.put(FLOW_SCOPE_KEY, scopeMap);
+                                if (LOG.isDebugEnabled()) {
+                                    LOG.debug("Storing the value: '"
+                                            + values[i]
+                                            + "' for field: '"
+                                            + scope.getScopeKey(i)
+                                            + "' from the action into the action flow scope.");
                                 }
+
+                                state.setScopeValue(scope.getOrdinal(i),
+                                        values[i]);
                             }
                         }
-                    } catch (Exception e) {
-                        LOG.warn("In handleFlowScope", e);
                     }
+                } catch (Exception e) {
+                    LOG.warn("In handleFlowScope", e);
                 }
             }
         }
     }
 
+    /**
+     * Puts into action context hash codes of the action flow scope values held
+     * by the state.
+     * 
+     * @param scope
+     *            action flow scope of the action class.
+     * @param state
+     *            action flow state.
+     */
+    private void putScopeHashes(final ActionFlowScopeConfig scope,
+            final ActionFlowState state) {
+        final ActionContext context = ActionContext.getContext();
+        if (context != null) {
+            final int[] hashes = new int[scope.size()];
+            for (int i = 0; i < hashes.length; i++) {
+                final Object value = state.getScopeValue(scope.getOrdinal(i));
+                hashes[i] = value == null ? 0 : value.hashCode();
+            }
+            context.put(SCOPE_HASHES_KEY, hashes);
+        }
+    }
+
+    /**
+     * Gets from action context hash codes of the action flow scope values
+     * taken when they were set into the action.
+     * 
+     * @param scope
+     *            action flow scope of the action class.
+     * @return Hash codes or <code>null</code> if there are none.
+     */
+    private int[] getScopeHashes(final ActionFlowScopeConfig scope) {
+        final ActionContext context = ActionContext.getContext();
+        final Object hashes = context == null ? null : context
+                .get(SCOPE_HASHES_KEY);
+        return hashes instanceof int[]
+                && ((int[]) hashes).length == scope.size() ? (int[]) hashes
+                : null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void destroy() {
+        // other interceptors may still use the reaper
+        if (stateReaper != null && reapedStore != null) {
+            stateReaper.unregister(reapedStore);
+            reapedStore = null;
+        }
+    }
+
+    /**
+     * Gets counters of the action flow of the given package. Counters are
+     * kept per package, so they are the same for all actions of the package
+     * whichever interceptor instance they use.
+     * 
+     * @param packageName
+     *            Name of the package.
+     * @return Counters of the action flow.
+     */
+    public ActionFlowStatistics getStatistics(final String packageName) {
+        return flowConfigBuilder.getFlowStatistics(packageName);
+    }
+
+    /**
+     * @return the nextActionName
+     */
+    String getNextActionName() {
+        return nextActionName;
+    }
+
+    /**
+     * @return the prevActionName
+     */
+    String getPrevActionName() {
+        return prevActionName;
+    }
+
+    /**
+     * @return the viewActionPostfix
+     */
+    String getViewActionPostfix() {
+        return viewActionPostfix;
+    }
+
+    /**
+     * @return the viewActionMethod
+     */
+    String getViewActionMethod() {
+        return viewActionMethod;
+    }
+
+    /**
+     * @return the names of the viewActionInterceptors
+     */
+    Set<String> getViewActionInterceptors() {
+        return viewActionInterceptors;
+    }
+
     /**
      * @param nextActionName
      *            the nextActionName to set
@@ -592,6 +1293,63 @@ public class ActionFlowInterceptor extends AbstractInterceptor {
         this.forceFlowStepsOrder = Boolean.valueOf(value).booleanValue();
     }
 
+    /**
+     * @param stateStore
+     *            the name of action flow state store to set
+     */
+    public void setStateStore(String stateStore) {
+        this.stateStoreName = stateStore;
+        this.stateStore = null;
+    }
+
+    /**
+     * @param value
+     *            the maxFlowInstances to set
+     */
+    public void setMaxFlowInstances(String value) {
+        this.maxFlowInstances = Integer.parseInt(value.trim());
+    }
+
+    /**
+     * @param value
+     *            the flowTimeout in seconds to set
+     */
+    public void setFlowTimeout(String value) {
+        this.flowTimeout = Long.parseLong(value.trim());
+    }
+
+    /**
+     * @param value
+     *            the scopeHashCheck to set
+     */
+    public void setScopeHashCheck(String value) {
+        this.scopeHashCheck = Boolean.valueOf(value).booleanValue();
+    }
+
+    /**
+     * @param value
+     *            the directNext to set
+     */
+    public void setDirectNext(String value) {
+        this.directNext = Boolean.valueOf(value).booleanValue();
+    }
+
+    /**
+     * @param value
+     *            the forwardView to set
+     */
+    public void setForwardView(String value) {
+        this.forwardView = Boolean.valueOf(value).booleanValue();
+    }
+
+    /**
+     * @param value
+     *            the bypassNonFlowActions to set
+     */
+    public void setBypassNonFlowActions(String value) {
+        this.bypassNonFlowActions = Boolean.valueOf(value).booleanValue();
+    }
+
     /**
      * @param viewActionPostfix
      *            the viewActionPostfix to set
@@ -608,6 +1366,15 @@ public class ActionFlowInterceptor extends AbstractInterceptor {
         this.viewActionMethod = viewActionMethod;
     }
 
+    /**
+     * @param value
+     *            comma separated names of the viewActionInterceptors to set
+     */
+    public void setViewActionInterceptors(String value) {
+        this.viewActionInterceptors = TextParseUtil
+                .commaDelimitedStringToSet(value);
+    }
+
     /**
      * @param stepParameterName
      *            the stepParameterName to set
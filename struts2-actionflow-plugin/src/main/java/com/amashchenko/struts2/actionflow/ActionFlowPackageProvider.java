@@ -0,0 +1,143 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.opensymphony.xwork2.config.Configuration;
+import com.opensymphony.xwork2.config.ConfigurationException;
+import com.opensymphony.xwork2.config.PackageProvider;
+import com.opensymphony.xwork2.config.entities.ActionConfig;
+import com.opensymphony.xwork2.config.entities.InterceptorConfig;
+import com.opensymphony.xwork2.config.entities.InterceptorMapping;
+import com.opensymphony.xwork2.config.entities.PackageConfig;
+import com.opensymphony.xwork2.inject.Inject;
+import com.opensymphony.xwork2.interceptor.Interceptor;
+import com.opensymphony.xwork2.util.logging.Logger;
+import com.opensymphony.xwork2.util.logging.LoggerFactory;
+
+/**
+ * Compiles action flows of all packages using {@link ActionFlowInterceptor}
+ * while the configuration is loaded, so the requests don't have to do it. The
+ * interceptor is found in the package configurations, the runtime
+ * configuration is built by XWork only once after all packages are loaded.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+public class ActionFlowPackageProvider implements PackageProvider {
+
+    /** Logger. */
+    public static final Logger LOG = LoggerFactory
+            .getLogger(ActionFlowPackageProvider.class);
+
+    /** XWork configuration. */
+    private Configuration configuration;
+
+    /** Action flow configuration builder. */
+    @Inject
+    private ActionFlowConfigBuilder flowConfigBuilder;
+
+    /** {@inheritDoc} */
+    @Override
+    public void init(Configuration configuration)
+            throws ConfigurationException {
+        this.configuration = configuration;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean needsReload() {
+        return false;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void loadPackages() throws ConfigurationException {
+        final Map<String, ActionFlowInterceptor> flowInterceptors = new LinkedHashMap<String, ActionFlowInterceptor>();
+        final List<Interceptor> builtInterceptors = new ArrayList<Interceptor>();
+        for (PackageConfig packageConfig : configuration.getPackageConfigs()
+                .values()) {
+            if (packageConfig.isAbstract()) {
+                continue;
+            }
+
+            final ActionFlowInterceptor interceptor = findFlowInterceptor(
+                    packageConfig, builtInterceptors);
+            if (interceptor != null) {
+                flowInterceptors.put(packageConfig.getName(), interceptor);
+            }
+        }
+
+        // configuration rebuilds runtime configuration with the replaced
+        // packages after all package providers are loaded
+        flowConfigBuilder.compileFlows(flowInterceptors, false);
+
+        // built only to read the parameters, runtime has its own instances
+        for (Interceptor interceptor : builtInterceptors) {
+            interceptor.destroy();
+        }
+    }
+
+    /**
+     * Finds action flow interceptor used by actions of the given package. The
+     * interceptor references of the actions are already built in the package
+     * configuration, only the default interceptor reference is built for the
+     * actions without own references.
+     * 
+     * @param packageConfig
+     *            Configuration of the package.
+     * @param builtInterceptors
+     *            List to put the interceptors built from the default
+     *            interceptor reference into, they must be destroyed.
+     * @return Action flow interceptor or <code>null</code> if actions of this
+     *         package don't use it.
+     */
+    ActionFlowInterceptor findFlowInterceptor(
+            final PackageConfig packageConfig,
+            final List<Interceptor> builtInterceptors) {
+        List<InterceptorMapping> defaultInterceptors = null;
+        for (ActionConfig actionConfig : packageConfig.getAllActionConfigs()
+                .values()) {
+            List<InterceptorMapping> interceptors = actionConfig
+                    .getInterceptors();
+            if (interceptors.isEmpty()) {
+                if (defaultInterceptors == null) {
+                    defaultInterceptors = flowConfigBuilder
+                            .getDefaultInterceptors(packageConfig);
+                    // single interceptor, unlike a stack, is built anew
+                    if (packageConfig.getInterceptorConfig(packageConfig
+                            .getFullDefaultInterceptorRef()) instanceof InterceptorConfig) {
+                        for (InterceptorMapping im : defaultInterceptors) {
+                            builtInterceptors.add(im.getInterceptor());
+                        }
+                    }
+                }
+                interceptors = defaultInterceptors;
+            }
+
+            for (InterceptorMapping im : interceptors) {
+                if (im.getInterceptor() instanceof ActionFlowInterceptor) {
+                    return (ActionFlowInterceptor) im.getInterceptor();
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow;
+
+/**
+ * Copies values of the {@link ActionFlowScope} fields of one action class
+ * to and from an array of values. Copiers are generated at compile time by the
+ * processor from the struts2-actionflow-processor module and are found by the
+ * class name: the name of the action class followed by {@link #CLASS_POSTFIX}.
+ * Action classes without generated copier use method handles bound from
+ * their bean properties.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+public interface ActionFlowScopeCopier {
+    /** Postfix of the generated copier class name. */
+    String CLASS_POSTFIX = "_ActionFlowScopeCopier";
+
+    /**
+     * Gets keys of the action flow scope fields, where index is the index of
+     * the field value. The key is the binary name of the class declaring the
+     * field getter followed by a dot and the getter name, e.g.
+     * <code>com.example.FlowAction.getName</code>.
+     * 
+     * @return Keys of the action flow scope fields.
+     */
+    String[] getScopeKeys();
+
+    /**
+     * Reads values of the action flow scope fields from the action.
+     * 
+     * @param action
+     *            action object.
+     * @param values
+     *            array to put values of the fields into.
+     * @throws Exception
+     *             exception thrown by a getter.
+     */
+    void read(Object action, Object[] values) throws Exception;
+
+    /**
+     * Writes not <code>null</code> values into the action flow scope fields of
+     * the action.
+     * 
+     * @param action
+     *            action object.
+     * @param values
+     *            values of the fields, <code>null</code> values are skipped.
+     * @throws Exception
+     *             exception thrown by a setter.
+     */
+    void write(Object action, Object[] values) throws Exception;
+}
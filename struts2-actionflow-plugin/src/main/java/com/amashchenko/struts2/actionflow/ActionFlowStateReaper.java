@@ -0,0 +1,210 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.opensymphony.xwork2.inject.Inject;
+import com.opensymphony.xwork2.util.logging.Logger;
+import com.opensymphony.xwork2.util.logging.LoggerFactory;
+
+/**
+ * Periodically removes expired action flow states from
+ * {@link ExpiringActionFlowStateStore}s in a low priority background thread.
+ * States in session are removed on access by {@link ActionFlowInterceptor} or
+ * together with the session.
+ * <p/>
+ * The thread is started when the first store is registered and stopped when
+ * every registration is released with {@link #unregister} or by
+ * {@link #shutdown()}.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+public class ActionFlowStateReaper {
+
+    /** Logger. */
+    public static final Logger LOG = LoggerFactory
+            .getLogger(ActionFlowStateReaper.class);
+
+    /** Constant holding interval between sweeps in seconds. */
+    public static final String INTERVAL = "struts.actionflow.reaper.interval";
+
+    /** Default interval between sweeps in seconds. */
+    private static final long DEFAULT_INTERVAL = 60;
+
+    /** Interval between sweeps in seconds, sweeping is disabled if 0. */
+    private long interval = DEFAULT_INTERVAL;
+
+    /** Swept stores. */
+    private final Set<ExpiringActionFlowStateStore> stores = new CopyOnWriteArraySet<ExpiringActionFlowStateStore>();
+
+    /** Number of registrations of each store, guarded by this. */
+    private final Map<ExpiringActionFlowStateStore, Integer> registrations = new HashMap<ExpiringActionFlowStateStore, Integer>();
+
+    /** Bytes reclaimed by the last sweep. */
+    private final AtomicLong lastReclaimedBytes = new AtomicLong();
+
+    /** Bytes reclaimed by all sweeps. */
+    private final AtomicLong reclaimedBytes = new AtomicLong();
+
+    /** Executor of sweeps, guarded by this. */
+    private ScheduledExecutorService executor;
+
+    /**
+     * @param value
+     *            interval between sweeps in seconds.
+     */
+    @Inject(value = INTERVAL, required = false)
+    public void setInterval(final String value) {
+        this.interval = Long.parseLong(value.trim());
+    }
+
+    /**
+     * Registers store for sweeping and starts sweeping thread if it isn't
+     * running. Each registration must be released with {@link #unregister}.
+     * 
+     * @param store
+     *            action flow state store.
+     */
+    public synchronized void register(final ExpiringActionFlowStateStore store) {
+        final Integer count = registrations.get(store);
+        registrations.put(store,
+                Integer.valueOf(count == null ? 1 : count.intValue() + 1));
+        stores.add(store);
+
+        if (executor == null && interval > 0) {
+            executor = Executors
+                    .newSingleThreadScheduledExecutor(new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            final Thread thread = new Thread(r,
+                                    "actionflow-state-reaper");
+                            thread.setDaemon(true);
+                            thread.setPriority(Thread.MIN_PRIORITY);
+                            return thread;
+                        }
+                    });
+            executor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    sweep();
+                }
+            }, interval, interval, TimeUnit.SECONDS);
+
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Started action flow state reaper with interval "
+                        + interval + " seconds.");
+            }
+        }
+    }
+
+    /**
+     * Removes expired action flow states from all registered stores.
+     * 
+     * @return Number of bytes reclaimed.
+     */
+    public long sweep() {
+        final long now = System.currentTimeMillis();
+        long bytes = 0;
+        for (ExpiringActionFlowStateStore store : stores) {
+            try {
+                bytes += store.removeExpired(now);
+            } catch (RuntimeException e) {
+                // keep sweeping other stores and next time
+                LOG.warn("Cannot remove expired action flow states from "
+                        + store, e);
+            }
+        }
+        lastReclaimedBytes.set(bytes);
+        reclaimedBytes.addAndGet(bytes);
+
+        if (bytes > 0) {
+            LOG.info("Action flow state sweep reclaimed " + bytes + " bytes.");
+        } else if (LOG.isDebugEnabled()) {
+            LOG.debug("Action flow state sweep reclaimed nothing.");
+        }
+        return bytes;
+    }
+
+    /**
+     * Releases registration of the store. The store isn't swept any more when
+     * all of its registrations are released, and sweeping thread is stopped
+     * when there are no stores left.
+     * 
+     * @param store
+     *            action flow state store.
+     */
+    public synchronized void unregister(
+            final ExpiringActionFlowStateStore store) {
+        final Integer count = registrations.get(store);
+        if (count == null) {
+            return;
+        }
+        if (count.intValue() > 1) {
+            registrations.put(store, Integer.valueOf(count.intValue() - 1));
+            return;
+        }
+        registrations.remove(store);
+        stores.remove(store);
+
+        if (stores.isEmpty()) {
+            shutdown();
+        }
+    }
+
+    /**
+     * Stops sweeping thread and releases all registrations. It is started
+     * again on next registration.
+     */
+    public synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        stores.clear();
+        registrations.clear();
+    }
+
+    /**
+     * @return whether sweeping thread is running.
+     */
+    public synchronized boolean isRunning() {
+        return executor != null;
+    }
+
+    /**
+     * @return the number of bytes reclaimed by the last sweep.
+     */
+    public long getLastReclaimedBytes() {
+        return lastReclaimedBytes.get();
+    }
+
+    /**
+     * @return the number of bytes reclaimed by all sweeps.
+     */
+    public long getReclaimedBytes() {
+        return reclaimedBytes.get();
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow;
+
+import java.util.Map;
+
+import com.amashchenko.struts2.actionflow.entities.ActionFlowState;
+
+/**
+ * Storage of the action flow state. Implementations are registered as beans of
+ * this type in the container and selected by name using the
+ * <code>stateStore</code> parameter of {@link ActionFlowInterceptor}.
+ * <p/>
+ * Implementations must be thread-safe, the same instance serves all requests.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+public interface ActionFlowStateStore {
+
+    /**
+     * Loads action flow state.
+     * 
+     * @param session
+     *            session map of the current request.
+     * @param key
+     *            key of the action flow state.
+     * @return Action flow state or <code>null</code> if there is none.
+     */
+    ActionFlowState load(Map<String, Object> session, String key);
+
+    /**
+     * Stores action flow state.
+     * 
+     * @param session
+     *            session map of the current request.
+     * @param key
+     *            key of the action flow state.
+     * @param state
+     *            action flow state.
+     */
+    void store(Map<String, Object> session, String key, ActionFlowState state);
+
+    /**
+     * Removes action flow state.
+     * 
+     * @param session
+     *            session map of the current request.
+     * @param key
+     *            key of the action flow state.
+     */
+    void remove(Map<String, Object> session, String key);
+}
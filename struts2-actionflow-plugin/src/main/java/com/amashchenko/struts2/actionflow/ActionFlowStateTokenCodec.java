@@ -0,0 +1,322 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.amashchenko.struts2.actionflow.entities.ActionFlowState;
+import com.opensymphony.xwork2.XWorkException;
+import com.opensymphony.xwork2.util.logging.Logger;
+import com.opensymphony.xwork2.util.logging.LoggerFactory;
+
+/**
+ * Encodes action flow state into a signed URL and cookie safe token and back.
+ * <p/>
+ * Token is Base64url (without padding) of the flags byte, the external form of
+ * {@link ActionFlowState}, deflated if it makes it shorter, and the
+ * HMAC-SHA256 of both together with the state key. The token is valid only for
+ * the state key it was issued for, so the state of one package or flow instance
+ * can't be passed off as the state of another one. Tokens aren't encrypted,
+ * the state can be read but not changed by the client.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+public class ActionFlowStateTokenCodec {
+
+    /** Logger. */
+    public static final Logger LOG = LoggerFactory
+            .getLogger(ActionFlowStateTokenCodec.class);
+
+    /** MAC algorithm. */
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+
+    /** Length of MAC in bytes. */
+    private static final int MAC_LENGTH = 32;
+
+    /** Flag of the deflated state. */
+    private static final int FLAG_DEFLATED = 1;
+
+    /** Maximum length of inflated state. */
+    private static final int MAX_STATE_LENGTH = 64 * 1024;
+
+    /** Base64url alphabet. */
+    private static final char[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_"
+            .toCharArray();
+
+    /** Values of Base64url characters, -1 for not allowed ones. */
+    private static final int[] BASE64_VALUES = new int[128];
+
+    static {
+        for (int i = 0; i < BASE64_VALUES.length; i++) {
+            BASE64_VALUES[i] = -1;
+        }
+        for (int i = 0; i < BASE64.length; i++) {
+            BASE64_VALUES[BASE64[i]] = i;
+        }
+    }
+
+    /** Initialized MAC, cloned for every use. */
+    private final Mac mac;
+
+    /** Whether to deflate the state. */
+    private final boolean compress;
+
+    /** Whether to include action flow scope values. */
+    private final boolean scopeValues;
+
+    /**
+     * Creates codec.
+     * 
+     * @param secret
+     *            secret key for signing tokens, must be the same on all nodes.
+     * @param compress
+     *            whether to deflate the state.
+     * @param scopeValues
+     *            whether to include action flow scope values.
+     */
+    public ActionFlowStateTokenCodec(final byte[] secret,
+            final boolean compress, final boolean scopeValues) {
+        if (secret == null || secret.length == 0) {
+            throw new IllegalArgumentException("Secret must not be empty.");
+        }
+        try {
+            mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(new SecretKeySpec(secret, MAC_ALGORITHM));
+        } catch (GeneralSecurityException e) {
+            throw new XWorkException("Cannot initialize " + MAC_ALGORITHM, e);
+        }
+        this.compress = compress;
+        this.scopeValues = scopeValues;
+    }
+
+    /**
+     * Encodes action flow state into token.
+     * 
+     * @param key
+     *            key of action flow state.
+     * @param state
+     *            action flow state.
+     * @return Signed token.
+     */
+    public String encode(final String key, final ActionFlowState state) {
+        final byte[] external;
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            final ObjectOutputStream out = new ObjectOutputStream(bytes);
+            state.writeExternal(out, scopeValues);
+            out.close();
+            external = bytes.toByteArray();
+        } catch (IOException e) {
+            throw new XWorkException("Cannot write action flow state.", e);
+        }
+
+        int flags = 0;
+        byte[] payload = external;
+        if (compress) {
+            final byte[] deflated = deflate(external);
+            if (deflated.length < external.length) {
+                flags |= FLAG_DEFLATED;
+                payload = deflated;
+            }
+        }
+
+        final byte[] token = new byte[1 + payload.length + MAC_LENGTH];
+        token[0] = (byte) flags;
+        System.arraycopy(payload, 0, token, 1, payload.length);
+        final Mac m = newMac(key);
+        m.update(token, 0, 1 + payload.length);
+        try {
+            m.doFinal(token, 1 + payload.length);
+        } catch (GeneralSecurityException e) {
+            throw new XWorkException("Cannot sign action flow state.", e);
+        }
+        return encodeBase64(token);
+    }
+
+    /**
+     * Decodes action flow state from token.
+     * 
+     * @param key
+     *            key of action flow state.
+     * @param token
+     *            token created by {@link #encode(String, ActionFlowState)}.
+     * @return Action flow state or <code>null</code> if the token is malformed,
+     *         its signature doesn't match, it was created for another key or
+     *         by incompatible version.
+     */
+    public ActionFlowState decode(final String key, final String token) {
+        if (token == null) {
+            return null;
+        }
+        final byte[] bytes = decodeBase64(token);
+        if (bytes == null || bytes.length < 1 + MAC_LENGTH) {
+            return null;
+        }
+
+        final int payloadLength = bytes.length - MAC_LENGTH - 1;
+        final Mac m = newMac(key);
+        m.update(bytes, 0, 1 + payloadLength);
+        final byte[] expected = m.doFinal();
+        final byte[] actual = new byte[MAC_LENGTH];
+        System.arraycopy(bytes, 1 + payloadLength, actual, 0, MAC_LENGTH);
+        // constant time comparison
+        if (!MessageDigest.isEqual(expected, actual)) {
+            return null;
+        }
+
+        // trusted from here on, it was created by encode
+        try {
+            byte[] external = new byte[payloadLength];
+            System.arraycopy(bytes, 1, external, 0, payloadLength);
+            if ((bytes[0] & FLAG_DEFLATED) != 0) {
+                external = inflate(external);
+            }
+            final ObjectInputStream in = new ObjectInputStream(
+                    new ByteArrayInputStream(external));
+            final ActionFlowState state = new ActionFlowState();
+            state.readExternal(in);
+            in.close();
+            return state;
+        } catch (Exception e) {
+            LOG.warn("Cannot read action flow state from signed token", e);
+            return null;
+        }
+    }
+
+    /**
+     * Creates MAC which has already processed the key of action flow state.
+     * 
+     * @param key
+     *            key of action flow state.
+     * @return MAC to update with the token.
+     */
+    private Mac newMac(final String key) {
+        final Mac m;
+        try {
+            m = (Mac) mac.clone();
+            m.update(key.getBytes("UTF-8"));
+        } catch (CloneNotSupportedException e) {
+            throw new XWorkException("Cannot clone " + MAC_ALGORITHM, e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        // separates key from the token
+        m.update((byte) 0);
+        return m;
+    }
+
+    private static byte[] deflate(final byte[] bytes) {
+        final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION,
+                true);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(
+                    bytes.length);
+            final byte[] buf = new byte[256];
+            while (!deflater.finished()) {
+                out.write(buf, 0, deflater.deflate(buf));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(final byte[] bytes)
+            throws DataFormatException {
+        final Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(bytes);
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(
+                    bytes.length * 2);
+            final byte[] buf = new byte[256];
+            while (!inflater.finished()) {
+                final int n = inflater.inflate(buf);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("Truncated action flow state.");
+                }
+                out.write(buf, 0, n);
+                if (out.size() > MAX_STATE_LENGTH) {
+                    throw new DataFormatException("Action flow state is too long.");
+                }
+            }
+            return out.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+
+    static String encodeBase64(final byte[] bytes) {
+        final StringBuilder sb = new StringBuilder((bytes.length * 4 + 2) / 3);
+        int i = 0;
+        for (; i + 2 < bytes.length; i += 3) {
+            final int b = (bytes[i] & 0xff) << 16 | (bytes[i + 1] & 0xff) << 8
+                    | (bytes[i + 2] & 0xff);
+            sb.append(BASE64[b >>> 18]).append(BASE64[(b >>> 12) & 0x3f])
+                    .append(BASE64[(b >>> 6) & 0x3f]).append(BASE64[b & 0x3f]);
+        }
+        final int rest = bytes.length - i;
+        if (rest == 1) {
+            final int b = (bytes[i] & 0xff) << 16;
+            sb.append(BASE64[b >>> 18]).append(BASE64[(b >>> 12) & 0x3f]);
+        } else if (rest == 2) {
+            final int b = (bytes[i] & 0xff) << 16 | (bytes[i + 1] & 0xff) << 8;
+            sb.append(BASE64[b >>> 18]).append(BASE64[(b >>> 12) & 0x3f])
+                    .append(BASE64[(b >>> 6) & 0x3f]);
+        }
+        return sb.toString();
+    }
+
+    static byte[] decodeBase64(final String s) {
+        final int length = s.length();
+        if (length % 4 == 1) {
+            return null;
+        }
+        final byte[] bytes = new byte[length * 3 / 4];
+        int bits = 0;
+        int bitCount = 0;
+        int pos = 0;
+        for (int i = 0; i < length; i++) {
+            final char c = s.charAt(i);
+            final int v = c < BASE64_VALUES.length ? BASE64_VALUES[c] : -1;
+            if (v < 0) {
+                return null;
+            }
+            bits = (bits << 6) | v;
+            bitCount += 6;
+            if (bitCount >= 8) {
+                bitCount -= 8;
+                bytes[pos++] = (byte) (bits >>> bitCount);
+            }
+        }
+        return bytes;
+    }
+}
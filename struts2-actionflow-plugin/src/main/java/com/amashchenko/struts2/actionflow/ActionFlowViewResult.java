@@ -0,0 +1,88 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow;
+
+import java.net.URLEncoder;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.struts2.StrutsStatics;
+
+import com.opensymphony.xwork2.ActionContext;
+import com.opensymphony.xwork2.ActionInvocation;
+import com.opensymphony.xwork2.Result;
+import com.opensymphony.xwork2.util.logging.Logger;
+import com.opensymphony.xwork2.util.logging.LoggerFactory;
+
+/**
+ * Redirects to the view action of the action flow step. Unlike the
+ * <code>redirectAction</code> result it doesn't evaluate any expressions, the
+ * URI of the view action is precompiled with the action flow and is taken from
+ * the action context.
+ * 
+ * <pre>
+ * &lt;global-results&gt;
+ *     &lt;result name="actionFlowViewResult" type="actionFlowView" /&gt;
+ * &lt;/global-results&gt;
+ * </pre>
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+public class ActionFlowViewResult implements Result {
+
+    /** Serial version uid. */
+    private static final long serialVersionUID = 4307425917405063418L;
+
+    /** Logger. */
+    public static final Logger LOG = LoggerFactory
+            .getLogger(ActionFlowViewResult.class);
+
+    /** {@inheritDoc} */
+    @Override
+    public void execute(ActionInvocation invocation) throws Exception {
+        final ActionContext context = invocation.getInvocationContext();
+        final String viewUri = (String) context
+                .get(ActionFlowInterceptor.VIEW_URI_KEY);
+        if (viewUri == null) {
+            throw new IllegalStateException(
+                    "There is no view action to redirect to for action '"
+                            + context.getName() + "'.");
+        }
+
+        final HttpServletRequest request = (HttpServletRequest) context
+                .get(StrutsStatics.HTTP_REQUEST);
+        final HttpServletResponse response = (HttpServletResponse) context
+                .get(StrutsStatics.HTTP_RESPONSE);
+
+        final StringBuilder location = new StringBuilder(request
+                .getContextPath()).append(viewUri);
+        final String instanceId = (String) context
+                .get(ActionFlowInterceptor.FLOW_INSTANCE_PARAM);
+        if (instanceId != null) {
+            location.append('?')
+                    .append(ActionFlowInterceptor.FLOW_INSTANCE_PARAM)
+                    .append('=').append(URLEncoder.encode(instanceId, "UTF-8"));
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Redirecting to " + location);
+        }
+
+        response.sendRedirect(response.encodeRedirectURL(location.toString()));
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow;
+
+/**
+ * {@link ActionFlowStateStore} which keeps action flow state outside of the
+ * session, so abandoned states aren't removed together with the session and
+ * must be swept by {@link ActionFlowStateReaper}.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+public interface ExpiringActionFlowStateStore extends ActionFlowStateStore {
+
+    /**
+     * Removes expired action flow states, see
+     * {@link com.amashchenko.struts2.actionflow.entities.ActionFlowState#isExpired(long)}
+     * .
+     * 
+     * @param now
+     *            current time in milliseconds.
+     * @return Approximate number of bytes reclaimed.
+     */
+    long removeExpired(long now);
+}
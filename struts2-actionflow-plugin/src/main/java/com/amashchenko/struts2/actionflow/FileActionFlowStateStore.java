@@ -0,0 +1,220 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import com.amashchenko.struts2.actionflow.entities.ActionFlowState;
+import com.opensymphony.xwork2.XWorkException;
+import com.opensymphony.xwork2.inject.Inject;
+import com.opensymphony.xwork2.util.logging.Logger;
+import com.opensymphony.xwork2.util.logging.LoggerFactory;
+
+/**
+ * {@link ActionFlowStateStore} which keeps every action flow state in its own
+ * file. The directory can be shared between nodes of a cluster.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+public class FileActionFlowStateStore extends
+        AbstractExternalActionFlowStateStore {
+
+    /** Logger. */
+    public static final Logger LOG = LoggerFactory
+            .getLogger(FileActionFlowStateStore.class);
+
+    /** Name of this store. */
+    public static final String NAME = "file";
+
+    /** Constant holding the directory of the action flow state files. */
+    public static final String DIRECTORY = "struts.actionflow.fileStore.dir";
+
+    /** Extension of the action flow state files. */
+    private static final String FILE_EXTENSION = ".state";
+
+    /** Directory of the action flow state files. */
+    private volatile File directory = new File(
+            System.getProperty("java.io.tmpdir"), "actionflow");
+
+    /**
+     * @param value
+     *            directory of the action flow state files.
+     */
+    @Inject(value = DIRECTORY, required = false)
+    public void setDirectory(final String value) {
+        this.directory = new File(value);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected ActionFlowState load(final String storeKey) {
+        final File file = stateFile(storeKey);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        ObjectInputStream in = null;
+        try {
+            in = new ObjectInputStream(new BufferedInputStream(
+                    new FileInputStream(file)));
+            // expiry time header
+            in.readLong();
+            return (ActionFlowState) in.readObject();
+        } catch (Exception e) {
+            // broken or concurrently removed state, start from scratch
+            LOG.warn("Cannot read action flow state from " + file, e);
+            return null;
+        } finally {
+            close(in);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void store(final String storeKey, final ActionFlowState state) {
+        final File file = stateFile(storeKey);
+        final File dir = file.getParentFile();
+
+        ObjectOutputStream out = null;
+        File tmp = null;
+        try {
+            if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+                throw new IOException("Cannot create directory " + dir);
+            }
+            // write into temporary file and then move it, so readers never
+            // see partially written state
+            tmp = File.createTempFile(file.getName(), ".tmp", dir);
+            out = new ObjectOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(tmp)));
+            // expiry time header, so sweeping doesn't read whole states
+            out.writeLong(state.getExpiryTime());
+            out.writeObject(state);
+            out.close();
+            out = null;
+
+            if (!tmp.renameTo(file)) {
+                // some platforms cannot rename onto existing file
+                file.delete();
+                if (!tmp.renameTo(file)) {
+                    throw new IOException("Cannot rename " + tmp + " to "
+                            + file);
+                }
+            }
+            tmp = null;
+        } catch (IOException e) {
+            throw new XWorkException("Cannot write action flow state to "
+                    + file, e);
+        } finally {
+            close(out);
+            if (tmp != null) {
+                tmp.delete();
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void remove(final String storeKey) {
+        final File file = stateFile(storeKey);
+        if (file.exists() && !file.delete() && LOG.isDebugEnabled()) {
+            LOG.debug("Cannot delete action flow state file " + file);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long removeExpired(final long now) {
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            return 0;
+        }
+
+        long bytes = 0;
+        int count = 0;
+        for (File file : files) {
+            if (!file.getName().endsWith(FILE_EXTENSION)) {
+                continue;
+            }
+            final long lastModified = file.lastModified();
+            final long length = file.length();
+
+            ObjectInputStream in = null;
+            long expiryTime = 0;
+            try {
+                in = new ObjectInputStream(new FileInputStream(file));
+                expiryTime = in.readLong();
+            } catch (IOException e) {
+                // removed or being replaced right now
+                continue;
+            } finally {
+                close(in);
+            }
+
+            // don't remove state stored again while it was checked
+            if (expiryTime != 0 && now >= expiryTime
+                    && file.lastModified() == lastModified && file.delete()) {
+                bytes += length;
+                count++;
+            }
+        }
+        if (count > 0 && LOG.isDebugEnabled()) {
+            LOG.debug("Removed " + count + " expired action flow state files.");
+        }
+        return bytes;
+    }
+
+    /**
+     * Resolves the file of action flow state.
+     * 
+     * @param storeKey
+     *            unique key of the action flow state in this store.
+     * @return File of the action flow state.
+     */
+    File stateFile(final String storeKey) {
+        final StringBuilder name = new StringBuilder(storeKey.length()
+                + FILE_EXTENSION.length());
+        for (int i = 0; i < storeKey.length(); i++) {
+            final char c = storeKey.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+                    || (c >= '0' && c <= '9') || c == '-' || c == '.') {
+                name.append(c);
+            } else {
+                name.append('_');
+            }
+        }
+        name.append(FILE_EXTENSION);
+        return new File(directory, name.toString());
+    }
+
+    private static void close(final Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                LOG.warn("Cannot close stream", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.amashchenko.struts2.actionflow.entities.ActionFlowState;
+import com.opensymphony.xwork2.inject.Inject;
+import com.opensymphony.xwork2.util.logging.Logger;
+import com.opensymphony.xwork2.util.logging.LoggerFactory;
+
+/**
+ * {@link ActionFlowStateStore} which keeps action flow state in memory of the
+ * current node. The number of kept states is bounded, the least recently used
+ * states are evicted.
+ * <p/>
+ * States are spread over several independently locked segments, so concurrent
+ * requests of different users rarely wait for each other.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+public class MemoryActionFlowStateStore extends
+        AbstractExternalActionFlowStateStore {
+
+    /** Logger. */
+    public static final Logger LOG = LoggerFactory
+            .getLogger(MemoryActionFlowStateStore.class);
+
+    /** Name of this store. */
+    public static final String NAME = "memory";
+
+    /** Constant holding the maximum number of kept action flow states. */
+    public static final String MAX_STATES = "struts.actionflow.memoryStore.maxStates";
+
+    /** Default maximum number of kept action flow states. */
+    private static final int DEFAULT_MAX_STATES = 10000;
+
+    /** Number of segments, power of two. */
+    private static final int SEGMENTS_COUNT = 16;
+
+    /** Segments holding states. */
+    private volatile Segment[] segments = createSegments(DEFAULT_MAX_STATES);
+
+    /**
+     * @param value
+     *            maximum number of kept action flow states.
+     */
+    @Inject(value = MAX_STATES, required = false)
+    public void setMaxStates(final String value) {
+        final int maxStates = Integer.parseInt(value.trim());
+        if (maxStates <= 0) {
+            throw new IllegalArgumentException("The '" + MAX_STATES
+                    + "' must be positive, but was " + maxStates + ".");
+        }
+        segments = createSegments(maxStates);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected ActionFlowState load(final String storeKey) {
+        final Segment segment = segmentFor(storeKey);
+        synchronized (segment) {
+            return segment.get(storeKey);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void store(final String storeKey, final ActionFlowState state) {
+        final Segment segment = segmentFor(storeKey);
+        synchronized (segment) {
+            segment.put(storeKey, state);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void remove(final String storeKey) {
+        final Segment segment = segmentFor(storeKey);
+        synchronized (segment) {
+            segment.remove(storeKey);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long removeExpired(final long now) {
+        final List<ActionFlowState> expired = new ArrayList<ActionFlowState>();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                final Iterator<ActionFlowState> it = segment.values()
+                        .iterator();
+                while (it.hasNext()) {
+                    final ActionFlowState state = it.next();
+                    if (state.isExpired(now)) {
+                        expired.add(state);
+                        it.remove();
+                    }
+                }
+            }
+        }
+
+        // measured outside of the locks
+        long bytes = 0;
+        for (ActionFlowState state : expired) {
+            bytes += serializedSize(state);
+        }
+        if (!expired.isEmpty() && LOG.isDebugEnabled()) {
+            LOG.debug("Removed " + expired.size()
+                    + " expired action flow states.");
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the number of kept action flow states.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    private Segment segmentFor(final String storeKey) {
+        final Segment[] segs = segments;
+        int h = storeKey.hashCode();
+        h ^= (h >>> 16);
+        return segs[h & (segs.length - 1)];
+    }
+
+    private static Segment[] createSegments(final int maxStates) {
+        final int count = maxStates < SEGMENTS_COUNT ? 1 : SEGMENTS_COUNT;
+        final Segment[] segs = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            // spread remainder over the first segments
+            segs[i] = new Segment(maxStates / count
+                    + (i < maxStates % count ? 1 : 0));
+        }
+        return segs;
+    }
+
+    /** Access ordered map evicting the least recently used state. */
+    private static final class Segment extends
+            LinkedHashMap<String, ActionFlowState> {
+
+        /** Serial version uid. */
+        private static final long serialVersionUID = 6042815936436581794L;
+
+        /** Maximum number of states in this segment. */
+        private final int capacity;
+
+        Segment(final int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected boolean removeEldestEntry(
+                final Map.Entry<String, ActionFlowState> eldest) {
+            final boolean evict = size() > capacity;
+            if (evict && LOG.isDebugEnabled()) {
+                LOG.debug("Evicting action flow state '" + eldest.getKey()
+                        + "'.");
+            }
+            return evict;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow;
+
+import java.util.Map;
+
+import com.amashchenko.struts2.actionflow.entities.ActionFlowState;
+
+/**
+ * Default {@link ActionFlowStateStore} which keeps action flow state in the
+ * session.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+public class SessionActionFlowStateStore implements ActionFlowStateStore {
+
+    /** Name of this store. */
+    public static final String NAME = "session";
+
+    /** {@inheritDoc} */
+    @Override
+    public ActionFlowState load(final Map<String, Object> session,
+            final String key) {
+        final Object state = session.get(key);
+        if (state instanceof ActionFlowState) {
+            return (ActionFlowState) state;
+        }
+        return null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void store(final Map<String, Object> session, final String key,
+            final ActionFlowState state) {
+        session.put(key, state);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void remove(final Map<String, Object> session, final String key) {
+        session.remove(key);
+    }
+}
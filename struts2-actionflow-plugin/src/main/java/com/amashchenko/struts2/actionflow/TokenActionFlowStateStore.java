@@ -0,0 +1,271 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow;
+
+import java.io.UnsupportedEncodingException;
+import java.security.SecureRandom;
+import java.util.Map;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.struts2.ServletActionContext;
+
+import com.amashchenko.struts2.actionflow.entities.ActionFlowState;
+import com.opensymphony.xwork2.ActionContext;
+import com.opensymphony.xwork2.inject.Inject;
+import com.opensymphony.xwork2.util.logging.Logger;
+import com.opensymphony.xwork2.util.logging.LoggerFactory;
+
+/**
+ * Stateless {@link ActionFlowStateStore} which keeps action flow state on the
+ * client in a signed token, see {@link ActionFlowStateTokenCodec}. Nothing is
+ * put into the session, so any node can serve any step as long as all nodes
+ * share the same secret.
+ * <p/>
+ * Token is loaded from the request parameter (the hidden <code>step</code>
+ * field of the form by default) or, if there is none, from the cookie named
+ * after the state key. Stored token is put into the cookie, so it follows the
+ * redirects to view actions. Loaded and stored token is put into the action
+ * context under the <code>actionFlowStateToken</code> key, e.g.
+ * <code>#actionFlowStateToken</code>, for the hidden field of the form. The
+ * token of the form takes precedence, so browser back button and several tabs
+ * work the same as with action names in the <code>step</code> field.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+public class TokenActionFlowStateStore implements ActionFlowStateStore {
+
+    /** Logger. */
+    public static final Logger LOG = LoggerFactory
+            .getLogger(TokenActionFlowStateStore.class);
+
+    /** Name of this store. */
+    public static final String NAME = "token";
+
+    /** Constant holding the secret for signing tokens. */
+    public static final String SECRET = "struts.actionflow.tokenStore.secret";
+    /** Constant holding the name of request parameter with token. */
+    public static final String PARAMETER = "struts.actionflow.tokenStore.parameter";
+    /** Constant holding whether to deflate tokens. */
+    public static final String COMPRESS = "struts.actionflow.tokenStore.compress";
+    /** Constant holding whether to keep action flow scope values in tokens. */
+    public static final String SCOPE_VALUES = "struts.actionflow.tokenStore.scopeValues";
+
+    /** Action context key holding the last loaded or stored token. */
+    public static final String TOKEN_KEY = "actionFlowStateToken";
+    /** Postfix of the action context key holding the token. */
+    public static final String TOKEN_POSTFIX = "Token";
+    /** Postfix of the action context key holding the decoded state. */
+    private static final String STATE_POSTFIX = "TokenState";
+
+    /** Length of the generated secret in bytes. */
+    private static final int GENERATED_SECRET_LENGTH = 32;
+
+    private byte[] secret;
+    private String parameterName = "step";
+    private boolean compress = true;
+    private boolean scopeValues = true;
+
+    /** Codec, created on first use from the settings above. */
+    private volatile ActionFlowStateTokenCodec codec;
+
+    /**
+     * @param value
+     *            secret for signing tokens.
+     */
+    @Inject(value = SECRET, required = false)
+    public void setSecret(final String value) {
+        try {
+            this.secret = value.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        this.codec = null;
+    }
+
+    /**
+     * @param value
+     *            name of request parameter with token.
+     */
+    @Inject(value = PARAMETER, required = false)
+    public void setParameterName(final String value) {
+        this.parameterName = value;
+    }
+
+    /**
+     * @param value
+     *            whether to deflate tokens.
+     */
+    @Inject(value = COMPRESS, required = false)
+    public void setCompress(final String value) {
+        this.compress = Boolean.valueOf(value).booleanValue();
+        this.codec = null;
+    }
+
+    /**
+     * @param value
+     *            whether to keep action flow scope values in tokens.
+     */
+    @Inject(value = SCOPE_VALUES, required = false)
+    public void setScopeValues(final String value) {
+        this.scopeValues = Boolean.valueOf(value).booleanValue();
+        this.codec = null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ActionFlowState load(final Map<String, Object> session,
+            final String key) {
+        final ActionContext context = ActionContext.getContext();
+        if (context == null) {
+            return null;
+        }
+
+        // already loaded, stored or removed in this request, e.g. on chain
+        final Map<String, Object> contextMap = context.getContextMap();
+        if (contextMap.containsKey(key + STATE_POSTFIX)) {
+            return (ActionFlowState) contextMap.get(key + STATE_POSTFIX);
+        }
+
+        String token = getParameter(context);
+        if (token == null) {
+            token = getCookie(key);
+        }
+        if (token == null) {
+            return null;
+        }
+
+        final ActionFlowState state = getCodec().decode(key, token);
+        if (state == null) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Ignoring not valid action flow state token '"
+                        + token + "'.");
+            }
+            return null;
+        }
+
+        context.put(key + TOKEN_POSTFIX, token);
+        context.put(key + STATE_POSTFIX, state);
+        context.put(TOKEN_KEY, token);
+        return state;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void store(final Map<String, Object> session, final String key,
+            final ActionFlowState state) {
+        final String token = getCodec().encode(key, state);
+
+        final ActionContext context = ActionContext.getContext();
+        if (context != null) {
+            context.put(key + TOKEN_POSTFIX, token);
+            context.put(key + STATE_POSTFIX, state);
+            context.put(TOKEN_KEY, token);
+        }
+        addCookie(key, token, -1);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void remove(final Map<String, Object> session, final String key) {
+        final ActionContext context = ActionContext.getContext();
+        if (context != null) {
+            context.put(key + TOKEN_POSTFIX, null);
+            context.put(key + STATE_POSTFIX, null);
+            context.put(TOKEN_KEY, null);
+        }
+        addCookie(key, "", 0);
+    }
+
+    /**
+     * @return Codec configured by constants.
+     */
+    ActionFlowStateTokenCodec getCodec() {
+        ActionFlowStateTokenCodec c = codec;
+        if (c == null) {
+            synchronized (this) {
+                if (secret == null) {
+                    LOG.warn("The '"
+                            + SECRET
+                            + "' constant is not set, generated secret is used. Action flow state tokens are valid only on this node until restart.");
+                    secret = new byte[GENERATED_SECRET_LENGTH];
+                    new SecureRandom().nextBytes(secret);
+                }
+                c = new ActionFlowStateTokenCodec(secret, compress,
+                        scopeValues);
+                codec = c;
+            }
+        }
+        return c;
+    }
+
+    private String getParameter(final ActionContext context) {
+        final Map<String, Object> parameters = context.getParameters();
+        if (parameters != null) {
+            final Object value = parameters.get(parameterName);
+            if (value instanceof Object[]) {
+                final Object[] values = (Object[]) value;
+                if (values.length > 0 && values[0] != null) {
+                    return emptyToNull(values[0].toString());
+                }
+            } else if (value != null) {
+                return emptyToNull(value.toString());
+            }
+        }
+        return null;
+    }
+
+    private String getCookie(final String key) {
+        final HttpServletRequest request = ServletActionContext.getRequest();
+        if (request != null && request.getCookies() != null) {
+            for (Cookie cookie : request.getCookies()) {
+                if (key.equals(cookie.getName())) {
+                    return emptyToNull(cookie.getValue());
+                }
+            }
+        }
+        return null;
+    }
+
+    private void addCookie(final String key, final String value,
+            final int maxAge) {
+        final HttpServletResponse response = ServletActionContext
+                .getResponse();
+        if (response == null) {
+            return;
+        }
+        if (response.isCommitted()) {
+            LOG.warn("Response is already committed, cannot set the '" + key
+                    + "' cookie.");
+            return;
+        }
+
+        final Cookie cookie = new Cookie(key, value);
+        final String contextPath = ServletActionContext.getRequest() == null ? null
+                : ServletActionContext.getRequest().getContextPath();
+        cookie.setPath(contextPath == null || contextPath.isEmpty() ? "/"
+                : contextPath);
+        cookie.setMaxAge(maxAge);
+        response.addCookie(cookie);
+    }
+
+    private static String emptyToNull(final String value) {
+        return value.isEmpty() ? null : value;
+    }
+}
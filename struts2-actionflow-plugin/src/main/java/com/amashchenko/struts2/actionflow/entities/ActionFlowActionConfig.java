@@ -0,0 +1,113 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow.entities;
+
+/**
+ * Describes the role of an action in action flow, so the interceptor can
+ * classify the action with one lookup by its name.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+public final class ActionFlowActionConfig {
+
+    /** Role of the action in action flow. */
+    public enum Type {
+        /** Action with <code>actionFlowStep</code> parameter. */
+        FLOW,
+        /** View action of the flow action. */
+        VIEW,
+        /** Next action. */
+        NEXT,
+        /** Previous action. */
+        PREV,
+        /** Action which starts action flow. */
+        START,
+        /** Any other action. */
+        OTHER
+    }
+
+    /** Configuration of any action which has no role in action flow. */
+    public static final ActionFlowActionConfig OTHER = new ActionFlowActionConfig(
+            Type.OTHER, null, null, null);
+
+    private final Type type;
+    private final String flowActionName;
+    private final String viewActionName;
+    private final ActionFlowStepConfig stepConfig;
+
+    /**
+     * 
+     * @param type
+     *            role of the action.
+     * @param flowActionName
+     *            name of the flow action for flow and view actions.
+     * @param viewActionName
+     *            name of the view action for flow and view actions.
+     * @param stepConfig
+     *            step configuration of the flow action for flow and view
+     *            actions.
+     */
+    public ActionFlowActionConfig(final Type type,
+            final String flowActionName, final String viewActionName,
+            final ActionFlowStepConfig stepConfig) {
+        this.type = type;
+        this.flowActionName = flowActionName;
+        this.viewActionName = viewActionName;
+        this.stepConfig = stepConfig;
+    }
+
+    /**
+     * @return the type
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return the flowActionName
+     */
+    public String getFlowActionName() {
+        return flowActionName;
+    }
+
+    /**
+     * @return the viewActionName
+     */
+    public String getViewActionName() {
+        return viewActionName;
+    }
+
+    /**
+     * @return the stepConfig
+     */
+    public ActionFlowStepConfig getStepConfig() {
+        return stepConfig;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{ActionFlowActionConfig ");
+        sb.append("type:").append(type).append(", ");
+        sb.append("flowActionName:").append(flowActionName).append(", ");
+        sb.append("viewActionName:").append(viewActionName).append(", ");
+        sb.append("stepConfig:").append(stepConfig);
+        sb.append("}");
+        return sb.toString();
+    }
+}
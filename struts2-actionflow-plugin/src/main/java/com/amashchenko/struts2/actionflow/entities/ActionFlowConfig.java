@@ -0,0 +1,331 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow.entities;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import com.amashchenko.struts2.actionflow.ActionFlowScopeCopier;
+
+/**
+ * Immutable compiled action flow of the package. Holds action flow map, action
+ * flow scope fields and steps, so they can be published together and safely
+ * shared between threads. Counters of the package are the only mutable part,
+ * they are thread safe.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+public final class ActionFlowConfig {
+    /** Action flow, where key is the name of the action. */
+    private final Map<String, ActionFlowStepConfig> flowMap;
+
+    /** Action flow scope fields, where key is the name of the action class. */
+    private final Map<String, List<PropertyDescriptor>> flowScopeFields;
+
+    /** Action flow steps, where key is the step index starting from 1. */
+    private final SortedMap<Integer, String> steps;
+
+    /** Steps data shared by all requests, where index is the step index. */
+    private final ActionFlowStepsData[] stepsData;
+
+    /** Name of the action which starts action flow. */
+    private final String startAction;
+
+    /** Actions having role in action flow, where key is the action name. */
+    private final Map<String, ActionFlowActionConfig> actions;
+
+    /** Flow action names, where index is the step index. */
+    private final String[] stepActions;
+
+    /** Action flow scope field ordinals, where key is the field key. */
+    private final Map<String, Integer> scopeOrdinals;
+
+    /** Action flow scopes, where key is the name of the action class. */
+    private final Map<String, ActionFlowScopeConfig> scopeConfigs;
+
+    /** Counters of the package. */
+    private final ActionFlowStatistics statistics;
+
+    /**
+     * 
+     * @param flowMap
+     *            map of the action flow.
+     * @param flowScopeFields
+     *            map of the action flow scope fields.
+     * @param startAction
+     *            name of the start action, can be <code>null</code>.
+     * @param actions
+     *            map of the actions having role in action flow.
+     */
+    public ActionFlowConfig(final Map<String, ActionFlowStepConfig> flowMap,
+            final Map<String, List<PropertyDescriptor>> flowScopeFields,
+            final String startAction,
+            final Map<String, ActionFlowActionConfig> actions) {
+        this(flowMap, flowScopeFields,
+                Collections.<String, ActionFlowScopeCopier> emptyMap(),
+                startAction, actions);
+    }
+
+    /**
+     * 
+     * @param flowMap
+     *            map of the action flow.
+     * @param flowScopeFields
+     *            map of the action flow scope fields of the action classes
+     *            without generated copier.
+     * @param scopeCopiers
+     *            map of the generated action flow scope copiers, where key is
+     *            the name of the action class.
+     * @param startAction
+     *            name of the start action, can be <code>null</code>.
+     * @param actions
+     *            map of the actions having role in action flow.
+     */
+    public ActionFlowConfig(final Map<String, ActionFlowStepConfig> flowMap,
+            final Map<String, List<PropertyDescriptor>> flowScopeFields,
+            final Map<String, ActionFlowScopeCopier> scopeCopiers,
+            final String startAction,
+            final Map<String, ActionFlowActionConfig> actions) {
+        this(flowMap, flowScopeFields, scopeCopiers, startAction, actions,
+                new ActionFlowStatistics());
+    }
+
+    /**
+     * 
+     * @param flowMap
+     *            map of the action flow.
+     * @param flowScopeFields
+     *            map of the action flow scope fields of the action classes
+     *            without generated copier.
+     * @param scopeCopiers
+     *            map of the generated action flow scope copiers, where key is
+     *            the name of the action class.
+     * @param startAction
+     *            name of the start action, can be <code>null</code>.
+     * @param actions
+     *            map of the actions having role in action flow.
+     * @param statistics
+     *            counters of the package, kept when the flow is compiled
+     *            again.
+     */
+    public ActionFlowConfig(final Map<String, ActionFlowStepConfig> flowMap,
+            final Map<String, List<PropertyDescriptor>> flowScopeFields,
+            final Map<String, ActionFlowScopeCopier> scopeCopiers,
+            final String startAction,
+            final Map<String, ActionFlowActionConfig> actions,
+            final ActionFlowStatistics statistics) {
+        this.flowMap = Collections.unmodifiableMap(flowMap);
+        this.flowScopeFields = Collections.unmodifiableMap(flowScopeFields);
+        this.startAction = startAction;
+        this.actions = Collections.unmodifiableMap(actions);
+        this.statistics = statistics;
+
+        stepActions = new String[flowMap.size()];
+        for (Map.Entry<String, ActionFlowStepConfig> entry : flowMap
+                .entrySet()) {
+            final int index = entry.getValue().getIndex();
+            if (index >= 0 && index < stepActions.length) {
+                stepActions[index] = entry.getKey();
+            }
+        }
+
+        // steps for display are read from the step table
+        final TreeMap<Integer, String> stepsMap = new TreeMap<Integer, String>();
+        for (int i = 1; i < stepActions.length; i++) {
+            if (stepActions[i] != null) {
+                stepsMap.put(i, stepActions[i]);
+            }
+        }
+        steps = Collections.unmodifiableSortedMap(stepsMap);
+
+        final Map<String, ActionFlowScopeCopier> copiers = new HashMap<String, ActionFlowScopeCopier>(
+                scopeCopiers);
+        for (Map.Entry<String, List<PropertyDescriptor>> entry : flowScopeFields
+                .entrySet()) {
+            if (entry.getValue() != null && !entry.getValue().isEmpty()
+                    && !copiers.containsKey(entry.getKey())) {
+                copiers.put(entry.getKey(),
+                        new MethodHandleScopeCopier(entry.getValue()));
+            }
+        }
+
+        // ordinals are stable between nodes of the cluster running same
+        // configuration, so fields are sorted by their keys
+        final Map<String, String[]> classKeys = new HashMap<String, String[]>();
+        final TreeMap<String, Integer> sortedKeys = new TreeMap<String, Integer>();
+        for (Map.Entry<String, ActionFlowScopeCopier> entry : copiers
+                .entrySet()) {
+            final String[] keys = entry.getValue().getScopeKeys();
+            classKeys.put(entry.getKey(), keys);
+            for (String key : keys) {
+                sortedKeys.put(key, null);
+            }
+        }
+        final Map<String, Integer> ordinals = new HashMap<String, Integer>();
+        for (String key : sortedKeys.keySet()) {
+            ordinals.put(key, Integer.valueOf(ordinals.size()));
+        }
+        scopeOrdinals = Collections.unmodifiableMap(ordinals);
+
+        final Map<String, ActionFlowScopeConfig> configs = new HashMap<String, ActionFlowScopeConfig>();
+        for (Map.Entry<String, ActionFlowScopeCopier> entry : copiers
+                .entrySet()) {
+            final String[] keys = classKeys.get(entry.getKey());
+            final int[] classOrdinals = new int[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                classOrdinals[i] = ordinals.get(keys[i]).intValue();
+            }
+            configs.put(entry.getKey(), new ActionFlowScopeConfig(
+                    entry.getValue(), keys, classOrdinals));
+        }
+        scopeConfigs = Collections.unmodifiableMap(configs);
+
+        // steps data for every step index and the default one
+        stepsData = new ActionFlowStepsData[Math.max(flowMap.size(), 2)];
+        for (int i = 0; i < stepsData.length; i++) {
+            stepsData[i] = new ActionFlowStepsData(steps, i);
+        }
+    }
+
+    /**
+     * @return the flowMap
+     */
+    public Map<String, ActionFlowStepConfig> getFlowMap() {
+        return flowMap;
+    }
+
+    /**
+     * @return the flowScopeFields
+     */
+    public Map<String, List<PropertyDescriptor>> getFlowScopeFields() {
+        return flowScopeFields;
+    }
+
+    /**
+     * @return the steps
+     */
+    public SortedMap<Integer, String> getSteps() {
+        return steps;
+    }
+
+    /**
+     * Gets steps data for the given step index.
+     * 
+     * @param stepIndex
+     *            index of the step starting from 1.
+     * @return Shared immutable steps data.
+     */
+    public ActionFlowStepsData getStepsData(final int stepIndex) {
+        return stepsData[stepIndex];
+    }
+
+    /**
+     * @return the startAction
+     */
+    public String getStartAction() {
+        return startAction;
+    }
+
+    /**
+     * Gets the name of the flow action with the given step index.
+     * 
+     * @param stepIndex
+     *            step index of the flow action.
+     * @return Name of the flow action or <code>null</code> if there is no such
+     *         step.
+     */
+    public String getStepAction(final int stepIndex) {
+        if (stepIndex < 0 || stepIndex >= stepActions.length) {
+            return null;
+        }
+        return stepActions[stepIndex];
+    }
+
+    /**
+     * Gets the step index of the flow action with the given name.
+     * 
+     * @param actionName
+     *            name of the flow action.
+     * @return Step index of the flow action or
+     *         {@link ActionFlowState#NO_ACTION} if it is not a flow action.
+     */
+    public int getStepIndex(final String actionName) {
+        final ActionFlowStepConfig stepConfig = actionName == null ? null
+                : flowMap.get(actionName);
+        return stepConfig == null ? ActionFlowState.NO_ACTION : stepConfig
+                .getIndex();
+    }
+
+    /**
+     * Gets the ordinal of the action flow scope field.
+     * 
+     * @param getter
+     *            getter of the action flow scope field.
+     * @return Ordinal of the field or <code>-1</code> if it is not an action
+     *         flow scope field.
+     */
+    public int getScopeOrdinal(final Method getter) {
+        final Integer ordinal = scopeOrdinals.get(MethodHandleScopeCopier
+                .scopeKey(getter));
+        return ordinal == null ? -1 : ordinal.intValue();
+    }
+
+    /**
+     * @return the number of the action flow scope field ordinals.
+     */
+    public int getScopeSize() {
+        return scopeOrdinals.size();
+    }
+
+    /**
+     * Gets action flow scope of the action class.
+     * 
+     * @param actionClassName
+     *            name of the action class.
+     * @return Action flow scope or <code>null</code> if the action class has no
+     *         action flow scope fields.
+     */
+    public ActionFlowScopeConfig getScopeConfig(final String actionClassName) {
+        return scopeConfigs.get(actionClassName);
+    }
+
+    /**
+     * @return the statistics
+     */
+    public ActionFlowStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Gets configuration of the action with the given name.
+     * 
+     * @param actionName
+     *            name of the action.
+     * @return Configuration of the action, {@link ActionFlowActionConfig#OTHER}
+     *         if the action has no role in action flow.
+     */
+    public ActionFlowActionConfig getAction(final String actionName) {
+        final ActionFlowActionConfig action = actions.get(actionName);
+        return action == null ? ActionFlowActionConfig.OTHER : action;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow.entities;
+
+import com.amashchenko.struts2.actionflow.ActionFlowScopeCopier;
+
+/**
+ * Action flow scope of one action class. Holds the copier of the fields and
+ * the slots of their values in the action flow state.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+public final class ActionFlowScopeConfig {
+    /** Copier of the action flow scope fields. */
+    private final ActionFlowScopeCopier copier;
+
+    /** Keys of the fields, where index is the index of the copier value. */
+    private final String[] scopeKeys;
+
+    /** Ordinals of the fields, where index is the index of the copier value. */
+    private final int[] ordinals;
+
+    /**
+     * 
+     * @param copier
+     *            copier of the action flow scope fields.
+     * @param scopeKeys
+     *            keys of the fields.
+     * @param ordinals
+     *            ordinals of the fields in the action flow state.
+     */
+    public ActionFlowScopeConfig(final ActionFlowScopeCopier copier,
+            final String[] scopeKeys, final int[] ordinals) {
+        this.copier = copier;
+        this.scopeKeys = scopeKeys;
+        this.ordinals = ordinals;
+    }
+
+    /**
+     * @return the copier
+     */
+    public ActionFlowScopeCopier getCopier() {
+        return copier;
+    }
+
+    /**
+     * @return the number of the action flow scope fields.
+     */
+    public int size() {
+        return ordinals.length;
+    }
+
+    /**
+     * Gets key of the field.
+     * 
+     * @param index
+     *            index of the copier value.
+     * @return Key of the field.
+     */
+    public String getScopeKey(final int index) {
+        return scopeKeys[index];
+    }
+
+    /**
+     * Gets ordinal of the field in the action flow state.
+     * 
+     * @param index
+     *            index of the copier value.
+     * @return Ordinal of the field.
+     */
+    public int getOrdinal(final int index) {
+        return ordinals[index];
+    }
+}
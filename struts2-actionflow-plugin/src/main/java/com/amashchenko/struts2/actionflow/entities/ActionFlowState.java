@@ -0,0 +1,391 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow.entities;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Arrays;
+
+/**
+ * Holds the state of the action flow of one user. It is kept in session under
+ * a single key, so the action flow reads it once per request and puts it back
+ * at most once.
+ * <p/>
+ * Flow actions are held as step indices of the compiled action flow, see
+ * {@link ActionFlowConfig#getStepIndex(String)}, and action flow scope values
+ * as slots of the scope field ordinals, see
+ * {@link ActionFlowConfig#getScopeOrdinal(java.lang.reflect.Method)}. The
+ * state is written in a compact binary form for session replication and
+ * persistent session managers.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+public class ActionFlowState implements Externalizable {
+
+    /** Serial version uid. */
+    private static final long serialVersionUID = 5216417395380927411L;
+
+    /** Version of the external form. */
+    private static final int EXTERNAL_VERSION = 2;
+
+    /** Version of the external form without expiry time. */
+    private static final int EXTERNAL_VERSION_NO_EXPIRY = 1;
+
+    /** Value of the step index if there is no action. */
+    public static final int NO_ACTION = -1;
+
+    /** Index of the previous flow action. */
+    private int previousAction = NO_ACTION;
+
+    /** Highest index of the executed flow action. */
+    private int highestCurrentIndex;
+
+    /** Indices of the actions which skipped actions, by skipped action index. */
+    private int[] skipActions;
+
+    /** Index of the action overridden in {@code ActionFlowAware}. */
+    private int overrideAction = NO_ACTION;
+
+    /** Action flow scope values, by scope field ordinal. */
+    private Object[] scope;
+
+    /** Time in milliseconds when this state expires, 0 if it never does. */
+    private long expiryTime;
+
+    /** Whether the state was changed since it was put into session. */
+    private transient boolean modified;
+
+    /**
+     * @return the previousAction index or {@link #NO_ACTION}.
+     */
+    public int getPreviousAction() {
+        return previousAction;
+    }
+
+    /**
+     * @param previousAction
+     *            the previousAction index to set
+     */
+    public void setPreviousAction(int previousAction) {
+        if (this.previousAction != previousAction) {
+            this.previousAction = previousAction;
+            modified = true;
+        }
+    }
+
+    /**
+     * @return the highestCurrentIndex
+     */
+    public int getHighestCurrentIndex() {
+        return highestCurrentIndex;
+    }
+
+    /**
+     * @param highestCurrentIndex
+     *            the highestCurrentIndex to set
+     */
+    public void setHighestCurrentIndex(int highestCurrentIndex) {
+        if (this.highestCurrentIndex != highestCurrentIndex) {
+            this.highestCurrentIndex = highestCurrentIndex;
+            modified = true;
+        }
+    }
+
+    /**
+     * @return the expiryTime in milliseconds or 0 if the state never expires.
+     */
+    public long getExpiryTime() {
+        return expiryTime;
+    }
+
+    /**
+     * @param expiryTime
+     *            the expiryTime in milliseconds to set, 0 if the state never
+     *            expires
+     */
+    public void setExpiryTime(long expiryTime) {
+        if (this.expiryTime != expiryTime) {
+            this.expiryTime = expiryTime;
+            modified = true;
+        }
+    }
+
+    /**
+     * Checks whether this state is expired.
+     * 
+     * @param now
+     *            current time in milliseconds.
+     * @return <code>true</code> if this state is expired.
+     */
+    public boolean isExpired(final long now) {
+        return expiryTime != 0 && now >= expiryTime;
+    }
+
+    /**
+     * Gets the action which skipped the given action.
+     * 
+     * @param stepIndex
+     *            index of the skipped action.
+     * @return Index of the action which skipped the given one or
+     *         {@link #NO_ACTION}.
+     */
+    public int getSkipAction(final int stepIndex) {
+        if (skipActions == null || stepIndex < 0
+                || stepIndex >= skipActions.length) {
+            return NO_ACTION;
+        }
+        return skipActions[stepIndex];
+    }
+
+    /**
+     * Sets the action which skipped the given action.
+     * 
+     * @param stepIndex
+     *            index of the skipped action.
+     * @param skipAction
+     *            index of the action which skipped the given one or
+     *            {@link #NO_ACTION} to remove it.
+     */
+    public void setSkipAction(final int stepIndex, final int skipAction) {
+        if (stepIndex < 0 || getSkipAction(stepIndex) == skipAction) {
+            return;
+        }
+        if (skipActions == null || stepIndex >= skipActions.length) {
+            final int oldLength = skipActions == null ? 0 : skipActions.length;
+            skipActions = skipActions == null ? new int[stepIndex + 1]
+                    : Arrays.copyOf(skipActions, stepIndex + 1);
+            Arrays.fill(skipActions, oldLength, skipActions.length, NO_ACTION);
+        }
+        skipActions[stepIndex] = skipAction;
+        modified = true;
+    }
+
+    /**
+     * @return the overrideAction index or {@link #NO_ACTION}.
+     */
+    public int getOverrideAction() {
+        return overrideAction;
+    }
+
+    /**
+     * @param overrideAction
+     *            the overrideAction index to set
+     */
+    public void setOverrideAction(int overrideAction) {
+        if (this.overrideAction != overrideAction) {
+            this.overrideAction = overrideAction;
+            modified = true;
+        }
+    }
+
+    /**
+     * Gets the action flow scope value.
+     * 
+     * @param ordinal
+     *            ordinal of the scope field.
+     * @return Value or <code>null</code> if there is no value.
+     */
+    public Object getScopeValue(final int ordinal) {
+        if (scope == null || ordinal < 0 || ordinal >= scope.length) {
+            return null;
+        }
+        return scope[ordinal];
+    }
+
+    /**
+     * Checks whether the state holds any action flow scope value.
+     * 
+     * @return <code>true</code> if there are scope values.
+     */
+    public boolean hasScopeValues() {
+        if (scope != null) {
+            for (Object value : scope) {
+                if (value != null) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Makes room for the given number of action flow scope values at once,
+     * so setting them doesn't grow the slots one by one. Doesn't mark the
+     * state as modified.
+     * 
+     * @param size
+     *            number of the scope field ordinals.
+     */
+    public void ensureScopeCapacity(final int size) {
+        if (scope == null ? size > 0 : size > scope.length) {
+            scope = scope == null ? new Object[size] : Arrays.copyOf(scope,
+                    size);
+        }
+    }
+
+    /**
+     * Sets the action flow scope value. The state is marked as modified only
+     * if the value isn't equal to the stored one.
+     * 
+     * @param ordinal
+     *            ordinal of the scope field.
+     * @param value
+     *            value to set.
+     */
+    public void setScopeValue(final int ordinal, final Object value) {
+        if (ordinal < 0) {
+            return;
+        }
+        final Object oldValue = getScopeValue(ordinal);
+        if (oldValue == null ? value == null : oldValue.equals(value)) {
+            return;
+        }
+        if (scope == null || ordinal >= scope.length) {
+            scope = scope == null ? new Object[ordinal + 1] : Arrays.copyOf(
+                    scope, ordinal + 1);
+        }
+        scope[ordinal] = value;
+        modified = true;
+    }
+
+    /**
+     * Setters mark the state as modified only if the value is changed.
+     * 
+     * @return <code>true</code> if the state was changed since it was put into
+     *         session.
+     */
+    public boolean isModified() {
+        return modified;
+    }
+
+    /**
+     * @param modified
+     *            the modified to set
+     */
+    public void setModified(boolean modified) {
+        this.modified = modified;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        writeExternal(out, true);
+    }
+
+    /**
+     * Writes this state in the external form, optionally leaving out the
+     * action flow scope values.
+     * 
+     * @param out
+     *            stream to write to.
+     * @param scopeValues
+     *            whether to write the action flow scope values.
+     * @throws IOException
+     *             if I/O error occurs.
+     */
+    public void writeExternal(ObjectOutput out, boolean scopeValues)
+            throws IOException {
+        out.writeByte(EXTERNAL_VERSION);
+        out.writeInt(previousAction);
+        out.writeInt(highestCurrentIndex);
+        out.writeInt(overrideAction);
+        out.writeLong(expiryTime);
+
+        // skipped actions as pairs of indices
+        int count = 0;
+        if (skipActions != null) {
+            for (int skipAction : skipActions) {
+                if (skipAction != NO_ACTION) {
+                    count++;
+                }
+            }
+        }
+        out.writeInt(count);
+        for (int i = 0; count > 0 && i < skipActions.length; i++) {
+            if (skipActions[i] != NO_ACTION) {
+                out.writeInt(i);
+                out.writeInt(skipActions[i]);
+            }
+        }
+
+        // scope values with their ordinals
+        count = 0;
+        if (scope != null && scopeValues) {
+            for (Object value : scope) {
+                if (value != null) {
+                    count++;
+                }
+            }
+        }
+        out.writeInt(count);
+        for (int i = 0; count > 0 && i < scope.length; i++) {
+            if (scope[i] != null) {
+                out.writeInt(i);
+                out.writeObject(scope[i]);
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void readExternal(ObjectInput in) throws IOException,
+            ClassNotFoundException {
+        final int version = in.readByte();
+        if (version != EXTERNAL_VERSION
+                && version != EXTERNAL_VERSION_NO_EXPIRY) {
+            throw new IOException("Unsupported version " + version
+                    + " of the action flow state.");
+        }
+        previousAction = in.readInt();
+        highestCurrentIndex = in.readInt();
+        overrideAction = in.readInt();
+        expiryTime = version == EXTERNAL_VERSION_NO_EXPIRY ? 0 : in.readLong();
+
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            final int stepIndex = in.readInt();
+            setSkipAction(stepIndex, in.readInt());
+        }
+
+        count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            final int ordinal = in.readInt();
+            setScopeValue(ordinal, in.readObject());
+        }
+
+        modified = false;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{ActionFlowState ");
+        sb.append("previousAction:").append(previousAction).append(", ");
+        sb.append("highestCurrentIndex:").append(highestCurrentIndex)
+                .append(", ");
+        sb.append("skipActions:").append(Arrays.toString(skipActions))
+                .append(", ");
+        sb.append("overrideAction:").append(overrideAction).append(", ");
+        sb.append("expiryTime:").append(expiryTime).append(", ");
+        sb.append("scope:").append(Arrays.toString(scope));
+        sb.append("}");
+        return sb.toString();
+    }
+}
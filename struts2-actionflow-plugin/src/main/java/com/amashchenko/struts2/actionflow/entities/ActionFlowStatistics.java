@@ -0,0 +1,88 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow.entities;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of the action flow of one package. Shared by all interceptor
+ * instances and all compilations of the flow of this package.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+public final class ActionFlowStatistics {
+    /** Number of session writes skipped because nothing was changed. */
+    private final AtomicLong skippedSessionWrites = new AtomicLong();
+
+    /** Number of action flow scope values not written because unchanged. */
+    private final AtomicLong avoidedScopeWrites = new AtomicLong();
+
+    /** Number of expired action flow states removed on access. */
+    private final AtomicLong expiredStates = new AtomicLong();
+
+    /** Counts session write skipped because the state wasn't changed. */
+    public void skippedSessionWrite() {
+        skippedSessionWrites.incrementAndGet();
+    }
+
+    /** Counts action flow scope value not written because it wasn't changed. */
+    public void avoidedScopeWrite() {
+        avoidedScopeWrites.incrementAndGet();
+    }
+
+    /** Counts expired action flow state removed on access. */
+    public void expiredState() {
+        expiredStates.incrementAndGet();
+    }
+
+    /**
+     * @return the number of session writes skipped because action flow state
+     *         wasn't changed.
+     */
+    public long getSkippedSessionWrites() {
+        return skippedSessionWrites.get();
+    }
+
+    /**
+     * @return the number of action flow scope values which weren't written
+     *         back into the state because they weren't changed.
+     */
+    public long getAvoidedScopeWrites() {
+        return avoidedScopeWrites.get();
+    }
+
+    /**
+     * @return the number of expired action flow states removed on access.
+     */
+    public long getExpiredStates() {
+        return expiredStates.get();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{ActionFlowStatistics ");
+        sb.append("skippedSessionWrites:").append(skippedSessionWrites)
+                .append(", ");
+        sb.append("avoidedScopeWrites:").append(avoidedScopeWrites)
+                .append(", ");
+        sb.append("expiredStates:").append(expiredStates);
+        sb.append("}");
+        return sb.toString();
+    }
+}
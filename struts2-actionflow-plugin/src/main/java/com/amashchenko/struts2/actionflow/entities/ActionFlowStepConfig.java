@@ -25,11 +25,15 @@ public class ActionFlowStepConfig {
     private int index;
     private String nextAction;
     private String prevAction;
+    private String viewAction;
+    private String viewUri;
 
     protected ActionFlowStepConfig(ActionFlowStepConfig orig) {
         this.index = orig.index;
         this.nextAction = orig.nextAction;
         this.prevAction = orig.prevAction;
+        this.viewAction = orig.viewAction;
+        this.viewUri = orig.viewUri;
     }
 
     protected ActionFlowStepConfig(int index, String nextAction,
@@ -60,6 +64,21 @@ public class ActionFlowStepConfig {
         return prevAction;
     }
 
+    /**
+     * @return the viewAction
+     */
+    public String getViewAction() {
+        return viewAction;
+    }
+
+    /**
+     * @return the URI of the view action or <code>null</code> if the view
+     *         result doesn't use it
+     */
+    public String getViewUri() {
+        return viewUri;
+    }
+
     /** {@inheritDoc} */
     @Override
     public boolean equals(Object o) {
@@ -83,6 +102,14 @@ public class ActionFlowStepConfig {
                 : (stepConfig.prevAction != null)) {
             return false;
         }
+        if ((viewAction != null) ? (!viewAction.equals(stepConfig.viewAction))
+                : (stepConfig.viewAction != null)) {
+            return false;
+        }
+        if ((viewUri != null) ? (!viewUri.equals(stepConfig.viewUri))
+                : (stepConfig.viewUri != null)) {
+            return false;
+        }
         return true;
     }
 
@@ -96,6 +123,9 @@ public class ActionFlowStepConfig {
                 + ((nextAction == null) ? 0 : nextAction.hashCode());
         result = prime * result
                 + ((prevAction == null) ? 0 : prevAction.hashCode());
+        result = prime * result
+                + ((viewAction == null) ? 0 : viewAction.hashCode());
+        result = prime * result + ((viewUri == null) ? 0 : viewUri.hashCode());
         return result;
     }
 
@@ -106,7 +136,9 @@ public class ActionFlowStepConfig {
         sb.append("{ActionFlowStepConfig ");
         sb.append("index:").append(index).append(", ");
         sb.append("nextAction:").append(nextAction).append(", ");
-        sb.append("prevAction:").append(prevAction);
+        sb.append("prevAction:").append(prevAction).append(", ");
+        sb.append("viewAction:").append(viewAction).append(", ");
+        sb.append("viewUri:").append(viewUri);
         sb.append("}");
         return sb.toString();
     }
@@ -141,6 +173,16 @@ public class ActionFlowStepConfig {
             return this;
         }
 
+        public Builder viewAction(String viewAction) {
+            target.viewAction = viewAction;
+            return this;
+        }
+
+        public Builder viewUri(String viewUri) {
+            target.viewUri = viewUri;
+            return this;
+        }
+
         public ActionFlowStepConfig build() {
             ActionFlowStepConfig result = target;
             target = new ActionFlowStepConfig(target);
@@ -15,18 +15,19 @@
  */
 package com.amashchenko.struts2.actionflow.entities;
 
-import java.util.TreeMap;
+import java.util.SortedMap;
 
 /**
  * Holds sorted indexed map of steps names and currently active step index. Step
  * index starts from <code>1</code> for more convenient display in view.
+ * Instances are immutable and shared between requests.
  * 
  * @author Aleksandr Mashchenko
  * 
  */
-public class ActionFlowStepsData {
+public final class ActionFlowStepsData {
     /** Naturally sorted step names. */
-    private final TreeMap<Integer, String> steps;
+    private final SortedMap<Integer, String> steps;
 
     /** Currently active step index. */
     private final Integer stepIndex;
@@ -38,10 +39,10 @@ public class ActionFlowStepsData {
      * @param stepIndex
      *            active step index.
      */
-    public ActionFlowStepsData(final TreeMap<Integer, String> steps,
-            final Integer stepIndex) {
+    public ActionFlowStepsData(final SortedMap<Integer, String> steps,
+            final int stepIndex) {
         this.steps = steps;
-        this.stepIndex = stepIndex;
+        this.stepIndex = Integer.valueOf(stepIndex);
     }
 
     /**
@@ -54,7 +55,7 @@ public class ActionFlowStepsData {
     /**
      * @return the steps
      */
-    public TreeMap<Integer, String> getSteps() {
+    public SortedMap<Integer, String> getSteps() {
         return steps;
     }
 }
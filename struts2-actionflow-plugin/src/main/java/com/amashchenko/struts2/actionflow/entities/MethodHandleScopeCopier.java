@@ -0,0 +1,155 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow.entities;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.List;
+
+import com.amashchenko.struts2.actionflow.ActionFlowScopeCopier;
+
+/**
+ * Action flow scope copier of the action class without generated copier.
+ * Getters and setters of the fields are bound to method handles once when the
+ * action flow is compiled, so requests don't go through reflective
+ * {@link Method#invoke(Object, Object...)}.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+public final class MethodHandleScopeCopier implements ActionFlowScopeCopier {
+    /** Getter type, any action and any value. */
+    private static final MethodType GETTER_TYPE = MethodType.methodType(
+            Object.class, Object.class);
+
+    /** Setter type, any action and any value. */
+    private static final MethodType SETTER_TYPE = MethodType.methodType(
+            void.class, Object.class, Object.class);
+
+    /** Keys of the fields. */
+    private final String[] scopeKeys;
+
+    /** Getters of the fields of type {@link #GETTER_TYPE}. */
+    private final MethodHandle[] getters;
+
+    /** Setters of the fields of type {@link #SETTER_TYPE}. */
+    private final MethodHandle[] setters;
+
+    /**
+     * 
+     * @param pds
+     *            property descriptors of the fields having getter and setter.
+     */
+    public MethodHandleScopeCopier(final List<PropertyDescriptor> pds) {
+        scopeKeys = new String[pds.size()];
+        getters = new MethodHandle[pds.size()];
+        setters = new MethodHandle[pds.size()];
+        for (int i = 0; i < scopeKeys.length; i++) {
+            final PropertyDescriptor pd = pds.get(i);
+            scopeKeys[i] = scopeKey(pd.getReadMethod());
+            getters[i] = unreflect(pd.getReadMethod()).asType(GETTER_TYPE);
+            setters[i] = unreflect(pd.getWriteMethod()).asType(SETTER_TYPE);
+        }
+    }
+
+    /**
+     * Creates key of the action flow scope field.
+     * 
+     * @param getter
+     *            getter of the field.
+     * @return Key of the field.
+     * @see ActionFlowScopeCopier#getScopeKeys()
+     */
+    public static String scopeKey(final Method getter) {
+        return getter.getDeclaringClass().getName() + "." + getter.getName();
+    }
+
+    /**
+     * Creates method handle for the given accessor method.
+     * 
+     * @param method
+     *            accessor method.
+     * @return Method handle of the accessor.
+     */
+    private static MethodHandle unreflect(final Method method) {
+        if (!Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+            method.setAccessible(true);
+        }
+        try {
+            return MethodHandles.lookup().unreflect(method);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot access '" + method
+                    + "' of the action flow scope field.", e);
+        }
+    }
+
+    /**
+     * Rethrows exception thrown by an accessor.
+     * 
+     * @param t
+     *            thrown exception.
+     * @return Never returns.
+     * @throws Exception
+     *             the same exception if it is checked one.
+     */
+    private static Exception rethrow(final Throwable t) throws Exception {
+        if (t instanceof Exception) {
+            throw (Exception) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        throw new IllegalStateException(t);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String[] getScopeKeys() {
+        return scopeKeys.clone();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void read(final Object action, final Object[] values)
+            throws Exception {
+        try {
+            for (int i = 0; i < getters.length; i++) {
+                values[i] = (Object) getters[i].invokeExact(action);
+            }
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(final Object action, final Object[] values)
+            throws Exception {
+        try {
+            for (int i = 0; i < setters.length; i++) {
+                if (values[i] != null) {
+                    setters[i].invokeExact(action, values[i]);
+                }
+            }
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+}
@@ -15,17 +15,11 @@
  */
 package com.amashchenko.struts2.actionflow;
 
-import javax.servlet.http.HttpSession;
-
-import org.apache.struts2.StrutsJUnit4TestCase;
 import org.junit.Assert;
 import org.junit.Test;
-import org.springframework.mock.web.MockHttpServletRequest;
-import org.springframework.mock.web.MockHttpServletResponse;
-import org.springframework.mock.web.MockPageContext;
-import org.springframework.mock.web.MockServletContext;
 
 import com.amashchenko.struts2.actionflow.mock.MockActionFlowAwareAction;
+import com.amashchenko.struts2.actionflow.test.ActionFlowTestCase;
 import com.amashchenko.struts2.actionflow.test.TestConstants;
 
 /**
@@ -35,7 +29,14 @@ import com.amashchenko.struts2.actionflow.test.TestConstants;
  * 
  */
 public class ActionFlowAwareTest extends
-        StrutsJUnit4TestCase<MockActionFlowAwareAction> {
+        ActionFlowTestCase<MockActionFlowAwareAction> {
+
+    /** Session key of action flow state of the tested package. */
+    private static final String FLOW_STATE_KEY = TestConstants
+            .flowStateKey("correctFlowAware");
+    /** Expression for getting current highest action index from session. */
+    private static final String SESSION_HIGHEST_CURRENT_ACTION_INDEX = TestConstants
+            .sessionHighestCurrentActionIndex("correctFlowAware");
 
     /** {@inheritDoc} */
     @Override
@@ -43,22 +44,6 @@ public class ActionFlowAwareTest extends
         return "struts-plugin.xml, struts-test.xml";
     }
 
-    /** Initializes servlet mock objects but preserves session. */
-    private void initServletMockObjectsPreserveSession() {
-        servletContext = new MockServletContext(resourceLoader);
-        response = new MockHttpServletResponse();
-
-        // preserve session
-        HttpSession session = null;
-        if (request != null && request.getSession() != null) {
-            session = request.getSession();
-        }
-        request = new MockHttpServletRequest();
-        request.setSession(session);
-
-        pageContext = new MockPageContext(servletContext, request, response);
-    }
-
     /**
      * Tests skipping action on 'next'.
      * 
@@ -72,7 +57,7 @@ public class ActionFlowAwareTest extends
         Assert.assertEquals(null, previousAction);
         String viewActionParam = (String) findValueAfterExecute(ActionFlowInterceptor.VIEW_ACTION_PARAM);
         Assert.assertEquals(null, viewActionParam);
-        Integer highestCurrentIndex = (Integer) findValueAfterExecute(TestConstants.SESSION_HIGHEST_CURRENT_ACTION_INDEX);
+        Integer highestCurrentIndex = (Integer) findValueAfterExecute(SESSION_HIGHEST_CURRENT_ACTION_INDEX);
         Assert.assertEquals(null, highestCurrentIndex);
 
         initServletMockObjectsPreserveSession();
@@ -85,7 +70,7 @@ public class ActionFlowAwareTest extends
         viewActionParam = (String) findValueAfterExecute(ActionFlowInterceptor.VIEW_ACTION_PARAM);
         Assert.assertEquals("saveEmail-3View", viewActionParam);
 
-        highestCurrentIndex = (Integer) findValueAfterExecute(TestConstants.SESSION_HIGHEST_CURRENT_ACTION_INDEX);
+        highestCurrentIndex = (Integer) findValueAfterExecute(SESSION_HIGHEST_CURRENT_ACTION_INDEX);
         Assert.assertEquals(new Integer(2), highestCurrentIndex);
     }
 
@@ -102,15 +87,13 @@ public class ActionFlowAwareTest extends
         Assert.assertEquals(null, previousAction);
         String viewActionParam = (String) findValueAfterExecute(ActionFlowInterceptor.VIEW_ACTION_PARAM);
         Assert.assertEquals(null, viewActionParam);
-        Integer highestCurrentIndex = (Integer) findValueAfterExecute(TestConstants.SESSION_HIGHEST_CURRENT_ACTION_INDEX);
+        Integer highestCurrentIndex = (Integer) findValueAfterExecute(SESSION_HIGHEST_CURRENT_ACTION_INDEX);
         Assert.assertEquals(null, highestCurrentIndex);
 
         initServletMockObjectsPreserveSession();
 
-        request.getSession().setAttribute(TestConstants.PREVIOUS_FLOW_ACTION,
-                "saveAddress-4");
-        request.getSession().setAttribute(
-                TestConstants.HIGHEST_CURRENT_ACTION_INDEX, 4);
+        request.getSession().setAttribute(FLOW_STATE_KEY,
+                TestConstants.flowState(4, 4));
         request.setParameter("name",
                 MockActionFlowAwareAction.SKIP_MULTIPLE_ACTIONS);
         executeAction("/correctFlowAware/next");
@@ -121,7 +104,7 @@ public class ActionFlowAwareTest extends
         viewActionParam = (String) findValueAfterExecute(ActionFlowInterceptor.VIEW_ACTION_PARAM);
         Assert.assertEquals("saveAddress-4View", viewActionParam);
 
-        highestCurrentIndex = (Integer) findValueAfterExecute(TestConstants.SESSION_HIGHEST_CURRENT_ACTION_INDEX);
+        highestCurrentIndex = (Integer) findValueAfterExecute(SESSION_HIGHEST_CURRENT_ACTION_INDEX);
         Assert.assertEquals(new Integer(4), highestCurrentIndex);
     }
 
@@ -138,7 +121,7 @@ public class ActionFlowAwareTest extends
         Assert.assertEquals(null, previousAction);
         String viewActionParam = (String) findValueAfterExecute(ActionFlowInterceptor.VIEW_ACTION_PARAM);
         Assert.assertEquals(null, viewActionParam);
-        Integer highestCurrentIndex = (Integer) findValueAfterExecute(TestConstants.SESSION_HIGHEST_CURRENT_ACTION_INDEX);
+        Integer highestCurrentIndex = (Integer) findValueAfterExecute(SESSION_HIGHEST_CURRENT_ACTION_INDEX);
         Assert.assertEquals(null, highestCurrentIndex);
 
         initServletMockObjectsPreserveSession();
@@ -153,7 +136,7 @@ public class ActionFlowAwareTest extends
         viewActionParam = (String) findValueAfterExecute(ActionFlowInterceptor.VIEW_ACTION_PARAM);
         Assert.assertEquals("savePhone-2View", viewActionParam);
 
-        highestCurrentIndex = (Integer) findValueAfterExecute(TestConstants.SESSION_HIGHEST_CURRENT_ACTION_INDEX);
+        highestCurrentIndex = (Integer) findValueAfterExecute(SESSION_HIGHEST_CURRENT_ACTION_INDEX);
         Assert.assertEquals(new Integer(1), highestCurrentIndex);
     }
 
@@ -170,15 +153,13 @@ public class ActionFlowAwareTest extends
         Assert.assertEquals(null, previousAction);
         String viewActionParam = (String) findValueAfterExecute(ActionFlowInterceptor.VIEW_ACTION_PARAM);
         Assert.assertEquals(null, viewActionParam);
-        Integer highestCurrentIndex = (Integer) findValueAfterExecute(TestConstants.SESSION_HIGHEST_CURRENT_ACTION_INDEX);
+        Integer highestCurrentIndex = (Integer) findValueAfterExecute(SESSION_HIGHEST_CURRENT_ACTION_INDEX);
         Assert.assertEquals(null, highestCurrentIndex);
 
         initServletMockObjectsPreserveSession();
 
-        request.getSession().setAttribute(TestConstants.PREVIOUS_FLOW_ACTION,
-                "saveAddress-4");
-        request.getSession().setAttribute(
-                TestConstants.HIGHEST_CURRENT_ACTION_INDEX, 4);
+        request.getSession().setAttribute(FLOW_STATE_KEY,
+                TestConstants.flowState(4, 4));
         request.setParameter("name",
                 MockActionFlowAwareAction.WRONG_ACTION_NAME);
         executeAction("/correctFlowAware/next");
@@ -189,7 +170,7 @@ public class ActionFlowAwareTest extends
         viewActionParam = (String) findValueAfterExecute(ActionFlowInterceptor.VIEW_ACTION_PARAM);
         Assert.assertEquals(null, viewActionParam);
 
-        highestCurrentIndex = (Integer) findValueAfterExecute(TestConstants.SESSION_HIGHEST_CURRENT_ACTION_INDEX);
+        highestCurrentIndex = (Integer) findValueAfterExecute(SESSION_HIGHEST_CURRENT_ACTION_INDEX);
         Assert.assertEquals(null, highestCurrentIndex);
     }
 
@@ -206,7 +187,7 @@ public class ActionFlowAwareTest extends
         Assert.assertEquals(null, previousAction);
         String viewActionParam = (String) findValueAfterExecute(ActionFlowInterceptor.VIEW_ACTION_PARAM);
         Assert.assertEquals(null, viewActionParam);
-        Integer highestCurrentIndex = (Integer) findValueAfterExecute(TestConstants.SESSION_HIGHEST_CURRENT_ACTION_INDEX);
+        Integer highestCurrentIndex = (Integer) findValueAfterExecute(SESSION_HIGHEST_CURRENT_ACTION_INDEX);
         Assert.assertEquals(null, highestCurrentIndex);
 
         initServletMockObjectsPreserveSession();
@@ -220,7 +201,7 @@ public class ActionFlowAwareTest extends
         viewActionParam = (String) findValueAfterExecute(ActionFlowInterceptor.VIEW_ACTION_PARAM);
         Assert.assertEquals("savePhone-2View", viewActionParam);
 
-        highestCurrentIndex = (Integer) findValueAfterExecute(TestConstants.SESSION_HIGHEST_CURRENT_ACTION_INDEX);
+        highestCurrentIndex = (Integer) findValueAfterExecute(SESSION_HIGHEST_CURRENT_ACTION_INDEX);
         Assert.assertEquals(new Integer(1), highestCurrentIndex);
     }
 
@@ -248,7 +229,7 @@ public class ActionFlowAwareTest extends
         viewActionParam = (String) findValueAfterExecute(ActionFlowInterceptor.VIEW_ACTION_PARAM);
         Assert.assertEquals("saveEmail-3View", viewActionParam);
 
-        Integer highestCurrentIndex = (Integer) findValueAfterExecute(TestConstants.SESSION_HIGHEST_CURRENT_ACTION_INDEX);
+        Integer highestCurrentIndex = (Integer) findValueAfterExecute(SESSION_HIGHEST_CURRENT_ACTION_INDEX);
         Assert.assertEquals(new Integer(2), highestCurrentIndex);
 
         initServletMockObjectsPreserveSession();
@@ -289,7 +270,7 @@ public class ActionFlowAwareTest extends
         viewActionParam = (String) findValueAfterExecute(ActionFlowInterceptor.VIEW_ACTION_PARAM);
         Assert.assertEquals("saveAddress-4View", viewActionParam);
 
-        Integer highestCurrentIndex = (Integer) findValueAfterExecute(TestConstants.SESSION_HIGHEST_CURRENT_ACTION_INDEX);
+        Integer highestCurrentIndex = (Integer) findValueAfterExecute(SESSION_HIGHEST_CURRENT_ACTION_INDEX);
         Assert.assertEquals(new Integer(3), highestCurrentIndex);
 
         initServletMockObjectsPreserveSession();
@@ -332,7 +313,7 @@ public class ActionFlowAwareTest extends
         viewActionParam = (String) findValueAfterExecute(ActionFlowInterceptor.VIEW_ACTION_PARAM);
         Assert.assertEquals("saveAddress-4View", viewActionParam);
 
-        Integer highestCurrentIndex = (Integer) findValueAfterExecute(TestConstants.SESSION_HIGHEST_CURRENT_ACTION_INDEX);
+        Integer highestCurrentIndex = (Integer) findValueAfterExecute(SESSION_HIGHEST_CURRENT_ACTION_INDEX);
         Assert.assertEquals(new Integer(3), highestCurrentIndex);
 
         // prev
@@ -16,14 +16,24 @@
 package com.amashchenko.struts2.actionflow;
 
 import java.beans.PropertyDescriptor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.struts2.StrutsJUnit4TestCase;
 import org.apache.struts2.dispatcher.ServletActionRedirectResult;
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.amashchenko.struts2.actionflow.entities.ActionFlowActionConfig;
+import com.amashchenko.struts2.actionflow.entities.ActionFlowConfig;
 import com.amashchenko.struts2.actionflow.entities.ActionFlowStepConfig;
 import com.amashchenko.struts2.actionflow.mock.MockActionFlowAction;
 import com.opensymphony.xwork2.Action;
@@ -361,4 +371,197 @@ public class ActionFlowConfigBuilderConfTest extends
                 actionConfResult.getParams().get(
                         ActionChainResult.DEFAULT_PARAM));
     }
+
+    /**
+     * Tests compiling of several action flows at once.
+     * 
+     * @throws Exception
+     *             When something goes wrong.
+     */
+    @Test
+    public void testCompileFlows() throws Exception {
+        injectStrutsDependencies(this);
+        Assert.assertNotNull(flowConfigBuilder);
+        Assert.assertNotNull(configuration);
+
+        final String nextActionName = "nextActionName";
+        final ActionFlowInterceptor interceptor = new ActionFlowInterceptor();
+        interceptor.setNextActionName(nextActionName);
+
+        final Map<String, ActionFlowInterceptor> flowInterceptors = new LinkedHashMap<String, ActionFlowInterceptor>();
+        flowInterceptors.put("correctNoViewResult", interceptor);
+        // wrong flow is skipped
+        flowInterceptors.put("noInputResult", interceptor);
+        flowInterceptors.put("correctFlowAware", interceptor);
+
+        flowConfigBuilder.compileFlows(flowInterceptors);
+
+        Assert.assertNotNull(flowConfigBuilder
+                .getCompiledFlowMap("correctNoViewResult"));
+        Assert.assertNotNull(flowConfigBuilder
+                .getCompiledFlowMap("correctFlowAware"));
+        Assert.assertNull(flowConfigBuilder.getCompiledFlowMap("noInputResult"));
+
+        Assert.assertEquals(5,
+                flowConfigBuilder.getCompiledFlowMap("correctFlowAware")
+                        .get("saveWebsite-5").getIndex());
+
+        // runtime configuration is rebuilt
+        Assert.assertNotNull(configuration.getRuntimeConfiguration()
+                .getActionConfig("/correctNoViewResult", nextActionName));
+        Assert.assertNotNull(configuration.getRuntimeConfiguration()
+                .getActionConfig("/correctFlowAware", nextActionName));
+    }
+
+    /**
+     * Tests that concurrent compiling of the action flow returns the same
+     * compiled action flow.
+     * 
+     * @throws Exception
+     *             When something goes wrong.
+     */
+    @Test
+    public void testCompileFlowConcurrently() throws Exception {
+        // fresh builder, flows compiled on startup are in the injected one
+        final ActionFlowConfigBuilder builder = container
+                .inject(ActionFlowConfigBuilder.class);
+        Assert.assertNull(builder.getCompiledFlow("correctNoViewResult"));
+
+        final int threads = 4;
+        final CountDownLatch ready = new CountDownLatch(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<ActionFlowConfig>> futures = new ArrayList<Future<ActionFlowConfig>>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(new Callable<ActionFlowConfig>() {
+                    @Override
+                    public ActionFlowConfig call() throws Exception {
+                        ready.countDown();
+                        start.await();
+                        return builder.compileFlow("correctNoViewResult",
+                                "next", "prev", "View", "execute");
+                    }
+                }));
+            }
+
+            // all threads compile at once
+            ready.await();
+            start.countDown();
+
+            final ActionFlowConfig flowConfig = futures.get(0).get();
+            Assert.assertNotNull(flowConfig);
+            Assert.assertSame(flowConfig,
+                    builder.getCompiledFlow("correctNoViewResult"));
+            for (Future<ActionFlowConfig> future : futures) {
+                Assert.assertSame(flowConfig, future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Tests declared and derived start actions.
+     * 
+     * @throws Exception
+     *             When something goes wrong.
+     */
+    @Test
+    public void testStartAction() throws Exception {
+        injectStrutsDependencies(this);
+        Assert.assertNotNull(flowConfigBuilder);
+
+        // declared with parameter, wins over the derived one
+        Assert.assertEquals("declaredStart", flowConfigBuilder
+                .getCompiledFlow("correctDeclaredStart").getStartAction());
+
+        // derived from input result of the first flow action
+        Assert.assertEquals("derivedStart", flowConfigBuilder
+                .getCompiledFlow("correctDerivedStart").getStartAction());
+        for (String packageName : Arrays.asList("correctFlow",
+                "correctFlowToken", "correctFlowInstances",
+                "correctFlowTimeout", "correctFlowDirect",
+                "correctFlowViewResult", "correctFlowForward",
+                "correctFlowAware", "correctFlowOverride",
+                "correctNoViewResult", "correctActionExtends",
+                "correctFlowBypass")) {
+            Assert.assertEquals(packageName, flowConfigBuilder
+                    .getCompiledFlow(packageName).getStartAction());
+        }
+    }
+
+    /**
+     * Tests classification of the actions.
+     * 
+     * @throws Exception
+     *             When something goes wrong.
+     */
+    @Test
+    public void testActionsMap() throws Exception {
+        injectStrutsDependencies(this);
+        Assert.assertNotNull(flowConfigBuilder);
+
+        final ActionFlowConfig flowConfig = flowConfigBuilder
+                .getCompiledFlow("correctFlow");
+        Assert.assertNotNull(flowConfig);
+
+        ActionFlowActionConfig actionConfig = flowConfig
+                .getAction("savePhone-2");
+        Assert.assertEquals(ActionFlowActionConfig.Type.FLOW,
+                actionConfig.getType());
+        Assert.assertEquals(2, actionConfig.getStepConfig().getIndex());
+        Assert.assertEquals("savePhone-2View",
+                actionConfig.getViewActionName());
+
+        actionConfig = flowConfig.getAction("savePhone-2View");
+        Assert.assertEquals(ActionFlowActionConfig.Type.VIEW,
+                actionConfig.getType());
+        Assert.assertEquals(2, actionConfig.getStepConfig().getIndex());
+        Assert.assertEquals("savePhone-2", actionConfig.getFlowActionName());
+
+        Assert.assertEquals(ActionFlowActionConfig.Type.NEXT, flowConfig
+                .getAction("next").getType());
+        Assert.assertEquals(ActionFlowActionConfig.Type.PREV, flowConfig
+                .getAction("prev").getType());
+        Assert.assertEquals(ActionFlowActionConfig.Type.START, flowConfig
+                .getAction("correctFlow").getType());
+        Assert.assertSame(ActionFlowActionConfig.OTHER,
+                flowConfig.getAction("someAction"));
+    }
+
+    /**
+     * Tests numeric ordering of the flow steps.
+     * 
+     * @throws Exception
+     *             When something goes wrong.
+     */
+    @Test
+    public void testNumericStepsOrder() throws Exception {
+        injectStrutsDependencies(this);
+        Assert.assertNotNull(flowConfigBuilder);
+
+        final ActionFlowConfig flowConfig = flowConfigBuilder
+                .getCompiledFlow("numericFlowSteps");
+        Assert.assertNotNull(flowConfig);
+
+        Assert.assertEquals("saveName", flowConfig.getStepAction(1));
+        Assert.assertEquals("savePhone", flowConfig.getStepAction(2));
+        Assert.assertEquals("saveEmail", flowConfig.getStepAction(3));
+
+        final Map<String, ActionFlowStepConfig> flowMap = flowConfig
+                .getFlowMap();
+        Assert.assertEquals("saveName",
+                flowMap.get(ActionFlowInterceptor.FIRST_FLOW_ACTION_NAME)
+                        .getNextAction());
+        Assert.assertEquals("saveEmail", flowMap.get("savePhone")
+                .getNextAction());
+        Assert.assertEquals("saveName", flowMap.get("savePhone")
+                .getPrevAction());
+        Assert.assertNull(flowMap.get("saveEmail").getNextAction());
+
+        Assert.assertEquals(Arrays.asList("saveName", "savePhone",
+                "saveEmail"), new ArrayList<String>(flowConfig.getSteps()
+                .values()));
+    }
 }
@@ -15,10 +15,19 @@
  */
 package com.amashchenko.struts2.actionflow;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.amashchenko.struts2.actionflow.mock.MockActionFlowAction;
+import com.amashchenko.struts2.actionflow.mock.MockCopiedAction;
+import com.amashchenko.struts2.actionflow.mock.MockCopiedAction_ActionFlowScopeCopier;
 import com.opensymphony.xwork2.ActionSupport;
+import com.opensymphony.xwork2.config.entities.InterceptorMapping;
+import com.opensymphony.xwork2.interceptor.I18nInterceptor;
+import com.opensymphony.xwork2.interceptor.ParametersInterceptor;
 
 /**
  * Tests for action flow configuration builder.
@@ -63,6 +72,61 @@ public class ActionFlowConfigBuilderTest {
         Assert.assertNull(actionFlowConfigBuilder.findField(null, null));
     }
 
+    /**
+     * Tests findScopeCopier method.
+     * 
+     * @throws Exception
+     *             When something goes wrong.
+     */
+    @Test
+    public void testFindScopeCopier() throws Exception {
+        Assert.assertTrue(actionFlowConfigBuilder
+                .findScopeCopier(MockCopiedAction.class) instanceof MockCopiedAction_ActionFlowScopeCopier);
+        Assert.assertNull(actionFlowConfigBuilder
+                .findScopeCopier(MockActionFlowAction.class));
+    }
+
+    /**
+     * Tests createViewActionInterceptors method.
+     * 
+     * @throws Exception
+     *             When something goes wrong.
+     */
+    @Test
+    public void testCreateViewActionInterceptors() throws Exception {
+        final ActionFlowInterceptor flowInterceptor = new ActionFlowInterceptor();
+        final List<InterceptorMapping> interceptors = new ArrayList<InterceptorMapping>();
+        interceptors.add(new InterceptorMapping("actionFlow", flowInterceptor));
+        interceptors.add(new InterceptorMapping("i18n", new I18nInterceptor()));
+        interceptors.add(new InterceptorMapping("params",
+                new ParametersInterceptor()));
+
+        // default
+        List<InterceptorMapping> viewInterceptors = actionFlowConfigBuilder
+                .createViewActionInterceptors(interceptors);
+        Assert.assertEquals(2, viewInterceptors.size());
+        Assert.assertEquals("actionFlow", viewInterceptors.get(0).getName());
+        Assert.assertEquals("i18n", viewInterceptors.get(1).getName());
+
+        // custom
+        flowInterceptor.setViewActionInterceptors("params");
+        viewInterceptors = actionFlowConfigBuilder
+                .createViewActionInterceptors(interceptors);
+        Assert.assertEquals(2, viewInterceptors.size());
+        Assert.assertEquals("actionFlow", viewInterceptors.get(0).getName());
+        Assert.assertEquals("params", viewInterceptors.get(1).getName());
+
+        // all
+        flowInterceptor.setViewActionInterceptors("*");
+        Assert.assertEquals(interceptors, actionFlowConfigBuilder
+                .createViewActionInterceptors(interceptors));
+
+        // no flow interceptor
+        final List<InterceptorMapping> noFlow = interceptors.subList(1, 3);
+        Assert.assertEquals(noFlow,
+                actionFlowConfigBuilder.createViewActionInterceptors(noFlow));
+    }
+
     class LevelOne extends ActionSupport {
         private static final long serialVersionUID = 1L;
         String name;
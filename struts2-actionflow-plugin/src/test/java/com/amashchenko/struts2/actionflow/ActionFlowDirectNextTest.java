@@ -0,0 +1,96 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow;
+
+import org.apache.struts2.dispatcher.SessionMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.amashchenko.struts2.actionflow.entities.ActionFlowState;
+import com.amashchenko.struts2.actionflow.test.ActionFlowTestCase;
+import com.amashchenko.struts2.actionflow.test.TestConstants;
+import com.opensymphony.xwork2.Action;
+import com.opensymphony.xwork2.ActionProxy;
+
+/**
+ * Tests for executing the next flow action directly from the 'next' action.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+public class ActionFlowDirectNextTest extends
+        ActionFlowTestCase<ActionFlowInterceptor> {
+
+    /** Session key of action flow state of the tested package. */
+    private static final String FLOW_STATE_KEY = TestConstants
+            .flowStateKey("correctFlowDirect");
+
+    /** {@inheritDoc} */
+    @Override
+    protected String getConfigPath() {
+        return "struts-plugin.xml, struts-test.xml";
+    }
+
+    // next, next, next
+    @Test
+    public void testDirectNext() throws Exception {
+        executeAction("/correctFlowDirect/correctFlowDirect");
+        initServletMockObjectsPreserveSession();
+        executeAction("/correctFlowDirect/next");
+        Assert.assertEquals("saveName-1",
+                findValueAfterExecute(TestConstants.SESSION_PREVIOUS_FLOW_ACTION));
+        Assert.assertEquals("saveName-1",
+                findValueAfterExecute(ActionFlowInterceptor.NEXT_ACTION_PARAM));
+        Assert.assertEquals("savePhone-2View",
+                findValueAfterExecute(ActionFlowInterceptor.VIEW_ACTION_PARAM));
+
+        initServletMockObjectsPreserveSession();
+        executeAction("/correctFlowDirect/next");
+        Assert.assertEquals("savePhone-2",
+                findValueAfterExecute(TestConstants.SESSION_PREVIOUS_FLOW_ACTION));
+        Assert.assertEquals("saveEmail-3View",
+                findValueAfterExecute(ActionFlowInterceptor.VIEW_ACTION_PARAM));
+
+        // last flow action removes state
+        initServletMockObjectsPreserveSession();
+        executeAction("/correctFlowDirect/next");
+        Assert.assertNull(request.getSession().getAttribute(
+                FLOW_STATE_KEY));
+    }
+
+    // flow action gets parameters and its result is the only one executed
+    @Test
+    public void testDirectNextProxy() throws Exception {
+        executeAction("/correctFlowDirect/correctFlowDirect");
+        initServletMockObjectsPreserveSession();
+        request.setParameter("phone", "123");
+
+        final ActionProxy ap = getActionProxy("/correctFlowDirect/next");
+        ap.getInvocation().getInvocationContext()
+                .setSession(new SessionMap<String, Object>(request));
+        Assert.assertEquals(Action.NONE, ap.execute());
+
+        // flow action is on the value stack instead of the 'next' action
+        Assert.assertEquals("123", ap.getInvocation().getStack()
+                .findValue("phone"));
+        Assert.assertFalse(ap.getInvocation().getStack().getRoot()
+                .contains(ap.getAction()));
+
+        final ActionFlowState state = (ActionFlowState) request.getSession()
+                .getAttribute(FLOW_STATE_KEY);
+        Assert.assertEquals(1, state.getPreviousAction());
+    }
+}
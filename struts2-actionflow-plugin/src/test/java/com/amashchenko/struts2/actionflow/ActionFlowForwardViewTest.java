@@ -0,0 +1,88 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.amashchenko.struts2.actionflow.entities.ActionFlowState;
+import com.amashchenko.struts2.actionflow.test.ActionFlowTestCase;
+import com.amashchenko.struts2.actionflow.test.TestConstants;
+
+/**
+ * Tests for executing view actions within the request of the flow action.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+public class ActionFlowForwardViewTest extends
+        ActionFlowTestCase<ActionFlowInterceptor> {
+
+    /** Session key of action flow state of the tested package. */
+    private static final String FLOW_STATE_KEY = TestConstants
+            .flowStateKey("correctFlowForward");
+
+    /** {@inheritDoc} */
+    @Override
+    protected String getConfigPath() {
+        return "struts-plugin.xml, struts-test.xml";
+    }
+
+    // next, next, next
+    @Test
+    public void testForwardView() throws Exception {
+        executeAction("/correctFlowForward/correctFlowForward");
+        initServletMockObjectsPreserveSession();
+        request.setParameter("phone", "123");
+        executeAction("/correctFlowForward/next");
+        Assert.assertNull(response.getRedirectedUrl());
+        Assert.assertEquals("phone", response.getForwardedUrl());
+        Assert.assertEquals("saveName-1",
+                findValueAfterExecute(TestConstants.SESSION_PREVIOUS_FLOW_ACTION));
+        // scope value restored into view action
+        Assert.assertEquals("123", findValueAfterExecute("phone"));
+
+        initServletMockObjectsPreserveSession();
+        executeAction("/correctFlowForward/next");
+        Assert.assertNull(response.getRedirectedUrl());
+        Assert.assertEquals("email", response.getForwardedUrl());
+        Assert.assertEquals(2, ((ActionFlowState) request.getSession()
+                .getAttribute(FLOW_STATE_KEY))
+                .getHighestCurrentIndex());
+
+        // last flow action
+        initServletMockObjectsPreserveSession();
+        executeAction("/correctFlowForward/next");
+        Assert.assertEquals("finish", response.getForwardedUrl());
+        Assert.assertNull(request.getSession().getAttribute(
+                FLOW_STATE_KEY));
+    }
+
+    // saveEmail-3
+    @Test
+    public void testForwardViewWrongOrder() throws Exception {
+        executeAction("/correctFlowForward/correctFlowForward");
+        initServletMockObjectsPreserveSession();
+        executeAction("/correctFlowForward/next");
+
+        initServletMockObjectsPreserveSession();
+        executeAction("/correctFlowForward/saveEmail-3");
+        Assert.assertNull(response.getRedirectedUrl());
+        Assert.assertEquals("phone", response.getForwardedUrl());
+        Assert.assertEquals("saveName-1",
+                findValueAfterExecute(TestConstants.SESSION_PREVIOUS_FLOW_ACTION));
+    }
+}
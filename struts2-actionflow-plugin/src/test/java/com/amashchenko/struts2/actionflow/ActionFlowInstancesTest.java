@@ -0,0 +1,162 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow;
+
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpSession;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.amashchenko.struts2.actionflow.test.ActionFlowTestCase;
+import com.amashchenko.struts2.actionflow.test.TestConstants;
+
+/**
+ * Tests for several action flow instances in one session.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+public class ActionFlowInstancesTest extends
+        ActionFlowTestCase<ActionFlowInterceptor> {
+
+    /** Action context variable holding action flow instance. */
+    private static final String INSTANCE_VAR = "#"
+            + ActionFlowInterceptor.FLOW_INSTANCE_PARAM;
+
+    /** Session key of action flow state of the tested package. */
+    private static final String FLOW_STATE_KEY = TestConstants
+            .flowStateKey("correctFlowInstances");
+
+    /** {@inheritDoc} */
+    @Override
+    protected String getConfigPath() {
+        return "struts-plugin.xml, struts-test.xml";
+    }
+
+    private Map<String, Object> sessionAttributes() {
+        final HttpSession session = request.getSession();
+        final Map<String, Object> attributes = new HashMap<String, Object>();
+        for (Enumeration<?> names = session.getAttributeNames(); names
+                .hasMoreElements();) {
+            final String name = (String) names.nextElement();
+            attributes.put(name, session.getAttribute(name));
+        }
+        return attributes;
+    }
+
+    private String start() throws Exception {
+        initServletMockObjectsPreserveSession();
+        executeAction("/correctFlowInstances/correctFlowInstances");
+        final String instanceId = (String) findValueAfterExecute(INSTANCE_VAR);
+        Assert.assertNotNull(instanceId);
+        return instanceId;
+    }
+
+    private String next(final String instanceId) throws Exception {
+        initServletMockObjectsPreserveSession();
+        request.setParameter(ActionFlowInterceptor.FLOW_INSTANCE_PARAM,
+                instanceId);
+        executeAction("/correctFlowInstances/next");
+        Assert.assertEquals(instanceId, findValueAfterExecute(INSTANCE_VAR));
+        return (String) findValueAfterExecute(TestConstants.SESSION_PREVIOUS_FLOW_ACTION);
+    }
+
+    // two tabs don't change each other
+    @Test
+    public void testInstancesIndependent() throws Exception {
+        final String first = start();
+        final String second = start();
+        Assert.assertFalse(first.equals(second));
+
+        Assert.assertEquals("saveName-1", next(first));
+        Assert.assertEquals("saveName-1", next(second));
+        Assert.assertEquals("savePhone-2", next(first));
+        Assert.assertEquals("savePhone-2", next(second));
+
+        // redirect to view action keeps instance
+        Assert.assertTrue(response.getRedirectedUrl().contains(
+                ActionFlowInterceptor.FLOW_INSTANCE_PARAM + "=" + second));
+    }
+
+    // nothing is added to redirect without instances
+    @Test
+    public void testNoInstances() throws Exception {
+        executeAction("/correctFlow/correctFlow");
+        Assert.assertNull(findValueAfterExecute(INSTANCE_VAR));
+        initServletMockObjectsPreserveSession();
+        executeAction("/correctFlow/next");
+
+        Assert.assertNotNull(response.getRedirectedUrl());
+        Assert.assertFalse(response.getRedirectedUrl().contains(
+                ActionFlowInterceptor.FLOW_INSTANCE_PARAM));
+    }
+
+    // the least recently used instance is removed
+    @Test
+    public void testInstancesEviction() throws Exception {
+        final String first = start();
+        final String second = start();
+        final String third = start();
+
+        next(first);
+        next(second);
+        // first is used more recently than second
+        next(first);
+        next(third);
+
+        final Map<String, Object> session = sessionAttributes();
+        Assert.assertTrue(session.containsKey(FLOW_STATE_KEY
+                + "." + first));
+        Assert.assertFalse(session.containsKey(FLOW_STATE_KEY
+                + "." + second));
+        Assert.assertTrue(session.containsKey(FLOW_STATE_KEY
+                + "." + third));
+
+        // removed instance starts from the beginning
+        Assert.assertEquals("saveName-1", next(second));
+    }
+
+    // only start and flow actions begin new instance
+    @Test
+    public void testNoInstanceGenerated() throws Exception {
+        executeAction("/correctFlowInstances/saveName-1View");
+        Assert.assertNull(findValueAfterExecute(INSTANCE_VAR));
+        for (String key : sessionAttributes().keySet()) {
+            Assert.assertFalse(key,
+                    key.startsWith(FLOW_STATE_KEY + "."));
+        }
+    }
+
+    // many opened tabs don't grow session
+    @Test
+    public void testInstancesBounded() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            next(start());
+        }
+
+        int states = 0;
+        for (String key : sessionAttributes().keySet()) {
+            if (key.startsWith(FLOW_STATE_KEY + ".")) {
+                states++;
+            }
+        }
+        Assert.assertEquals(2, states);
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.struts2.StrutsJUnit4TestCase;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.amashchenko.struts2.actionflow.entities.ActionFlowState;
+import com.amashchenko.struts2.actionflow.mock.MockActionFlowAction;
+import com.amashchenko.struts2.actionflow.test.TestConstants;
+import com.opensymphony.xwork2.Action;
+import com.opensymphony.xwork2.ActionContext;
+import com.opensymphony.xwork2.mock.MockActionInvocation;
+import com.opensymphony.xwork2.mock.MockActionProxy;
+import com.opensymphony.xwork2.util.ValueStackFactory;
+
+/**
+ * Tests for action flow interceptor shared between threads.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+public class ActionFlowInterceptorConcurrencyTest extends
+        StrutsJUnit4TestCase<Object> {
+
+    /** Namespace of the tested package. */
+    private static final String NAMESPACE = "/correctFlow";
+    /** Session key of action flow state of the tested package. */
+    private static final String FLOW_STATE_KEY = TestConstants
+            .flowStateKey("correctFlow");
+
+    /** Number of the flows to go through for each thread count. */
+    private static final int FLOWS = 4000;
+
+    /** Maximal number of the threads. */
+    private static final int THREADS = 8;
+
+    /** {@inheritDoc} */
+    @Override
+    protected String getConfigPath() {
+        return "struts-plugin.xml, struts-test.xml";
+    }
+
+    /**
+     * Tests that every session goes through the flow correctly when threads
+     * share one interceptor. Timing is measured by ConcurrentFlowBenchmark of
+     * the benchmarks module.
+     * 
+     * @throws Exception
+     *             When something goes wrong.
+     */
+    @Test
+    public void testConcurrentFlows() throws Exception {
+        final ActionFlowInterceptor interceptor = container
+                .inject(ActionFlowInterceptor.class);
+
+        for (int threads = 1; threads <= THREADS; threads *= 2) {
+            Assert.assertEquals(FLOWS, runFlows(interceptor, threads));
+        }
+    }
+
+    /**
+     * Goes through {@link #FLOWS} flows in the given number of threads, each
+     * flow with its own session.
+     * 
+     * @param interceptor
+     *            Shared action flow interceptor.
+     * @param threads
+     *            Number of threads.
+     * @return Number of the completed flows.
+     * @throws Exception
+     *             When something goes wrong.
+     */
+    private int runFlows(final ActionFlowInterceptor interceptor,
+            final int threads) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+            for (int i = 0; i < threads; i++) {
+                tasks.add(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        int completed = 0;
+                        for (int j = 0; j < FLOWS / threads; j++) {
+                            runFlow(interceptor);
+                            completed++;
+                        }
+                        return completed;
+                    }
+                });
+            }
+
+            int completed = 0;
+            for (Future<Integer> future : executor.invokeAll(tasks)) {
+                completed += future.get().intValue();
+            }
+            return completed;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Goes through the flow of the <code>correctFlow</code> package checking
+     * session after each action.
+     * 
+     * @param interceptor
+     *            Shared action flow interceptor.
+     * @throws Exception
+     *             When something goes wrong.
+     */
+    private void runFlow(final ActionFlowInterceptor interceptor)
+            throws Exception {
+        final Map<String, Object> session = new HashMap<String, Object>();
+        session.put(FLOW_STATE_KEY,
+                TestConstants.flowState(3, 0));
+
+        // not a start action doesn't clear session
+        intercept(interceptor, session, "saveName-1View", Action.SUCCESS);
+        Assert.assertEquals(3, flowState(session).getPreviousAction());
+
+        intercept(interceptor, session, "correctFlow", Action.SUCCESS);
+        Assert.assertNull(flowState(session));
+
+        intercept(interceptor, session, "next", Action.SUCCESS);
+
+        Assert.assertEquals(ActionFlowInterceptor.GLOBAL_VIEW_RESULT,
+                intercept(interceptor, session, "saveName-1", Action.SUCCESS));
+        Assert.assertEquals(1, flowState(session).getPreviousAction());
+
+        Assert.assertEquals(ActionFlowInterceptor.GLOBAL_VIEW_RESULT,
+                intercept(interceptor, session, "savePhone-2", Action.SUCCESS));
+        Assert.assertEquals(2, flowState(session).getPreviousAction());
+        Assert.assertEquals(2, flowState(session).getHighestCurrentIndex());
+
+        // last flow action clears session
+        Assert.assertEquals(Action.SUCCESS, intercept(interceptor, session,
+                "saveEmail-3", Action.SUCCESS));
+        Assert.assertNull(flowState(session));
+    }
+
+    /**
+     * Gets action flow state from session.
+     * 
+     * @param session
+     *            Session map.
+     * @return Action flow state or <code>null</code>.
+     */
+    private ActionFlowState flowState(final Map<String, Object> session) {
+        return (ActionFlowState) session.get(FLOW_STATE_KEY);
+    }
+
+    /**
+     * Invokes interceptor for the given action of the tested package.
+     * 
+     * @param interceptor
+     *            Shared action flow interceptor.
+     * @param session
+     *            Session map.
+     * @param actionName
+     *            Name of the action.
+     * @param resultCode
+     *            Result code returned by the action.
+     * @return Result of the interceptor.
+     * @throws Exception
+     *             When something goes wrong.
+     */
+    private String intercept(final ActionFlowInterceptor interceptor,
+            final Map<String, Object> session, final String actionName,
+            final String resultCode) throws Exception {
+        final ActionContext context = new ActionContext(
+                new HashMap<String, Object>());
+        context.setName(actionName);
+        context.setSession(session);
+        context.setParameters(new HashMap<String, Object>());
+        context.setValueStack(container.getInstance(ValueStackFactory.class)
+                .createValueStack());
+
+        final MockActionProxy proxy = new MockActionProxy();
+        proxy.setConfig(configuration.getRuntimeConfiguration()
+                .getActionConfig(NAMESPACE, "correctFlow"));
+
+        final MockActionInvocation invocation = new MockActionInvocation();
+        invocation.setInvocationContext(context);
+        invocation.setProxy(proxy);
+        invocation.setAction(new MockActionFlowAction());
+        invocation.setResultCode(resultCode);
+
+        return interceptor.intercept(invocation);
+    }
+}
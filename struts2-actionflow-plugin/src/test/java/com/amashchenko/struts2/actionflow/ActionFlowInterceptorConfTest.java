@@ -55,6 +55,8 @@ public class ActionFlowInterceptorConfTest extends
     private String nextAction;
     /** Previous action. */
     private String prevAction;
+    /** Session key of action flow state. */
+    private String flowStateKey;
 
     /** {@inheritDoc} */
     @Override
@@ -106,6 +108,7 @@ public class ActionFlowInterceptorConfTest extends
         this.startingAction = namespace + "/correctFlow" + suffix;
         this.nextAction = namespace + "/next" + suffix;
         this.prevAction = namespace + "/prev" + suffix;
+        this.flowStateKey = TestConstants.flowStateKey("correctFlow" + suffix);
     }
 
     /**
@@ -167,8 +170,8 @@ public class ActionFlowInterceptorConfTest extends
     public void testPrev() throws Exception {
         executeAction(startingAction);
         initServletMockObjects();
-        request.getSession().setAttribute(TestConstants.PREVIOUS_FLOW_ACTION,
-                "savePhone-2");
+        request.getSession().setAttribute(flowStateKey,
+                TestConstants.flowState(2, 0));
         executeAction(prevAction);
         String previousAction = (String) findValueAfterExecute(TestConstants.SESSION_PREVIOUS_FLOW_ACTION);
         Assert.assertEquals("saveName-1", previousAction);
@@ -193,10 +196,8 @@ public class ActionFlowInterceptorConfTest extends
     public void testLastNext() throws Exception {
         executeAction(startingAction);
         initServletMockObjects();
-        request.getSession().setAttribute(TestConstants.PREVIOUS_FLOW_ACTION,
-                "savePhone-2");
-        request.getSession().setAttribute(
-                TestConstants.HIGHEST_CURRENT_ACTION_INDEX, 3);
+        request.getSession().setAttribute(flowStateKey,
+                TestConstants.flowState(2, 3));
         executeAction(nextAction);
         String previousAction = (String) findValueAfterExecute(TestConstants.SESSION_PREVIOUS_FLOW_ACTION);
         Assert.assertEquals(null, previousAction);
@@ -221,8 +222,8 @@ public class ActionFlowInterceptorConfTest extends
     public void testStepParameterPrevAction() throws Exception {
         executeAction(startingAction);
         initServletMockObjects();
-        request.getSession().setAttribute(TestConstants.PREVIOUS_FLOW_ACTION,
-                "savePhone-2");
+        request.getSession().setAttribute(flowStateKey,
+                TestConstants.flowState(2, 0));
         request.setParameter("step" + suffix, "");
         executeAction(nextAction);
         String previousAction = (String) findValueAfterExecute(TestConstants.SESSION_PREVIOUS_FLOW_ACTION);
@@ -248,10 +249,8 @@ public class ActionFlowInterceptorConfTest extends
     public void testStepParameterNextAction() throws Exception {
         executeAction(startingAction);
         initServletMockObjects();
-        request.getSession().setAttribute(TestConstants.PREVIOUS_FLOW_ACTION,
-                "saveName-1");
-        request.getSession().setAttribute(
-                TestConstants.HIGHEST_CURRENT_ACTION_INDEX, 3);
+        request.getSession().setAttribute(flowStateKey,
+                TestConstants.flowState(1, 3));
         request.setParameter("step" + suffix, "savePhone-2");
         executeAction(nextAction);
         String previousAction = (String) findValueAfterExecute(TestConstants.SESSION_PREVIOUS_FLOW_ACTION);
@@ -277,10 +276,8 @@ public class ActionFlowInterceptorConfTest extends
     public void testStepParameterNextForceOrderAction() throws Exception {
         executeAction(startingAction);
         initServletMockObjects();
-        request.getSession().setAttribute(TestConstants.PREVIOUS_FLOW_ACTION,
-                "saveName-1");
-        request.getSession().setAttribute(
-                TestConstants.HIGHEST_CURRENT_ACTION_INDEX, 1);
+        request.getSession().setAttribute(flowStateKey,
+                TestConstants.flowState(1, 1));
         request.setParameter("step" + suffix, "savePhone-2");
         executeAction(nextAction);
         String previousAction = (String) findValueAfterExecute(TestConstants.SESSION_PREVIOUS_FLOW_ACTION);
@@ -306,8 +303,8 @@ public class ActionFlowInterceptorConfTest extends
     public void testWrongFlowOrder() throws Exception {
         executeAction(startingAction);
         initServletMockObjects();
-        request.getSession().setAttribute(TestConstants.PREVIOUS_FLOW_ACTION,
-                "saveName-1");
+        request.getSession().setAttribute(flowStateKey,
+                TestConstants.flowState(1, 0));
         executeAction(namespace + "/saveEmail-3");
         String previousAction = (String) findValueAfterExecute(TestConstants.SESSION_PREVIOUS_FLOW_ACTION);
         Assert.assertEquals(expectedWrongOrderAction, previousAction);
@@ -16,7 +16,8 @@
 package com.amashchenko.struts2.actionflow;
 
 import java.beans.PropertyDescriptor;
-import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -24,8 +25,14 @@ import java.util.Map;
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.amashchenko.struts2.actionflow.entities.ActionFlowActionConfig;
+import com.amashchenko.struts2.actionflow.entities.ActionFlowConfig;
+import com.amashchenko.struts2.actionflow.entities.ActionFlowState;
+import com.amashchenko.struts2.actionflow.entities.ActionFlowStepConfig;
 import com.amashchenko.struts2.actionflow.mock.MockActionFlowAction;
-import com.amashchenko.struts2.actionflow.test.TestConstants;
+import com.amashchenko.struts2.actionflow.mock.MockCopiedAction;
+import com.amashchenko.struts2.actionflow.mock.MockCopiedAction_ActionFlowScopeCopier;
+import com.opensymphony.xwork2.ActionContext;
 
 /**
  * Tests for action flow interceptor.
@@ -38,36 +45,6 @@ public class ActionFlowInterceptorTest {
     /** Action flow interceptor instance. */
     private ActionFlowInterceptor actionFlowInterceptor = new ActionFlowInterceptor();
 
-    /**
-     * Tests clear session method.
-     * 
-     * @throws Exception
-     *             When something goes wrong.
-     */
-    @Test
-    public void testClearSession() throws Exception {
-        Assert.assertNotNull(actionFlowInterceptor);
-
-        Map<String, Object> session = new HashMap<String, Object>();
-        session.put(TestConstants.PREVIOUS_FLOW_ACTION, "PREVIOUS_FLOW_ACTION");
-        session.put(TestConstants.FLOW_SCOPE_KEY, "FLOW_SCOPE_KEY");
-        session.put(TestConstants.HIGHEST_CURRENT_ACTION_INDEX,
-                "HIGHEST_CURRENT_ACTION_INDEX");
-        session.put(TestConstants.SKIP_ACTIONS, "SKIP_ACTIONS");
-
-        session.put(TestConstants.OVERRIDE_ACTION_NAME, "OVERRIDE_ACTION_NAME");
-
-        // execute clearSession method
-        actionFlowInterceptor.clearSession(session);
-
-        Assert.assertNull(session.get(TestConstants.PREVIOUS_FLOW_ACTION));
-        Assert.assertNull(session.get(TestConstants.FLOW_SCOPE_KEY));
-        Assert.assertNull(session
-                .get(TestConstants.HIGHEST_CURRENT_ACTION_INDEX));
-        Assert.assertNull(session.get(TestConstants.SKIP_ACTIONS));
-        Assert.assertNull(session.get(TestConstants.OVERRIDE_ACTION_NAME));
-    }
-
     /**
      * Tests handleFlowScope method with nulls.
      * 
@@ -79,24 +56,25 @@ public class ActionFlowInterceptorTest {
         Assert.assertNotNull(actionFlowInterceptor);
 
         final MockActionFlowAction action = new MockActionFlowAction();
-        final Map<String, Object> session = new HashMap<String, Object>();
+        final ActionFlowState state = new ActionFlowState();
         final boolean fromFlowScope = true;
 
-        // set flowScopeFields in ActionFlowInterceptor
-        Field field = ActionFlowInterceptor.class
-                .getDeclaredField(TestConstants.FLOW_SCOPE_FIELD_NAME);
-        field.setAccessible(true);
         Map<String, List<PropertyDescriptor>> map = new HashMap<String, List<PropertyDescriptor>>();
 
-        // flowScopeFields is null
-        actionFlowInterceptor.handleFlowScope(action, session, fromFlowScope);
+        // flowConfig is null
+        actionFlowInterceptor.handleFlowScope(null, action, state,
+                fromFlowScope);
 
-        field.set(actionFlowInterceptor, map);
+        final ActionFlowConfig flowConfig = new ActionFlowConfig(
+                new HashMap<String, ActionFlowStepConfig>(), map, null,
+                new HashMap<String, ActionFlowActionConfig>());
 
         // action is null
-        actionFlowInterceptor.handleFlowScope(null, session, fromFlowScope);
-        // session is null
-        actionFlowInterceptor.handleFlowScope(action, null, fromFlowScope);
+        actionFlowInterceptor.handleFlowScope(flowConfig, null, state,
+                fromFlowScope);
+        // state is null
+        actionFlowInterceptor.handleFlowScope(flowConfig, action, null,
+                fromFlowScope);
     }
 
     /**
@@ -105,54 +83,38 @@ public class ActionFlowInterceptorTest {
      * @throws Exception
      *             When something goes wrong.
      */
-    @SuppressWarnings("unchecked")
     @Test
     public void testHandleFlowScopeSetToScope() throws Exception {
         Assert.assertNotNull(actionFlowInterceptor);
 
         final MockActionFlowAction action = new MockActionFlowAction();
-        final Map<String, Object> session = new HashMap<String, Object>();
+        final ActionFlowState state = new ActionFlowState();
 
-        // set flowScopeFields in ActionFlowInterceptor
-        injectFlowScopeFields();
+        final ActionFlowConfig flowConfig = createFlowScopeConfig();
 
         // phone in action
         final String phoneActionValue = "phoneActionValue";
-        final String phoneScopeKey = MockActionFlowAction
-                .mockPropertyDescriptorPhone().getReadMethod().toString();
+        final int phoneOrdinal = flowConfig
+                .getScopeOrdinal(MockActionFlowAction
+                        .mockPropertyDescriptorPhone().getReadMethod());
         action.setPhone(phoneActionValue);
 
         // execute handleFlowScope method
-        actionFlowInterceptor.handleFlowScope(action, session, false);
-
-        Assert.assertTrue(session.containsKey(TestConstants.FLOW_SCOPE_KEY));
-        Assert.assertTrue(session.get(TestConstants.FLOW_SCOPE_KEY) instanceof Map);
-
-        Map<String, Object> resultScopeMap = (Map<String, Object>) session
-                .get(TestConstants.FLOW_SCOPE_KEY);
+        actionFlowInterceptor.handleFlowScope(flowConfig, action, state, false);
 
-        Assert.assertNotNull(resultScopeMap);
-
-        Assert.assertTrue(resultScopeMap.containsKey(phoneScopeKey));
-        Assert.assertEquals(phoneActionValue, resultScopeMap.get(phoneScopeKey));
+        Assert.assertTrue(phoneOrdinal >= 0);
+        Assert.assertEquals(phoneActionValue, state.getScopeValue(phoneOrdinal));
 
         //
-        // same for wrong FLOW_SCOPE_KEY type
-        session.put(TestConstants.FLOW_SCOPE_KEY, "someStringNotMap");
+        // same for existing scope value
+        final String newPhoneActionValue = "newPhoneActionValue";
+        action.setPhone(newPhoneActionValue);
 
         // execute handleFlowScope method
-        actionFlowInterceptor.handleFlowScope(action, session, false);
-
-        Assert.assertTrue(session.containsKey(TestConstants.FLOW_SCOPE_KEY));
-        Assert.assertTrue(session.get(TestConstants.FLOW_SCOPE_KEY) instanceof Map);
-
-        resultScopeMap = (Map<String, Object>) session
-                .get(TestConstants.FLOW_SCOPE_KEY);
+        actionFlowInterceptor.handleFlowScope(flowConfig, action, state, false);
 
-        Assert.assertNotNull(resultScopeMap);
-
-        Assert.assertTrue(resultScopeMap.containsKey(phoneScopeKey));
-        Assert.assertEquals(phoneActionValue, resultScopeMap.get(phoneScopeKey));
+        Assert.assertEquals(newPhoneActionValue,
+                state.getScopeValue(phoneOrdinal));
     }
 
     /**
@@ -166,18 +128,17 @@ public class ActionFlowInterceptorTest {
         Assert.assertNotNull(actionFlowInterceptor);
 
         final MockActionFlowAction action = new MockActionFlowAction();
-        final Map<String, Object> session = new HashMap<String, Object>();
+        final ActionFlowState state = new ActionFlowState();
 
-        // set flowScopeFields in ActionFlowInterceptor
-        injectFlowScopeFields();
+        final ActionFlowConfig flowConfig = createFlowScopeConfig();
 
         // phone in action is null
         action.setPhone(null);
 
         // execute handleFlowScope method
-        actionFlowInterceptor.handleFlowScope(action, session, false);
+        actionFlowInterceptor.handleFlowScope(flowConfig, action, state, false);
 
-        Assert.assertFalse(session.containsKey(TestConstants.FLOW_SCOPE_KEY));
+        Assert.assertFalse(state.isModified());
     }
 
     /**
@@ -186,37 +147,30 @@ public class ActionFlowInterceptorTest {
      * @throws Exception
      *             When something goes wrong.
      */
-    @SuppressWarnings("unchecked")
     @Test
     public void testHandleFlowScopeSetToAction() throws Exception {
         Assert.assertNotNull(actionFlowInterceptor);
 
         final MockActionFlowAction action = new MockActionFlowAction();
-        final Map<String, Object> session = new HashMap<String, Object>();
+        final ActionFlowState state = new ActionFlowState();
 
-        // set flowScopeFields in ActionFlowInterceptor
-        injectFlowScopeFields();
+        final ActionFlowConfig flowConfig = createFlowScopeConfig();
 
         // phone in action is null
         action.setPhone(null);
 
         final String phoneScopeValue = "phoneScopeValue";
-        final String phoneScopeKey = MockActionFlowAction
-                .mockPropertyDescriptorPhone().getReadMethod().toString();
+        final int phoneOrdinal = flowConfig
+                .getScopeOrdinal(MockActionFlowAction
+                        .mockPropertyDescriptorPhone().getReadMethod());
 
-        Map<String, Object> scopeMap = new HashMap<String, Object>();
-        scopeMap.put(phoneScopeKey, phoneScopeValue);
-        session.put(TestConstants.FLOW_SCOPE_KEY, scopeMap);
+        state.setScopeValue(phoneOrdinal, phoneScopeValue);
 
         // execute handleFlowScope method
-        actionFlowInterceptor.handleFlowScope(action, session, true);
+        actionFlowInterceptor.handleFlowScope(flowConfig, action, state, true);
 
-        // scope map from session must hold same values
-        final Map<String, Object> resultScopeMap = (Map<String, Object>) session
-                .get(TestConstants.FLOW_SCOPE_KEY);
-        Assert.assertNotNull(resultScopeMap);
-        Assert.assertTrue(resultScopeMap.containsKey(phoneScopeKey));
-        Assert.assertEquals(phoneScopeValue, resultScopeMap.get(phoneScopeKey));
+        // scope of the state must hold same values
+        Assert.assertEquals(phoneScopeValue, state.getScopeValue(phoneOrdinal));
 
         // action
         Assert.assertNotNull(action);
@@ -230,38 +184,31 @@ public class ActionFlowInterceptorTest {
      * @throws Exception
      *             When something goes wrong.
      */
-    @SuppressWarnings("unchecked")
     @Test
     public void testHandleFlowScopeSetToActionWithValue() throws Exception {
         Assert.assertNotNull(actionFlowInterceptor);
 
         final MockActionFlowAction action = new MockActionFlowAction();
-        final Map<String, Object> session = new HashMap<String, Object>();
+        final ActionFlowState state = new ActionFlowState();
 
-        // set flowScopeFields in ActionFlowInterceptor
-        injectFlowScopeFields();
+        final ActionFlowConfig flowConfig = createFlowScopeConfig();
 
         // phone in action
         final String phoneActionValue = "phoneActionValue";
         action.setPhone(phoneActionValue);
 
         final String phoneScopeValue = "phoneScopeValue";
-        final String phoneScopeKey = MockActionFlowAction
-                .mockPropertyDescriptorPhone().getReadMethod().toString();
+        final int phoneOrdinal = flowConfig
+                .getScopeOrdinal(MockActionFlowAction
+                        .mockPropertyDescriptorPhone().getReadMethod());
 
-        Map<String, Object> scopeMap = new HashMap<String, Object>();
-        scopeMap.put(phoneScopeKey, phoneScopeValue);
-        session.put(TestConstants.FLOW_SCOPE_KEY, scopeMap);
+        state.setScopeValue(phoneOrdinal, phoneScopeValue);
 
         // execute handleFlowScope method
-        actionFlowInterceptor.handleFlowScope(action, session, true);
+        actionFlowInterceptor.handleFlowScope(flowConfig, action, state, true);
 
-        // scope map from session must hold same values
-        final Map<String, Object> resultScopeMap = (Map<String, Object>) session
-                .get(TestConstants.FLOW_SCOPE_KEY);
-        Assert.assertNotNull(resultScopeMap);
-        Assert.assertTrue(resultScopeMap.containsKey(phoneScopeKey));
-        Assert.assertEquals(phoneScopeValue, resultScopeMap.get(phoneScopeKey));
+        // scope of the state must hold same values
+        Assert.assertEquals(phoneScopeValue, state.getScopeValue(phoneOrdinal));
 
         // action
         Assert.assertNotNull(action);
@@ -270,16 +217,150 @@ public class ActionFlowInterceptorTest {
     }
 
     /**
-     * Sets value to private flowScopeFields field in ActionFlowInterceptor.
+     * Tests handleFlowScope method with generated copier.
+     * 
+     * @throws Exception
+     *             When something goes wrong.
+     */
+    @Test
+    public void testHandleFlowScopeCopier() throws Exception {
+        final Map<String, ActionFlowScopeCopier> copiers = new HashMap<String, ActionFlowScopeCopier>();
+        copiers.put(MockCopiedAction.class.getName(),
+                new MockCopiedAction_ActionFlowScopeCopier());
+        final ActionFlowConfig flowConfig = new ActionFlowConfig(
+                new HashMap<String, ActionFlowStepConfig>(),
+                MockActionFlowAction.mockFlowScopeFields(), copiers, null,
+                new HashMap<String, ActionFlowActionConfig>());
+
+        final int nameOrdinal = flowConfig.getScopeOrdinal(MockCopiedAction.class
+                .getMethod("getName"));
+        Assert.assertTrue(nameOrdinal >= 0);
+        Assert.assertFalse(nameOrdinal == flowConfig
+                .getScopeOrdinal(MockActionFlowAction
+                        .mockPropertyDescriptorPhone().getReadMethod()));
+
+        final ActionFlowState state = new ActionFlowState();
+        final MockCopiedAction action = new MockCopiedAction();
+        action.setName("name");
+        actionFlowInterceptor.handleFlowScope(flowConfig, action, state, false);
+        Assert.assertEquals("name", state.getScopeValue(nameOrdinal));
+
+        final MockCopiedAction restored = new MockCopiedAction();
+        actionFlowInterceptor.handleFlowScope(flowConfig, restored, state,
+                true);
+        Assert.assertEquals("name", restored.getName());
+    }
+
+    /**
+     * Tests that unchanged action flow scope values aren't written back.
+     * 
+     * @throws Exception
+     *             When something goes wrong.
+     */
+    @Test
+    public void testHandleFlowScopeUnchanged() throws Exception {
+        final ActionFlowConfig flowConfig = createFlowScopeConfig();
+        final int phoneOrdinal = flowConfig
+                .getScopeOrdinal(MockActionFlowAction
+                        .mockPropertyDescriptorPhone().getReadMethod());
+        final ActionFlowState state = new ActionFlowState();
+        state.setScopeValue(phoneOrdinal, new String("phone"));
+        state.setModified(false);
+
+        final MockActionFlowAction action = new MockActionFlowAction();
+        actionFlowInterceptor.handleFlowScope(flowConfig, action, state, true);
+        actionFlowInterceptor.handleFlowScope(flowConfig, action, state, false);
+
+        Assert.assertFalse(state.isModified());
+        Assert.assertEquals(1, flowConfig.getStatistics()
+                .getAvoidedScopeWrites());
+
+        // equal value of the other object
+        action.setPhone(new String("phone"));
+        actionFlowInterceptor.handleFlowScope(flowConfig, action, state, false);
+        Assert.assertFalse(state.isModified());
+        Assert.assertEquals(1, flowConfig.getStatistics()
+                .getAvoidedScopeWrites());
+
+        action.setPhone("other");
+        actionFlowInterceptor.handleFlowScope(flowConfig, action, state, false);
+        Assert.assertTrue(state.isModified());
+        Assert.assertEquals("other", state.getScopeValue(phoneOrdinal));
+    }
+
+    /**
+     * Tests detecting changes inside of action flow scope values.
+     * 
+     * @throws Exception
+     *             When something goes wrong.
+     */
+    @Test
+    public void testHandleFlowScopeHashCheck() throws Exception {
+        final ActionContext previous = ActionContext.getContext();
+        ActionContext.setContext(new ActionContext(
+                new HashMap<String, Object>()));
+        try {
+            final Map<String, List<PropertyDescriptor>> fields = new HashMap<String, List<PropertyDescriptor>>();
+            fields.put(MockActionFlowAction.class.getName(), Collections
+                    .singletonList(new PropertyDescriptor("items",
+                            MockActionFlowAction.class)));
+            final ActionFlowConfig flowConfig = new ActionFlowConfig(
+                    new HashMap<String, ActionFlowStepConfig>(), fields, null,
+                    new HashMap<String, ActionFlowActionConfig>());
+
+            final int ordinal = flowConfig.getScopeOrdinal(MockActionFlowAction.class
+                    .getMethod("getItems"));
+            final ActionFlowState state = new ActionFlowState();
+            state.setScopeValue(ordinal, new ArrayList<String>());
+            state.setModified(false);
+
+            // changed inside without hash check
+            MockActionFlowAction action = new MockActionFlowAction();
+            actionFlowInterceptor.handleFlowScope(flowConfig, action, state,
+                    true);
+            action.getItems().add("item");
+            actionFlowInterceptor.handleFlowScope(flowConfig, action, state,
+                    false);
+            Assert.assertFalse(state.isModified());
+
+            actionFlowInterceptor.setScopeHashCheck("true");
+
+            // unchanged
+            action = new MockActionFlowAction();
+            actionFlowInterceptor.handleFlowScope(flowConfig, action, state,
+                    true);
+            actionFlowInterceptor.handleFlowScope(flowConfig, action, state,
+                    false);
+            Assert.assertFalse(state.isModified());
+            Assert.assertEquals(2, flowConfig.getStatistics()
+                    .getAvoidedScopeWrites());
+
+            // changed inside
+            action = new MockActionFlowAction();
+            actionFlowInterceptor.handleFlowScope(flowConfig, action, state,
+                    true);
+            action.getItems().add("item2");
+            actionFlowInterceptor.handleFlowScope(flowConfig, action, state,
+                    false);
+            Assert.assertTrue(state.isModified());
+            Assert.assertEquals(2, flowConfig.getStatistics()
+                    .getAvoidedScopeWrites());
+        } finally {
+            ActionContext.setContext(previous);
+        }
+    }
+
+    /**
+     * Creates action flow configuration holding mock flow scope fields.
      * 
+     * @return Action flow configuration.
      * @throws Exception
      *             When something goes wrong.
      */
-    private void injectFlowScopeFields() throws Exception {
-        Field field = ActionFlowInterceptor.class
-                .getDeclaredField(TestConstants.FLOW_SCOPE_FIELD_NAME);
-        field.setAccessible(true);
-        field.set(actionFlowInterceptor,
-                MockActionFlowAction.mockFlowScopeFields());
+    private ActionFlowConfig createFlowScopeConfig() throws Exception {
+        return new ActionFlowConfig(
+                new HashMap<String, ActionFlowStepConfig>(),
+                MockActionFlowAction.mockFlowScopeFields(), null,
+                new HashMap<String, ActionFlowActionConfig>());
     }
 }
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow;
+
+import java.util.Map;
+
+import org.apache.struts2.StrutsJUnit4TestCase;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.amashchenko.struts2.actionflow.entities.ActionFlowStepConfig;
+import com.opensymphony.xwork2.inject.Inject;
+
+/**
+ * Tests for compiling action flows on startup.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+public class ActionFlowPackageProviderTest extends StrutsJUnit4TestCase<Object> {
+
+    /** Action flow configuration builder. */
+    @Inject
+    private ActionFlowConfigBuilder flowConfigBuilder;
+
+    /** {@inheritDoc} */
+    @Override
+    protected String getConfigPath() {
+        return "struts-plugin.xml, struts-test.xml";
+    }
+
+    /**
+     * Tests that action flows are compiled without executing any action.
+     * 
+     * @throws Exception
+     *             When something goes wrong.
+     */
+    @Test
+    public void testFlowsCompiledOnStartup() throws Exception {
+        injectStrutsDependencies(this);
+        Assert.assertNotNull(flowConfigBuilder);
+
+        Map<String, ActionFlowStepConfig> flowMap = flowConfigBuilder
+                .getCompiledFlowMap("correctFlow");
+
+        Assert.assertNotNull(flowMap);
+        Assert.assertTrue(flowMap.containsKey("saveName-1"));
+        Assert.assertNotNull(flowConfigBuilder
+                .getCompiledFlowScopeFields("correctFlow"));
+
+        // view actions are already in runtime configuration
+        Assert.assertNotNull(configuration.getRuntimeConfiguration()
+                .getActionConfig("/correctFlow", "saveName-1View"));
+        Assert.assertNotNull(configuration.getRuntimeConfiguration()
+                .getActionConfig("/correctFlowOverride",
+                        "saveName-1ViewOverride"));
+        Assert.assertNotNull(configuration.getRuntimeConfiguration()
+                .getActionConfig("/correctNoViewResult", "next"));
+    }
+
+    /**
+     * Tests that wrong action flows are left to the first request.
+     * 
+     * @throws Exception
+     *             When something goes wrong.
+     */
+    @Test
+    public void testWrongFlowsNotCompiled() throws Exception {
+        injectStrutsDependencies(this);
+        Assert.assertNotNull(flowConfigBuilder);
+
+        Assert.assertNull(flowConfigBuilder.getCompiledFlowMap("noInputResult"));
+        Assert.assertNull(flowConfigBuilder.getCompiledFlowMap("sameFlowSteps"));
+    }
+}
@@ -22,6 +22,7 @@ import org.apache.struts2.StrutsJUnit4TestCase;
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.amashchenko.struts2.actionflow.entities.ActionFlowState;
 import com.amashchenko.struts2.actionflow.mock.MockActionFlowAction;
 import com.amashchenko.struts2.actionflow.test.TestConstants;
 import com.opensymphony.xwork2.ActionProxy;
@@ -35,6 +36,13 @@ import com.opensymphony.xwork2.ActionProxy;
 public class ActionFlowScopeTest extends
         StrutsJUnit4TestCase<MockActionFlowAction> {
 
+    /** Session key of action flow state of the tested package. */
+    private static final String FLOW_STATE_KEY = TestConstants
+            .flowStateKey("correctFlow");
+    /** Session key of action flow state of the package extending actions. */
+    private static final String EXTENDS_FLOW_STATE_KEY = TestConstants
+            .flowStateKey("correctActionExtends");
+
     /** {@inheritDoc} */
     @Override
     protected String getConfigPath() {
@@ -65,14 +73,10 @@ public class ActionFlowScopeTest extends
         MockActionFlowAction action = (MockActionFlowAction) ap.getAction();
 
         Map<String, Object> sessionMap = new HashMap<String, Object>();
-        Map<String, Object> scopeMap = new HashMap<String, Object>();
-
-        // key for 'phone' field
-        final String key = MockActionFlowAction.mockPropertyDescriptorPhone()
-                .getReadMethod().toString();
 
-        scopeMap.put(key, value);
-        sessionMap.put(TestConstants.FLOW_SCOPE_KEY, scopeMap);
+        final ActionFlowState state = new ActionFlowState();
+        state.setScopeValue(phoneOrdinal("correctFlow"), value);
+        sessionMap.put(FLOW_STATE_KEY, state);
         ap.getInvocation().getInvocationContext().setSession(sessionMap);
 
         ap.execute();
@@ -104,14 +108,10 @@ public class ActionFlowScopeTest extends
         MockActionFlowAction action = (MockActionFlowAction) ap.getAction();
 
         Map<String, Object> sessionMap = new HashMap<String, Object>();
-        Map<String, Object> scopeMap = new HashMap<String, Object>();
 
-        // key for 'phone' field
-        final String key = MockActionFlowAction.mockPropertyDescriptorPhone()
-                .getReadMethod().toString();
-
-        scopeMap.put(key, value);
-        sessionMap.put(TestConstants.FLOW_SCOPE_KEY, scopeMap);
+        final ActionFlowState state = new ActionFlowState();
+        state.setScopeValue(phoneOrdinal("correctFlow"), value);
+        sessionMap.put(FLOW_STATE_KEY, state);
         ap.getInvocation().getInvocationContext().setSession(sessionMap);
 
         ap.execute();
@@ -125,7 +125,6 @@ public class ActionFlowScopeTest extends
      * @throws Exception
      *             When something goes wrong.
      */
-    @SuppressWarnings("unchecked")
     @Test
     public void testSettingToScope() throws Exception {
         executeAction("/correctFlow/correctFlow");
@@ -145,16 +144,16 @@ public class ActionFlowScopeTest extends
         action.setPhone(value);
 
         Map<String, Object> sessionMap = new HashMap<String, Object>();
-        sessionMap.put(TestConstants.PREVIOUS_FLOW_ACTION, "saveName-1");
-        sessionMap.put(TestConstants.HIGHEST_CURRENT_ACTION_INDEX, 2);
+        sessionMap.put(FLOW_STATE_KEY,
+                TestConstants.flowState(1, 2));
         ap.getInvocation().getInvocationContext().setSession(sessionMap);
 
         ap.execute();
 
-        Assert.assertNotNull(sessionMap.get(TestConstants.FLOW_SCOPE_KEY));
-        Assert.assertTrue(sessionMap.get(TestConstants.FLOW_SCOPE_KEY) instanceof Map);
-        Assert.assertTrue(((Map<String, Object>) sessionMap
-                .get(TestConstants.FLOW_SCOPE_KEY)).containsValue(value));
+        final ActionFlowState state = (ActionFlowState) sessionMap
+                .get(FLOW_STATE_KEY);
+        Assert.assertEquals(value,
+                state.getScopeValue(phoneOrdinal("correctFlow")));
     }
 
     /**
@@ -163,7 +162,6 @@ public class ActionFlowScopeTest extends
      * @throws Exception
      *             When something goes wrong.
      */
-    @SuppressWarnings("unchecked")
     @Test
     public void testSettingAndGettingFromScope() throws Exception {
         executeAction("/correctActionExtends/correctActionExtends");
@@ -183,16 +181,16 @@ public class ActionFlowScopeTest extends
         action.setPhone(value);
 
         Map<String, Object> sessionMap = new HashMap<String, Object>();
-        sessionMap.put(TestConstants.PREVIOUS_FLOW_ACTION, "saveName-1");
-        sessionMap.put(TestConstants.HIGHEST_CURRENT_ACTION_INDEX, 2);
+        sessionMap.put(EXTENDS_FLOW_STATE_KEY,
+                TestConstants.flowState(1, 2));
         ap.getInvocation().getInvocationContext().setSession(sessionMap);
 
         ap.execute();
 
-        Assert.assertNotNull(sessionMap.get(TestConstants.FLOW_SCOPE_KEY));
-        Assert.assertTrue(sessionMap.get(TestConstants.FLOW_SCOPE_KEY) instanceof Map);
-        Assert.assertTrue(((Map<String, Object>) sessionMap
-                .get(TestConstants.FLOW_SCOPE_KEY)).containsValue(value));
+        final ActionFlowState state = (ActionFlowState) sessionMap
+                .get(EXTENDS_FLOW_STATE_KEY);
+        Assert.assertEquals(value,
+                state.getScopeValue(phoneOrdinal("correctActionExtends")));
 
         ActionProxy ap2 = getActionProxy("/correctActionExtends/saveEmail-3View");
         ap2.getInvocation().getInvocationContext().setSession(sessionMap);
@@ -237,16 +235,14 @@ public class ActionFlowScopeTest extends
 
         Map<String, Object> sessionMap = new HashMap<String, Object>();
         sessionMap.put(immutableValue, immutableValue);
-        sessionMap.put(TestConstants.PREVIOUS_FLOW_ACTION, "savePhone-2");
-        sessionMap.put(TestConstants.FLOW_SCOPE_KEY,
-                new HashMap<String, Object>());
+        final ActionFlowState state = TestConstants.flowState(2, 0);
+        state.setScopeValue(phoneOrdinal("correctFlow"), "someValue");
+        sessionMap.put(FLOW_STATE_KEY, state);
         ap.getInvocation().getInvocationContext().setSession(sessionMap);
 
         ap.execute();
 
-        Assert.assertEquals(null,
-                sessionMap.get(TestConstants.PREVIOUS_FLOW_ACTION));
-        Assert.assertNull(sessionMap.get(TestConstants.FLOW_SCOPE_KEY));
+        Assert.assertNull(sessionMap.get(FLOW_STATE_KEY));
         Assert.assertEquals(immutableValue, sessionMap.get(immutableValue));
     }
 
@@ -274,15 +270,27 @@ public class ActionFlowScopeTest extends
 
         Map<String, Object> sessionMap = new HashMap<String, Object>();
         sessionMap.put(immutableValue, immutableValue);
-        sessionMap.put(TestConstants.PREVIOUS_FLOW_ACTION, "savePhone-2");
-        sessionMap.put(TestConstants.HIGHEST_CURRENT_ACTION_INDEX, 3);
+        sessionMap.put(FLOW_STATE_KEY,
+                TestConstants.flowState(2, 3));
         ap.getInvocation().getInvocationContext().setSession(sessionMap);
 
         ap.execute();
 
-        Assert.assertEquals(null,
-                sessionMap.get(TestConstants.PREVIOUS_FLOW_ACTION));
-        Assert.assertNull(sessionMap.get(TestConstants.FLOW_SCOPE_KEY));
+        Assert.assertNull(sessionMap.get(FLOW_STATE_KEY));
         Assert.assertEquals(immutableValue, sessionMap.get(immutableValue));
     }
+
+    /**
+     * Gets ordinal of the 'phone' action flow scope field.
+     * 
+     * @param packageName
+     *            Name of the package.
+     * @return Ordinal of the field.
+     */
+    private int phoneOrdinal(final String packageName) {
+        return container.getInstance(ActionFlowConfigBuilder.class)
+                .getCompiledFlow(packageName)
+                .getScopeOrdinal(MockActionFlowAction
+                        .mockPropertyDescriptorPhone().getReadMethod());
+    }
 }
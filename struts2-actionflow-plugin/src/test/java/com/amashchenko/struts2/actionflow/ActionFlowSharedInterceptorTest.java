@@ -0,0 +1,152 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow;
+
+import javax.servlet.http.HttpSession;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpSession;
+
+import com.amashchenko.struts2.actionflow.entities.ActionFlowStatistics;
+import com.amashchenko.struts2.actionflow.test.ActionFlowTestCase;
+import com.amashchenko.struts2.actionflow.test.TestConstants;
+import com.opensymphony.xwork2.config.entities.ActionConfig;
+import com.opensymphony.xwork2.config.entities.InterceptorMapping;
+
+/**
+ * Tests for one action flow interceptor instance serving several packages.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+public class ActionFlowSharedInterceptorTest extends
+        ActionFlowTestCase<ActionFlowInterceptor> {
+
+    /** {@inheritDoc} */
+    @Override
+    protected String getConfigPath() {
+        return "struts-plugin.xml, struts-test.xml";
+    }
+
+    // packages inheriting actionFlowDefaultStack
+    @Test
+    public void testSharedInterceptor() throws Exception {
+        Assert.assertSame(findFlowInterceptor("/correctFlow", "next"),
+                findFlowInterceptor("/correctFlowAware", "next"));
+
+        // 3 steps flow
+        executeAction("/correctFlow/correctFlow");
+        initServletMockObjectsPreserveSession();
+        executeAction("/correctFlow/next");
+        Assert.assertEquals("saveName-1",
+                findValueAfterExecute(TestConstants.SESSION_PREVIOUS_FLOW_ACTION));
+
+        // 5 steps flow skipping the second step in the other session
+        initServletMockObjects();
+        request.setSession(new MockHttpSession(servletContext));
+        executeAction("/correctFlowAware/correctFlowAware");
+        for (int i = 0; i < 3; i++) {
+            initServletMockObjectsPreserveSession();
+            executeAction("/correctFlowAware/next");
+        }
+        Assert.assertEquals("saveAddress-4",
+                findValueAfterExecute(TestConstants.SESSION_PREVIOUS_FLOW_ACTION));
+        Assert.assertEquals("saveWebsite-5View",
+                findValueAfterExecute(ActionFlowInterceptor.VIEW_ACTION_PARAM));
+
+        // first flow is still intact
+        initServletMockObjects();
+        request.setSession(new MockHttpSession(servletContext));
+        executeAction("/correctFlow/correctFlow");
+        for (int i = 0; i < 3; i++) {
+            initServletMockObjectsPreserveSession();
+            executeAction("/correctFlow/next");
+        }
+        Assert.assertNull(request.getSession().getAttribute(
+                TestConstants.flowStateKey("correctFlow")));
+    }
+
+    // flows of two packages in one session keep separate states
+    @Test
+    public void testTwoPackagesInOneSession() throws Exception {
+        executeAction("/correctFlow/correctFlow");
+        initServletMockObjectsPreserveSession();
+        executeAction("/correctFlow/next");
+        Assert.assertEquals("saveName-1",
+                findValueAfterExecute(TestConstants.SESSION_PREVIOUS_FLOW_ACTION));
+
+        // start of the other flow doesn't clear the first one
+        initServletMockObjectsPreserveSession();
+        executeAction("/correctFlowAware/correctFlowAware");
+        for (int i = 0; i < 3; i++) {
+            initServletMockObjectsPreserveSession();
+            executeAction("/correctFlowAware/next");
+        }
+        Assert.assertEquals("saveAddress-4",
+                findValueAfterExecute(TestConstants.SESSION_PREVIOUS_FLOW_ACTION));
+
+        // first flow continues from its own step
+        initServletMockObjectsPreserveSession();
+        executeAction("/correctFlow/next");
+        Assert.assertEquals("savePhone-2",
+                findValueAfterExecute(TestConstants.SESSION_PREVIOUS_FLOW_ACTION));
+
+        final HttpSession session = request.getSession();
+        Assert.assertNotNull(session.getAttribute(TestConstants
+                .flowStateKey("correctFlow")));
+        Assert.assertNotNull(session.getAttribute(TestConstants
+                .flowStateKey("correctFlowAware")));
+    }
+
+    // one interceptor instance counts the flows of its packages separately
+    @Test
+    public void testStatisticsPerPackage() throws Exception {
+        final ActionFlowInterceptor interceptor = findFlowInterceptor(
+                "/correctFlow", "next");
+        final ActionFlowStatistics statistics = interceptor
+                .getStatistics("correctFlow");
+        final ActionFlowStatistics awareStatistics = interceptor
+                .getStatistics("correctFlowAware");
+        Assert.assertNotSame(statistics, awareStatistics);
+        Assert.assertSame(statistics, container
+                .getInstance(ActionFlowConfigBuilder.class)
+                .getCompiledFlow("correctFlow").getStatistics());
+
+        final long skipped = statistics.getSkippedSessionWrites();
+        final long awareSkipped = awareStatistics.getSkippedSessionWrites();
+
+        // start without stored state skips the write
+        executeAction("/correctFlow/correctFlow");
+
+        Assert.assertEquals(skipped + 1, statistics.getSkippedSessionWrites());
+        Assert.assertEquals(awareSkipped,
+                awareStatistics.getSkippedSessionWrites());
+    }
+
+    private ActionFlowInterceptor findFlowInterceptor(final String namespace,
+            final String actionName) {
+        final ActionConfig actionConfig = configuration
+                .getRuntimeConfiguration().getActionConfig(namespace,
+                        actionName);
+        for (InterceptorMapping im : actionConfig.getInterceptors()) {
+            if (im.getInterceptor() instanceof ActionFlowInterceptor) {
+                return (ActionFlowInterceptor) im.getInterceptor();
+            }
+        }
+        return null;
+    }
+}
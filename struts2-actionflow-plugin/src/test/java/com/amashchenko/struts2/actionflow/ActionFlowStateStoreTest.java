@@ -0,0 +1,317 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.http.Cookie;
+
+import org.apache.struts2.StrutsJUnit4TestCase;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockPageContext;
+
+import com.amashchenko.struts2.actionflow.entities.ActionFlowState;
+import com.amashchenko.struts2.actionflow.test.TestConstants;
+
+/**
+ * Tests for action flow state stores.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+public class ActionFlowStateStoreTest extends StrutsJUnit4TestCase<Object> {
+
+    /** Action context variable holding token of the token store. */
+    private static final String TOKEN_VAR = "#"
+            + TokenActionFlowStateStore.TOKEN_KEY;
+    /** Cookie holding token of the token store. */
+    private static final String TOKEN_COOKIE = TestConstants
+            .flowStateKey("correctFlowToken");
+
+    /** {@inheritDoc} */
+    @Override
+    protected String getConfigPath() {
+        return "struts-plugin.xml, struts-test.xml";
+    }
+
+    /**
+     * Tests that stores are registered in container.
+     * 
+     * @throws Exception
+     *             When something goes wrong.
+     */
+    @Test
+    public void testStoresRegistered() throws Exception {
+        Assert.assertTrue(container.getInstance(ActionFlowStateStore.class,
+                SessionActionFlowStateStore.NAME) instanceof SessionActionFlowStateStore);
+        Assert.assertTrue(container.getInstance(ActionFlowStateStore.class,
+                MemoryActionFlowStateStore.NAME) instanceof MemoryActionFlowStateStore);
+        Assert.assertTrue(container.getInstance(ActionFlowStateStore.class,
+                FileActionFlowStateStore.NAME) instanceof FileActionFlowStateStore);
+        Assert.assertTrue(container.getInstance(ActionFlowStateStore.class,
+                TokenActionFlowStateStore.NAME) instanceof TokenActionFlowStateStore);
+    }
+
+    /**
+     * Tests session store.
+     * 
+     * @throws Exception
+     *             When something goes wrong.
+     */
+    @Test
+    public void testSessionStore() throws Exception {
+        final ActionFlowStateStore store = new SessionActionFlowStateStore();
+        final Map<String, Object> session = new HashMap<String, Object>();
+
+        assertLoadStoreRemove(store, session);
+
+        session.put(TestConstants.FLOW_STATE_KEY, "notState");
+        Assert.assertNull(store.load(session, TestConstants.FLOW_STATE_KEY));
+    }
+
+    /**
+     * Tests memory store.
+     * 
+     * @throws Exception
+     *             When something goes wrong.
+     */
+    @Test
+    public void testMemoryStore() throws Exception {
+        final MemoryActionFlowStateStore store = new MemoryActionFlowStateStore();
+        final Map<String, Object> session = new HashMap<String, Object>();
+
+        assertLoadStoreRemove(store, session);
+
+        // only identifier is kept in session
+        Assert.assertFalse(session.containsKey(TestConstants.FLOW_STATE_KEY));
+        Assert.assertTrue(session
+                .containsKey(AbstractExternalActionFlowStateStore.STATE_ID_KEY));
+    }
+
+    /**
+     * Tests eviction of the least recently used states from memory store.
+     * 
+     * @throws Exception
+     *             When something goes wrong.
+     */
+    @Test
+    public void testMemoryStoreEviction() throws Exception {
+        final MemoryActionFlowStateStore store = new MemoryActionFlowStateStore();
+        store.setMaxStates("2");
+
+        final Map<String, Object> session1 = new HashMap<String, Object>();
+        final Map<String, Object> session2 = new HashMap<String, Object>();
+        final Map<String, Object> session3 = new HashMap<String, Object>();
+
+        store.store(session1, TestConstants.FLOW_STATE_KEY,
+                TestConstants.flowState(1, 1));
+        store.store(session2, TestConstants.FLOW_STATE_KEY,
+                TestConstants.flowState(2, 2));
+        // access first one, so second one is the least recently used
+        Assert.assertNotNull(store.load(session1, TestConstants.FLOW_STATE_KEY));
+        store.store(session3, TestConstants.FLOW_STATE_KEY,
+                TestConstants.flowState(3, 3));
+
+        Assert.assertEquals(2, store.size());
+        Assert.assertNotNull(store.load(session1, TestConstants.FLOW_STATE_KEY));
+        Assert.assertNull(store.load(session2, TestConstants.FLOW_STATE_KEY));
+        Assert.assertNotNull(store.load(session3, TestConstants.FLOW_STATE_KEY));
+    }
+
+    /**
+     * Tests removing of expired states from memory store.
+     * 
+     * @throws Exception
+     *             When something goes wrong.
+     */
+    @Test
+    public void testMemoryStoreRemoveExpired() throws Exception {
+        final MemoryActionFlowStateStore store = new MemoryActionFlowStateStore();
+        final Map<String, Object> session1 = new HashMap<String, Object>();
+        final Map<String, Object> session2 = new HashMap<String, Object>();
+
+        final ActionFlowState expired = TestConstants.flowState(1, 1);
+        expired.setExpiryTime(100);
+        store.store(session1, TestConstants.FLOW_STATE_KEY, expired);
+        store.store(session2, TestConstants.FLOW_STATE_KEY,
+                TestConstants.flowState(2, 2));
+
+        Assert.assertTrue(store.removeExpired(200) > 0);
+        Assert.assertEquals(1, store.size());
+        Assert.assertNull(store.load(session1, TestConstants.FLOW_STATE_KEY));
+        Assert.assertNotNull(store.load(session2, TestConstants.FLOW_STATE_KEY));
+        Assert.assertEquals(0, store.removeExpired(200));
+    }
+
+    /**
+     * Tests removing of expired states from file store.
+     * 
+     * @throws Exception
+     *             When something goes wrong.
+     */
+    @Test
+    public void testFileStoreRemoveExpired() throws Exception {
+        final File dir = File.createTempFile("actionflow", "");
+        Assert.assertTrue(dir.delete());
+
+        final FileActionFlowStateStore store = new FileActionFlowStateStore();
+        store.setDirectory(dir.getAbsolutePath());
+        final Map<String, Object> session1 = new HashMap<String, Object>();
+        final Map<String, Object> session2 = new HashMap<String, Object>();
+
+        try {
+            final ActionFlowState expired = TestConstants.flowState(1, 1);
+            expired.setExpiryTime(100);
+            store.store(session1, TestConstants.FLOW_STATE_KEY, expired);
+            store.store(session2, TestConstants.FLOW_STATE_KEY,
+                    TestConstants.flowState(2, 2));
+            final long length = store.stateFile(
+                    store.getStateId(session1, false) + "."
+                            + TestConstants.FLOW_STATE_KEY).length();
+
+            Assert.assertEquals(length, store.removeExpired(200));
+            Assert.assertEquals(1, dir.list().length);
+            Assert.assertNull(store.load(session1,
+                    TestConstants.FLOW_STATE_KEY));
+            Assert.assertNotNull(store.load(session2,
+                    TestConstants.FLOW_STATE_KEY));
+        } finally {
+            store.remove(session2, TestConstants.FLOW_STATE_KEY);
+            dir.delete();
+        }
+    }
+
+    /**
+     * Tests file store.
+     * 
+     * @throws Exception
+     *             When something goes wrong.
+     */
+    @Test
+    public void testFileStore() throws Exception {
+        final File dir = File.createTempFile("actionflow", "");
+        Assert.assertTrue(dir.delete());
+
+        final FileActionFlowStateStore store = new FileActionFlowStateStore();
+        store.setDirectory(dir.getAbsolutePath());
+        final Map<String, Object> session = new HashMap<String, Object>();
+
+        try {
+            final ActionFlowState state = TestConstants.flowState(1, 2);
+            state.setScopeValue(0, "value");
+            store.store(session, TestConstants.FLOW_STATE_KEY, state);
+
+            // state is read from file, not the same instance
+            final ActionFlowState loaded = store.load(session,
+                    TestConstants.FLOW_STATE_KEY);
+            Assert.assertNotSame(state, loaded);
+            Assert.assertEquals(1, loaded.getPreviousAction());
+            Assert.assertEquals(2, loaded.getHighestCurrentIndex());
+            Assert.assertEquals("value", loaded.getScopeValue(0));
+            Assert.assertEquals(1, dir.list().length);
+
+            store.remove(session, TestConstants.FLOW_STATE_KEY);
+            Assert.assertNull(store.load(session, TestConstants.FLOW_STATE_KEY));
+            Assert.assertEquals(0, dir.list().length);
+        } finally {
+            dir.delete();
+        }
+    }
+
+    /**
+     * Tests flow with token store, every request is made without session.
+     * 
+     * @throws Exception
+     *             When something goes wrong.
+     */
+    @Test
+    public void testTokenStoreFlow() throws Exception {
+        executeAction("/correctFlowToken/correctFlowToken");
+
+        // saveName-1
+        initServletMockObjectsWithoutSession();
+        request.setParameter("phone", "123");
+        executeAction("/correctFlowToken/next");
+        Assert.assertEquals("saveName-1",
+                findValueAfterExecute(TestConstants.SESSION_PREVIOUS_FLOW_ACTION));
+        final String token = (String) findValueAfterExecute(TOKEN_VAR);
+        Assert.assertNotNull(token);
+        Assert.assertEquals(token,
+                response.getCookie(TOKEN_COOKIE).getValue());
+        Assert.assertNull(request.getSession(false));
+
+        // view action after the redirect has only the cookie, form gets token
+        initServletMockObjectsWithoutSession();
+        request.setCookies(new Cookie[] { new Cookie(TOKEN_COOKIE, token) });
+        executeAction("/correctFlowToken/savePhone-2View");
+        Assert.assertEquals(token, findValueAfterExecute(TOKEN_VAR));
+        Assert.assertNull(request.getSession(false));
+
+        // savePhone-2 with token in step parameter, phone from token
+        initServletMockObjectsWithoutSession();
+        request.setParameter("step", token);
+        executeAction("/correctFlowToken/next");
+        Assert.assertEquals("savePhone-2",
+                findValueAfterExecute(TestConstants.SESSION_PREVIOUS_FLOW_ACTION));
+        Assert.assertEquals("123", findValueAfterExecute("phone"));
+        final String token2 = (String) findValueAfterExecute(TOKEN_VAR);
+        Assert.assertNull(request.getSession(false));
+
+        // saveEmail-3 with token in cookie, last action clears cookie
+        initServletMockObjectsWithoutSession();
+        request.setCookies(new Cookie[] { new Cookie(
+                TOKEN_COOKIE, token2) });
+        executeAction("/correctFlowToken/next");
+        Assert.assertNull(findValueAfterExecute(TestConstants.SESSION_PREVIOUS_FLOW_ACTION));
+        Assert.assertNull(findValueAfterExecute(TOKEN_VAR));
+        Assert.assertEquals(0,
+                response.getCookie(TOKEN_COOKIE).getMaxAge());
+
+        // changed token is ignored, flow starts from the first action
+        initServletMockObjectsWithoutSession();
+        request.setParameter("step", token2.substring(1));
+        executeAction("/correctFlowToken/next");
+        Assert.assertEquals("saveName-1",
+                findValueAfterExecute(TestConstants.SESSION_PREVIOUS_FLOW_ACTION));
+    }
+
+    /** Initializes servlet mock objects for request without session. */
+    private void initServletMockObjectsWithoutSession() {
+        response = new MockHttpServletResponse();
+        request = new MockHttpServletRequest();
+        pageContext = new MockPageContext(servletContext, request, response);
+    }
+
+    private void assertLoadStoreRemove(final ActionFlowStateStore store,
+            final Map<String, Object> session) {
+        Assert.assertNull(store.load(session, TestConstants.FLOW_STATE_KEY));
+        // removing of nothing
+        store.remove(session, TestConstants.FLOW_STATE_KEY);
+
+        final ActionFlowState state = TestConstants.flowState(1, 2);
+        store.store(session, TestConstants.FLOW_STATE_KEY, state);
+        Assert.assertSame(state,
+                store.load(session, TestConstants.FLOW_STATE_KEY));
+
+        store.remove(session, TestConstants.FLOW_STATE_KEY);
+        Assert.assertNull(store.load(session, TestConstants.FLOW_STATE_KEY));
+    }
+}
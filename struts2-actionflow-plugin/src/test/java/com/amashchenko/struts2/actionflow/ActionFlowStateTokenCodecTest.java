@@ -0,0 +1,168 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.amashchenko.struts2.actionflow.entities.ActionFlowState;
+import com.amashchenko.struts2.actionflow.test.TestConstants;
+
+/**
+ * Tests for action flow state token codec.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+public class ActionFlowStateTokenCodecTest {
+
+    /** Secret for tests. */
+    private static final byte[] SECRET = "test-secret".getBytes();
+    /** Key of action flow state for tests. */
+    private static final String KEY = TestConstants
+            .flowStateKey("correctFlowToken");
+
+    /**
+     * Tests encoding and decoding of the state.
+     * 
+     * @throws Exception
+     *             When something goes wrong.
+     */
+    @Test
+    public void testEncodeDecode() throws Exception {
+        final ActionFlowStateTokenCodec codec = new ActionFlowStateTokenCodec(
+                SECRET, true, true);
+
+        final ActionFlowState state = TestConstants.flowState(2, 3);
+        state.setSkipAction(3, 1);
+        state.setScopeValue(1, "value");
+
+        final String token = codec.encode(KEY, state);
+        Assert.assertTrue(token.matches("[A-Za-z0-9_-]+"));
+
+        final ActionFlowState decoded = codec.decode(KEY, token);
+        Assert.assertNotNull(decoded);
+        Assert.assertEquals(2, decoded.getPreviousAction());
+        Assert.assertEquals(3, decoded.getHighestCurrentIndex());
+        Assert.assertEquals(1, decoded.getSkipAction(3));
+        Assert.assertEquals("value", decoded.getScopeValue(1));
+        Assert.assertFalse(decoded.isModified());
+    }
+
+    /**
+     * Tests that changed or foreign tokens are rejected.
+     * 
+     * @throws Exception
+     *             When something goes wrong.
+     */
+    @Test
+    public void testDecodeNotValid() throws Exception {
+        final ActionFlowStateTokenCodec codec = new ActionFlowStateTokenCodec(
+                SECRET, true, true);
+        final String token = codec.encode(KEY, TestConstants.flowState(2, 3));
+
+        // changed character
+        final char c = token.charAt(5) == 'A' ? 'B' : 'A';
+        Assert.assertNull(codec.decode(KEY, token.substring(0, 5) + c
+                + token.substring(6)));
+        // truncated
+        Assert.assertNull(codec.decode(KEY,
+                token.substring(0, token.length() - 1)));
+        // not Base64url
+        Assert.assertNull(codec.decode(KEY, token + "="));
+        Assert.assertNull(codec.decode(KEY, "saveName-1"));
+        Assert.assertNull(codec.decode(KEY, ""));
+        Assert.assertNull(codec.decode(KEY, null));
+
+        // signed with other secret
+        Assert.assertNull(new ActionFlowStateTokenCodec("other".getBytes(),
+                true, true).decode(KEY, token));
+    }
+
+    /**
+     * Tests that token of another package or flow instance is rejected.
+     * 
+     * @throws Exception
+     *             When something goes wrong.
+     */
+    @Test
+    public void testDecodeOtherKey() throws Exception {
+        final ActionFlowStateTokenCodec codec = new ActionFlowStateTokenCodec(
+                SECRET, true, true);
+        final ActionFlowState state = TestConstants.flowState(2, 3);
+        state.setScopeValue(0, "value");
+        final String token = codec.encode(KEY, state);
+
+        Assert.assertNotNull(codec.decode(KEY, token));
+        // other package
+        Assert.assertNull(codec.decode(
+                TestConstants.flowStateKey("correctFlow"), token));
+        // other flow instance of the same package
+        Assert.assertNull(codec.decode(KEY + ".instance", token));
+    }
+
+    /**
+     * Tests compression and leaving out of scope values.
+     * 
+     * @throws Exception
+     *             When something goes wrong.
+     */
+    @Test
+    public void testCompressAndScopeValues() throws Exception {
+        final ActionFlowState state = TestConstants.flowState(2, 3);
+        for (int i = 0; i < 10; i++) {
+            state.setScopeValue(i, "value value value " + i);
+        }
+
+        final String plain = new ActionFlowStateTokenCodec(SECRET, false,
+                true).encode(KEY, state);
+        final ActionFlowStateTokenCodec codec = new ActionFlowStateTokenCodec(
+                SECRET, true, true);
+        final String compressed = codec.encode(KEY, state);
+        Assert.assertTrue(compressed.length() < plain.length());
+        Assert.assertEquals("value value value 9",
+                codec.decode(KEY, compressed).getScopeValue(9));
+
+        final ActionFlowStateTokenCodec noScopeCodec = new ActionFlowStateTokenCodec(
+                SECRET, true, false);
+        final ActionFlowState decoded = noScopeCodec.decode(KEY, noScopeCodec
+                .encode(KEY, state));
+        Assert.assertEquals(2, decoded.getPreviousAction());
+        Assert.assertNull(decoded.getScopeValue(0));
+    }
+
+    /**
+     * Tests Base64url encoding of all lengths remainders.
+     * 
+     * @throws Exception
+     *             When something goes wrong.
+     */
+    @Test
+    public void testBase64() throws Exception {
+        for (int length = 0; length < 10; length++) {
+            final byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = (byte) (i * 97 - 128);
+            }
+            final String encoded = ActionFlowStateTokenCodec
+                    .encodeBase64(bytes);
+            Assert.assertArrayEquals(bytes,
+                    ActionFlowStateTokenCodec.decodeBase64(encoded));
+        }
+        Assert.assertEquals("-_8", ActionFlowStateTokenCodec
+                .encodeBase64(new byte[] { (byte) 0xfb, (byte) 0xff }));
+    }
+}
@@ -15,17 +15,16 @@
  */
 package com.amashchenko.struts2.actionflow;
 
-import javax.servlet.http.HttpSession;
+import java.util.HashMap;
+import java.util.Map;
 
-import org.apache.struts2.StrutsJUnit4TestCase;
 import org.junit.Assert;
 import org.junit.Test;
-import org.springframework.mock.web.MockHttpServletRequest;
-import org.springframework.mock.web.MockHttpServletResponse;
-import org.springframework.mock.web.MockPageContext;
-import org.springframework.mock.web.MockServletContext;
 
+import com.amashchenko.struts2.actionflow.test.ActionFlowTestCase;
 import com.amashchenko.struts2.actionflow.test.TestConstants;
+import com.opensymphony.xwork2.Action;
+import com.opensymphony.xwork2.ActionProxy;
 
 /**
  * Tests for forcing order of flow actions.
@@ -34,7 +33,14 @@ import com.amashchenko.struts2.actionflow.test.TestConstants;
  * 
  */
 public class ActionFlowStepParameterTest extends
-        StrutsJUnit4TestCase<ActionFlowInterceptor> {
+        ActionFlowTestCase<ActionFlowInterceptor> {
+
+    /** Session key of action flow state of the tested package. */
+    private static final String FLOW_STATE_KEY = TestConstants
+            .flowStateKey("correctFlow");
+    /** Expression for getting current highest action index from session. */
+    private static final String SESSION_HIGHEST_CURRENT_ACTION_INDEX = TestConstants
+            .sessionHighestCurrentActionIndex("correctFlow");
 
     /** {@inheritDoc} */
     @Override
@@ -42,22 +48,6 @@ public class ActionFlowStepParameterTest extends
         return "struts-plugin.xml, struts-test.xml";
     }
 
-    /** Initializes servlet mock objects but preserves session. */
-    private void initServletMockObjectsPreserveSession() {
-        servletContext = new MockServletContext(resourceLoader);
-        response = new MockHttpServletResponse();
-
-        // preserve session
-        HttpSession session = null;
-        if (request != null && request.getSession() != null) {
-            session = request.getSession();
-        }
-        request = new MockHttpServletRequest();
-        request.setSession(session);
-
-        pageContext = new MockPageContext(servletContext, request, response);
-    }
-
     // next, step from saveName-1 to savePhone-2
     @Test
     public void testChangingStepParam() throws Exception {
@@ -183,12 +173,12 @@ public class ActionFlowStepParameterTest extends
         executeAction("/correctFlow/correctFlow");
         initServletMockObjectsPreserveSession();
         executeAction("/correctFlow/next");
-        Integer highestCurrentIndex = (Integer) findValueAfterExecute(TestConstants.SESSION_HIGHEST_CURRENT_ACTION_INDEX);
+        Integer highestCurrentIndex = (Integer) findValueAfterExecute(SESSION_HIGHEST_CURRENT_ACTION_INDEX);
         Assert.assertEquals(new Integer(1), highestCurrentIndex);
 
         initServletMockObjectsPreserveSession();
         executeAction("/correctFlow/next");
-        highestCurrentIndex = (Integer) findValueAfterExecute(TestConstants.SESSION_HIGHEST_CURRENT_ACTION_INDEX);
+        highestCurrentIndex = (Integer) findValueAfterExecute(SESSION_HIGHEST_CURRENT_ACTION_INDEX);
         Assert.assertEquals(new Integer(2), highestCurrentIndex);
     }
 
@@ -199,26 +189,46 @@ public class ActionFlowStepParameterTest extends
         // for input result
         request.setParameter("date", "wrong-date-format");
         executeAction("/correctFlow/next");
-        Integer highestCurrentIndex = (Integer) findValueAfterExecute(TestConstants.SESSION_HIGHEST_CURRENT_ACTION_INDEX);
+        Integer highestCurrentIndex = (Integer) findValueAfterExecute(SESSION_HIGHEST_CURRENT_ACTION_INDEX);
         Assert.assertEquals(null, highestCurrentIndex);
     }
 
+    @Test
+    public void testInputDoesNotPutState() throws Exception {
+        // for input result
+        request.setParameter("date", "wrong-date-format");
+
+        ActionProxy ap = getActionProxy("/correctFlow/saveName-1");
+        final ActionFlowInterceptor interceptor = (ActionFlowInterceptor) ap
+                .getConfig().getInterceptors().get(0).getInterceptor();
+        final long skipped = interceptor.getStatistics("correctFlow")
+                .getSkippedSessionWrites();
+
+        final Map<String, Object> sessionMap = new HashMap<String, Object>();
+        ap.getInvocation().getInvocationContext().setSession(sessionMap);
+
+        Assert.assertEquals(Action.INPUT, ap.execute());
+        Assert.assertEquals(skipped + 1, interceptor
+                .getStatistics("correctFlow").getSkippedSessionWrites());
+        Assert.assertFalse(sessionMap.containsKey(FLOW_STATE_KEY));
+    }
+
     @Test
     public void testHighestCurrentActionIndexAndPrev() throws Exception {
         executeAction("/correctFlow/correctFlow");
         initServletMockObjectsPreserveSession();
         executeAction("/correctFlow/next");
-        Integer highestCurrentIndex = (Integer) findValueAfterExecute(TestConstants.SESSION_HIGHEST_CURRENT_ACTION_INDEX);
+        Integer highestCurrentIndex = (Integer) findValueAfterExecute(SESSION_HIGHEST_CURRENT_ACTION_INDEX);
         Assert.assertEquals(new Integer(1), highestCurrentIndex);
 
         initServletMockObjectsPreserveSession();
         executeAction("/correctFlow/prev");
-        highestCurrentIndex = (Integer) findValueAfterExecute(TestConstants.SESSION_HIGHEST_CURRENT_ACTION_INDEX);
+        highestCurrentIndex = (Integer) findValueAfterExecute(SESSION_HIGHEST_CURRENT_ACTION_INDEX);
         Assert.assertEquals(new Integer(1), highestCurrentIndex);
 
         initServletMockObjectsPreserveSession();
         executeAction("/correctFlow/next");
-        highestCurrentIndex = (Integer) findValueAfterExecute(TestConstants.SESSION_HIGHEST_CURRENT_ACTION_INDEX);
+        highestCurrentIndex = (Integer) findValueAfterExecute(SESSION_HIGHEST_CURRENT_ACTION_INDEX);
         Assert.assertEquals(new Integer(1), highestCurrentIndex);
     }
 }
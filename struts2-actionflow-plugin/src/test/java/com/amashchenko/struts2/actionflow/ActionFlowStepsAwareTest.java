@@ -22,6 +22,8 @@ import org.apache.struts2.StrutsJUnit4TestCase;
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.amashchenko.struts2.actionflow.entities.ActionFlowState;
+import com.amashchenko.struts2.actionflow.entities.ActionFlowStepsData;
 import com.amashchenko.struts2.actionflow.mock.MockActionFlowAction;
 import com.amashchenko.struts2.actionflow.test.TestConstants;
 import com.opensymphony.xwork2.Action;
@@ -36,6 +38,10 @@ import com.opensymphony.xwork2.ActionProxy;
 public class ActionFlowStepsAwareTest extends
         StrutsJUnit4TestCase<MockActionFlowAction> {
 
+    /** Session key of action flow state of the tested package. */
+    private static final String FLOW_STATE_KEY = TestConstants
+            .flowStateKey("correctFlow");
+
     /** {@inheritDoc} */
     @Override
     protected String getConfigPath() {
@@ -67,6 +73,75 @@ public class ActionFlowStepsAwareTest extends
         Assert.assertEquals(stepCount, action.getStepsData().getStepIndex());
     }
 
+    @Test
+    public void testBypassNotActionFlowAction() throws Exception {
+        ActionProxy ap = getActionProxy("/correctFlowBypass/finish");
+
+        Assert.assertNotNull(ap);
+        Assert.assertNotNull(ap.getAction());
+        Assert.assertTrue(ap.getAction() instanceof MockActionFlowAction);
+
+        MockActionFlowAction action = (MockActionFlowAction) ap.getAction();
+
+        Map<String, Object> sessionMap = new HashMap<String, Object>();
+        final ActionFlowState state = TestConstants.flowState(1, 0);
+        sessionMap.put(FLOW_STATE_KEY, state);
+        ap.getInvocation().getInvocationContext().setSession(sessionMap);
+
+        ap.execute();
+
+        // invoked without action flow
+        Assert.assertNull(action.getStepsData());
+        Assert.assertSame(state, sessionMap.get(FLOW_STATE_KEY));
+        Assert.assertEquals(1, state.getPreviousAction());
+    }
+
+    @Test
+    public void testBypassActionFlowAction() throws Exception {
+        ActionProxy ap = getActionProxy("/correctFlowBypass/savePhone-2View");
+
+        Assert.assertNotNull(ap);
+        Assert.assertNotNull(ap.getAction());
+        Assert.assertTrue(ap.getAction() instanceof MockActionFlowAction);
+
+        MockActionFlowAction action = (MockActionFlowAction) ap.getAction();
+
+        ap.getInvocation().getInvocationContext()
+                .setSession(new HashMap<String, Object>());
+
+        ap.execute();
+
+        Assert.assertNotNull(action.getStepsData());
+        Assert.assertEquals(Integer.valueOf(2), action.getStepsData()
+                .getStepIndex());
+    }
+
+    @Test
+    public void testStepsDataShared() throws Exception {
+        final ActionFlowStepsData[] stepsData = new ActionFlowStepsData[2];
+        for (int i = 0; i < stepsData.length; i++) {
+            ActionProxy ap = getActionProxy("/correctFlow/savePhone-2View");
+            ap.getInvocation().getInvocationContext()
+                    .setSession(new HashMap<String, Object>());
+
+            ap.execute();
+            initServletMockObjects();
+
+            stepsData[i] = ((MockActionFlowAction) ap.getAction())
+                    .getStepsData();
+        }
+
+        Assert.assertNotNull(stepsData[0]);
+        Assert.assertSame(stepsData[0], stepsData[1]);
+
+        try {
+            stepsData[0].getSteps().put(1, "notFlowAction");
+            Assert.fail("Steps must not be modifiable.");
+        } catch (UnsupportedOperationException e) {
+            Assert.assertEquals("saveName-1", stepsData[0].getSteps().get(1));
+        }
+    }
+
     @Test
     public void testActionFlowAction() throws Exception {
         executeAction("/correctFlow/correctFlow");
@@ -113,8 +188,8 @@ public class ActionFlowStepsAwareTest extends
         MockActionFlowAction action = (MockActionFlowAction) ap.getAction();
 
         Map<String, Object> sessionMap = new HashMap<String, Object>();
-        sessionMap.put(TestConstants.PREVIOUS_FLOW_ACTION, "saveName-1");
-        sessionMap.put(TestConstants.HIGHEST_CURRENT_ACTION_INDEX, 3);
+        sessionMap.put(FLOW_STATE_KEY,
+                TestConstants.flowState(1, 3));
         ap.getInvocation().getInvocationContext().setSession(sessionMap);
 
         String resultCode = ap.execute();
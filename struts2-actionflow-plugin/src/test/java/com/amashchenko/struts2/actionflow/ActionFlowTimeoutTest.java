@@ -0,0 +1,149 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.amashchenko.struts2.actionflow.entities.ActionFlowState;
+import com.amashchenko.struts2.actionflow.test.ActionFlowTestCase;
+import com.amashchenko.struts2.actionflow.test.TestConstants;
+
+/**
+ * Tests for expiry of abandoned action flow state.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+public class ActionFlowTimeoutTest extends
+        ActionFlowTestCase<ActionFlowInterceptor> {
+
+    /** Session key of action flow state of the package with timeout. */
+    private static final String TIMEOUT_FLOW_STATE_KEY = TestConstants
+            .flowStateKey("correctFlowTimeout");
+
+    /** {@inheritDoc} */
+    @Override
+    protected String getConfigPath() {
+        return "struts-plugin.xml, struts-test.xml";
+    }
+
+    // expired state is removed on access
+    @Test
+    public void testExpiredOnAccess() throws Exception {
+        executeAction("/correctFlowTimeout/correctFlowTimeout");
+        initServletMockObjectsPreserveSession();
+        executeAction("/correctFlowTimeout/next");
+        Assert.assertEquals("saveName-1",
+                findValueAfterExecute(TestConstants.SESSION_PREVIOUS_FLOW_ACTION));
+
+        final ActionFlowState state = (ActionFlowState) request.getSession()
+                .getAttribute(TIMEOUT_FLOW_STATE_KEY);
+        final long now = System.currentTimeMillis();
+        Assert.assertTrue(state.getExpiryTime() > now + 500 * 1000L);
+        Assert.assertTrue(state.getExpiryTime() <= now + 600 * 1000L);
+
+        // not expired yet
+        initServletMockObjectsPreserveSession();
+        executeAction("/correctFlowTimeout/next");
+        Assert.assertEquals("savePhone-2",
+                findValueAfterExecute(TestConstants.SESSION_PREVIOUS_FLOW_ACTION));
+
+        // abandoned
+        ((ActionFlowState) request.getSession().getAttribute(
+                TIMEOUT_FLOW_STATE_KEY)).setExpiryTime(now - 1);
+        initServletMockObjectsPreserveSession();
+        executeAction("/correctFlowTimeout/next");
+        Assert.assertEquals("saveName-1",
+                findValueAfterExecute(TestConstants.SESSION_PREVIOUS_FLOW_ACTION));
+    }
+
+    // view action of an active user prolongs the state
+    @Test
+    public void testProlongedOnAccess() throws Exception {
+        executeAction("/correctFlowTimeout/correctFlowTimeout");
+        initServletMockObjectsPreserveSession();
+        executeAction("/correctFlowTimeout/next");
+
+        final long now = System.currentTimeMillis();
+        ((ActionFlowState) request.getSession().getAttribute(
+                TIMEOUT_FLOW_STATE_KEY)).setExpiryTime(now + 100 * 1000L);
+
+        initServletMockObjectsPreserveSession();
+        executeAction("/correctFlowTimeout/savePhone-2View");
+
+        final ActionFlowState state = (ActionFlowState) request.getSession()
+                .getAttribute(TIMEOUT_FLOW_STATE_KEY);
+        Assert.assertTrue(state.getExpiryTime() > now + 500 * 1000L);
+        Assert.assertEquals(1, state.getPreviousAction());
+    }
+
+    // state doesn't expire without timeout
+    @Test
+    public void testNoTimeout() throws Exception {
+        executeAction("/correctFlow/correctFlow");
+        initServletMockObjectsPreserveSession();
+        executeAction("/correctFlow/next");
+
+        Assert.assertEquals(0, ((ActionFlowState) request.getSession()
+                .getAttribute(TestConstants.flowStateKey("correctFlow")))
+                .getExpiryTime());
+    }
+
+    // reaper sweeps registered stores
+    @Test
+    public void testReaperSweep() throws Exception {
+        final ActionFlowStateReaper reaper = new ActionFlowStateReaper();
+        reaper.setInterval("0");
+        final MemoryActionFlowStateStore store = new MemoryActionFlowStateStore();
+        reaper.register(store);
+
+        final Map<String, Object> session = new HashMap<String, Object>();
+        final ActionFlowState state = TestConstants.flowState(1, 1);
+        state.setScopeValue(0, "value");
+        state.setExpiryTime(1);
+        store.store(session, TestConstants.FLOW_STATE_KEY, state);
+
+        final long bytes = reaper.sweep();
+        Assert.assertTrue(bytes > 0);
+        Assert.assertEquals(bytes, reaper.getLastReclaimedBytes());
+        Assert.assertEquals(0, store.size());
+
+        Assert.assertEquals(0, reaper.sweep());
+        Assert.assertEquals(0, reaper.getLastReclaimedBytes());
+        Assert.assertEquals(bytes, reaper.getReclaimedBytes());
+        reaper.shutdown();
+    }
+
+    // reaper keeps sweeping until all registrations are released
+    @Test
+    public void testReaperUnregister() throws Exception {
+        final ActionFlowStateReaper reaper = new ActionFlowStateReaper();
+        final MemoryActionFlowStateStore store = new MemoryActionFlowStateStore();
+        reaper.register(store);
+        reaper.register(store);
+        Assert.assertTrue(reaper.isRunning());
+
+        reaper.unregister(store);
+        Assert.assertTrue(reaper.isRunning());
+
+        reaper.unregister(store);
+        Assert.assertFalse(reaper.isRunning());
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow;
+
+import java.util.HashMap;
+
+import org.apache.struts2.StrutsStatics;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.amashchenko.struts2.actionflow.test.ActionFlowTestCase;
+import com.amashchenko.struts2.actionflow.test.TestConstants;
+import com.opensymphony.xwork2.ActionContext;
+import com.opensymphony.xwork2.mock.MockActionInvocation;
+
+/**
+ * Tests for the precompiled action flow view result.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+public class ActionFlowViewResultTest extends
+        ActionFlowTestCase<ActionFlowInterceptor> {
+
+    /** {@inheritDoc} */
+    @Override
+    protected String getConfigPath() {
+        return "struts-plugin.xml, struts-test.xml";
+    }
+
+    // next, wrong order, next
+    @Test
+    public void testRedirectToViewAction() throws Exception {
+        executeAction("/correctFlowViewResult/correctFlowViewResult");
+        initServletMockObjectsPreserveSession();
+        executeAction("/correctFlowViewResult/next");
+        Assert.assertEquals("saveName-1",
+                findValueAfterExecute(TestConstants.SESSION_PREVIOUS_FLOW_ACTION));
+        Assert.assertEquals("/correctFlowViewResult/savePhone-2View.action",
+                response.getRedirectedUrl());
+        // nothing is put onto value stack
+        Assert.assertNull(findValueAfterExecute(ActionFlowInterceptor.VIEW_ACTION_PARAM));
+
+        // wrong order
+        initServletMockObjectsPreserveSession();
+        executeAction("/correctFlowViewResult/saveEmail-3");
+        Assert.assertEquals("/correctFlowViewResult/savePhone-2View.action",
+                response.getRedirectedUrl());
+
+        initServletMockObjectsPreserveSession();
+        executeAction("/correctFlowViewResult/next");
+        Assert.assertEquals("/correctFlowViewResult/saveEmail-3View.action",
+                response.getRedirectedUrl());
+    }
+
+    // context path and action flow instance
+    @Test
+    public void testLocation() throws Exception {
+        final MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setContextPath("/app");
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+
+        final ActionContext context = new ActionContext(
+                new HashMap<String, Object>());
+        context.put(StrutsStatics.HTTP_REQUEST, request);
+        context.put(StrutsStatics.HTTP_RESPONSE, response);
+        context.put(ActionFlowInterceptor.VIEW_URI_KEY, "/flow/stepView.action");
+        context.put(ActionFlowInterceptor.FLOW_INSTANCE_PARAM, "a b");
+
+        final MockActionInvocation invocation = new MockActionInvocation();
+        invocation.setInvocationContext(context);
+
+        new ActionFlowViewResult().execute(invocation);
+        Assert.assertEquals(
+                "/app/flow/stepView.action?actionFlowInstance=a+b",
+                response.getRedirectedUrl());
+    }
+}
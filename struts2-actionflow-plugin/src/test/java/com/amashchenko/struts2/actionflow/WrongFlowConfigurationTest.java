@@ -61,7 +61,8 @@ public class WrongFlowConfigurationTest extends StrutsJUnit4TestCase<Object> {
                 { "/wrongPrevParam/wrongPrevParam" },
                 { "/prevNoSuccess/prevNoSuccess" },
                 { "/wrongViewResultType/wrongViewResultType" },
-                { "/wrongViewResultParam/wrongViewResultParam" }, };
+                { "/wrongViewResultParam/wrongViewResultParam" },
+                { "/wrongFlowStep/wrongFlowStep" }, };
         return Arrays.asList(data);
     }
 
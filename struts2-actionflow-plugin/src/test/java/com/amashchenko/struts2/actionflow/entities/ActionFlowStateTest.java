@@ -0,0 +1,147 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow.entities;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ActionFlowStateTest {
+    /**
+     * Tests marking action flow state as modified.
+     * 
+     * @throws Exception
+     *             when something goes wrong.
+     */
+    @Test
+    public void testModified() throws Exception {
+        ActionFlowState state = new ActionFlowState();
+        Assert.assertFalse(state.isModified());
+
+        // same values
+        state.setPreviousAction(ActionFlowState.NO_ACTION);
+        state.setHighestCurrentIndex(0);
+        state.setOverrideAction(ActionFlowState.NO_ACTION);
+        state.setSkipAction(1, ActionFlowState.NO_ACTION);
+        state.setScopeValue(0, null);
+        Assert.assertFalse(state.isModified());
+
+        state.setPreviousAction(1);
+        Assert.assertTrue(state.isModified());
+
+        state.setModified(false);
+        state.setPreviousAction(1);
+        Assert.assertFalse(state.isModified());
+
+        state.setHighestCurrentIndex(1);
+        Assert.assertTrue(state.isModified());
+
+        state.setModified(false);
+        state.setScopeValue(2, "value");
+        Assert.assertTrue(state.isModified());
+
+        state.setModified(false);
+        state.setScopeValue(2, new String("value"));
+        Assert.assertFalse(state.isModified());
+
+        state.setExpiryTime(100);
+        Assert.assertTrue(state.isModified());
+    }
+
+    /**
+     * Tests action flow scope slots.
+     * 
+     * @throws Exception
+     *             when something goes wrong.
+     */
+    @Test
+    public void testScopeCapacity() throws Exception {
+        ActionFlowState state = new ActionFlowState();
+        Assert.assertFalse(state.hasScopeValues());
+
+        state.ensureScopeCapacity(3);
+        Assert.assertFalse(state.isModified());
+        Assert.assertFalse(state.hasScopeValues());
+        Assert.assertNull(state.getScopeValue(2));
+
+        state.setScopeValue(2, "value");
+        Assert.assertTrue(state.hasScopeValues());
+
+        // never shrinks
+        state.ensureScopeCapacity(1);
+        Assert.assertEquals("value", state.getScopeValue(2));
+        state.setScopeValue(5, "value5");
+        Assert.assertEquals("value5", state.getScopeValue(5));
+    }
+
+    /**
+     * Tests expiry of action flow state.
+     * 
+     * @throws Exception
+     *             when something goes wrong.
+     */
+    @Test
+    public void testExpired() throws Exception {
+        ActionFlowState state = new ActionFlowState();
+        Assert.assertFalse(state.isExpired(Long.MAX_VALUE));
+
+        state.setExpiryTime(100);
+        Assert.assertFalse(state.isExpired(99));
+        Assert.assertTrue(state.isExpired(100));
+    }
+
+    /**
+     * Tests writing and reading action flow state.
+     * 
+     * @throws Exception
+     *             when something goes wrong.
+     */
+    @Test
+    public void testExternalizable() throws Exception {
+        ActionFlowState state = new ActionFlowState();
+        state.setPreviousAction(2);
+        state.setHighestCurrentIndex(3);
+        state.setSkipAction(3, 1);
+        state.setOverrideAction(1);
+        state.setScopeValue(1, "value");
+        state.setExpiryTime(100);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(state);
+        out.close();
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(
+                bytes.toByteArray()));
+        ActionFlowState state2 = (ActionFlowState) in.readObject();
+        in.close();
+
+        Assert.assertNotSame(state, state2);
+        Assert.assertFalse(state2.isModified());
+        Assert.assertEquals(2, state2.getPreviousAction());
+        Assert.assertEquals(3, state2.getHighestCurrentIndex());
+        Assert.assertEquals(1, state2.getSkipAction(3));
+        Assert.assertEquals(ActionFlowState.NO_ACTION, state2.getSkipAction(2));
+        Assert.assertEquals(1, state2.getOverrideAction());
+        Assert.assertEquals("value", state2.getScopeValue(1));
+        Assert.assertNull(state2.getScopeValue(0));
+        Assert.assertEquals(100, state2.getExpiryTime());
+    }
+}
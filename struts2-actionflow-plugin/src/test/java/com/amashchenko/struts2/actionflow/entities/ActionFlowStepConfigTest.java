@@ -110,7 +110,7 @@ public class ActionFlowStepConfigTest {
         ActionFlowStepConfig stepConfig = stepConfigBuilder.build();
 
         Assert.assertEquals(
-                "{ActionFlowStepConfig index:0, nextAction:next, prevAction:prev}",
+                "{ActionFlowStepConfig index:0, nextAction:next, prevAction:prev, viewAction:null, viewUri:null}",
                 stepConfig.toString());
     }
 
@@ -182,5 +182,34 @@ public class ActionFlowStepConfigTest {
                 stepConfig);
         stepConfig2 = stepConfigBuilder6.nextAction(null).build();
         Assert.assertNotEquals(stepConfig2, stepConfig);
+
+        ActionFlowStepConfig.Builder stepConfigBuilder7 = new ActionFlowStepConfig.Builder(
+                stepConfig);
+        stepConfig2 = stepConfigBuilder7.viewAction("view").build();
+        Assert.assertNotEquals(stepConfig, stepConfig2);
+
+        ActionFlowStepConfig.Builder stepConfigBuilder8 = new ActionFlowStepConfig.Builder(
+                stepConfig);
+        stepConfig2 = stepConfigBuilder8.viewUri("/view").build();
+        Assert.assertNotEquals(stepConfig, stepConfig2);
+    }
+
+    /**
+     * Tests view action name which is copied on clone.
+     * 
+     * @throws Exception
+     *             when something goes wrong.
+     */
+    @Test
+    public void testViewAction() throws Exception {
+        ActionFlowStepConfig stepConfig = new ActionFlowStepConfig.Builder(1,
+                "next", "prev").viewAction("currentView").build();
+
+        Assert.assertEquals("currentView", stepConfig.getViewAction());
+
+        ActionFlowStepConfig stepConfig2 = new ActionFlowStepConfig.Builder(
+                stepConfig).build();
+
+        Assert.assertEquals("currentView", stepConfig2.getViewAction());
     }
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow.entities;
+
+import java.beans.PropertyDescriptor;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.amashchenko.struts2.actionflow.mock.MockActionFlowAction;
+
+public class MethodHandleScopeCopierTest {
+    /**
+     * Tests reading and writing values of the fields.
+     * 
+     * @throws Exception
+     *             when something goes wrong.
+     */
+    @Test
+    public void testReadWrite() throws Exception {
+        final MethodHandleScopeCopier copier = new MethodHandleScopeCopier(
+                Collections.singletonList(MockActionFlowAction
+                        .mockPropertyDescriptorPhone()));
+        Assert.assertArrayEquals(
+                new String[] { MockActionFlowAction.class.getName()
+                        + ".getPhone" }, copier.getScopeKeys());
+
+        final MockActionFlowAction action = new MockActionFlowAction();
+        final Object[] values = new Object[1];
+        copier.read(action, values);
+        Assert.assertNull(values[0]);
+
+        copier.write(action, new Object[] { "value" });
+        Assert.assertEquals("value", action.getPhone());
+
+        // null values are skipped
+        copier.write(action, new Object[] { null });
+        Assert.assertEquals("value", action.getPhone());
+
+        copier.read(action, values);
+        Assert.assertEquals("value", values[0]);
+    }
+
+    /**
+     * Tests fields of primitive type.
+     * 
+     * @throws Exception
+     *             when something goes wrong.
+     */
+    @Test
+    public void testPrimitive() throws Exception {
+        final MethodHandleScopeCopier copier = new MethodHandleScopeCopier(
+                Arrays.asList(new PropertyDescriptor("count",
+                        PrimitiveAction.class), new PropertyDescriptor(
+                        "name", PrimitiveAction.class)));
+
+        final PrimitiveAction action = new PrimitiveAction();
+        copier.write(action, new Object[] { Integer.valueOf(5), "name" });
+        Assert.assertEquals(5, action.getCount());
+
+        final Object[] values = new Object[2];
+        copier.read(action, values);
+        Assert.assertArrayEquals(new Object[] { Integer.valueOf(5), "name" },
+                values);
+    }
+
+    /**
+     * Tests writing value of wrong type.
+     * 
+     * @throws Exception
+     *             when something goes wrong.
+     */
+    @Test(expected = ClassCastException.class)
+    public void testWrongType() throws Exception {
+        final MethodHandleScopeCopier copier = new MethodHandleScopeCopier(
+                Collections.singletonList(MockActionFlowAction
+                        .mockPropertyDescriptorPhone()));
+        copier.write(new MockActionFlowAction(),
+                new Object[] { Integer.valueOf(5) });
+    }
+
+    public static class PrimitiveAction {
+        private int count;
+        private String name;
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+}
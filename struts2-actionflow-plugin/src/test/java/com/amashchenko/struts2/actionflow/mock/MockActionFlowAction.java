@@ -55,6 +55,9 @@ public class MockActionFlowAction extends ActionSupport implements
     /** Date. */
     private Date date;
 
+    /** Items. */
+    private List<String> items;
+
     /**
      * Creates map action flow scope fields map for this mock action class.
      * 
@@ -95,6 +98,21 @@ public class MockActionFlowAction extends ActionSupport implements
         this.phone = phone;
     }
 
+    /**
+     * @return the items
+     */
+    public List<String> getItems() {
+        return items;
+    }
+
+    /**
+     * @param items
+     *            the items to set
+     */
+    public void setItems(List<String> items) {
+        this.items = items;
+    }
+
     /**
      * @return the date
      */
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow.mock;
+
+import com.amashchenko.struts2.actionflow.ActionFlowScope;
+import com.opensymphony.xwork2.ActionSupport;
+
+/**
+ * Mock action having action flow scope copier.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+@ActionFlowScope
+public class MockCopiedAction extends ActionSupport {
+
+    /** Serial version uid. */
+    private static final long serialVersionUID = 1L;
+
+    /** Name field. */
+    @ActionFlowScope
+    private String name;
+
+    /**
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param name
+     *            the name to set
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+}
@@ -0,0 +1,32 @@
+package com.amashchenko.struts2.actionflow.mock;
+
+/**
+ * Action flow scope copier of {@link com.amashchenko.struts2.actionflow.mock.MockCopiedAction}.
+ * Generated by com.amashchenko.struts2.actionflow.processor.ActionFlowScopeProcessor, do not edit.
+ */
+@SuppressWarnings({ "unchecked", "rawtypes" })
+public final class MockCopiedAction_ActionFlowScopeCopier implements com.amashchenko.struts2.actionflow.ActionFlowScopeCopier {
+
+    private static final String[] SCOPE_KEYS = { "com.amashchenko.struts2.actionflow.mock.MockCopiedAction.getName" };
+
+    @Override
+    public String[] getScopeKeys() {
+        return SCOPE_KEYS.clone();
+    }
+
+    @Override
+    public void read(final Object action, final Object[] values)
+            throws Exception {
+        final com.amashchenko.struts2.actionflow.mock.MockCopiedAction a = (com.amashchenko.struts2.actionflow.mock.MockCopiedAction) action;
+        values[0] = a.getName();
+    }
+
+    @Override
+    public void write(final Object action, final Object[] values)
+            throws Exception {
+        final com.amashchenko.struts2.actionflow.mock.MockCopiedAction a = (com.amashchenko.struts2.actionflow.mock.MockCopiedAction) action;
+        if (values[0] != null) {
+            a.setName((java.lang.String) values[0]);
+        }
+    }
+}
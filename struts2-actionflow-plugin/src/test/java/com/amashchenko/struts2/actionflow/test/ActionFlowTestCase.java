@@ -0,0 +1,51 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow.test;
+
+import javax.servlet.http.HttpSession;
+
+import org.apache.struts2.StrutsJUnit4TestCase;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockPageContext;
+import org.springframework.mock.web.MockServletContext;
+
+/**
+ * Base class for tests executing several actions of the flow in one session.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ * @param <T>
+ *            type of the tested object.
+ */
+public abstract class ActionFlowTestCase<T> extends StrutsJUnit4TestCase<T> {
+
+    /** Initializes servlet mock objects but preserves session. */
+    protected void initServletMockObjectsPreserveSession() {
+        servletContext = new MockServletContext(resourceLoader);
+        response = new MockHttpServletResponse();
+
+        // preserve session
+        HttpSession session = null;
+        if (request != null && request.getSession() != null) {
+            session = request.getSession();
+        }
+        request = new MockHttpServletRequest();
+        request.setSession(session);
+
+        pageContext = new MockPageContext(servletContext, request, response);
+    }
+}
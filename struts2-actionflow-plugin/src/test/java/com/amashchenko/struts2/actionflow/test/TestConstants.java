@@ -15,6 +15,8 @@
  */
 package com.amashchenko.struts2.actionflow.test;
 
+import com.amashchenko.struts2.actionflow.entities.ActionFlowState;
+
 /**
  * Utility class for test constants.
  * 
@@ -22,23 +24,49 @@ package com.amashchenko.struts2.actionflow.test;
  * 
  */
 public class TestConstants {
-    /** Key for previous flow action. */
-    public static final String PREVIOUS_FLOW_ACTION = "actionFlowPreviousAction";
-    /** Expression for getting previous flow action from session. */
-    public static final String SESSION_PREVIOUS_FLOW_ACTION = "#session['"
-            + PREVIOUS_FLOW_ACTION + "']";
-
-    public static final String FLOW_SCOPE_KEY = "actionFlowScope";
-    public static final String FLOW_SCOPE_FIELD_NAME = "flowScopeFields";
-
-    /** Key for holding in session current highest action index. */
-    public static final String HIGHEST_CURRENT_ACTION_INDEX = "actionFlowHighestCurrentActionIndex";
+    /** Key for action flow state. */
+    public static final String FLOW_STATE_KEY = "actionFlowState";
+    /** Expression for getting previous flow action from action context. */
+    public static final String SESSION_PREVIOUS_FLOW_ACTION = "#actionFlowPreviousAction";
 
-    /** Expression for getting current highest action index from session. */
-    public static final String SESSION_HIGHEST_CURRENT_ACTION_INDEX = "#session['"
-            + HIGHEST_CURRENT_ACTION_INDEX + "']";
+    /**
+     * Gets the session key of action flow state of the package.
+     * 
+     * @param packageName
+     *            name of the action flow package.
+     * @return Key of action flow state.
+     */
+    public static String flowStateKey(final String packageName) {
+        return FLOW_STATE_KEY + "." + packageName;
+    }
 
-    public static final String SKIP_ACTIONS = "actionFlowSkipActionsMap";
+    /**
+     * Gets expression for getting current highest action index from session.
+     * 
+     * @param packageName
+     *            name of the action flow package.
+     * @return Expression for getting current highest action index.
+     */
+    public static String sessionHighestCurrentActionIndex(
+            final String packageName) {
+        return "#session['" + flowStateKey(packageName)
+                + "'].highestCurrentIndex";
+    }
 
-    public static final String OVERRIDE_ACTION_NAME = "actionFlowOverrideActionName";
+    /**
+     * Creates action flow state.
+     * 
+     * @param previousAction
+     *            step index of the previous flow action.
+     * @param highestCurrentIndex
+     *            highest index of the executed flow action.
+     * @return action flow state.
+     */
+    public static ActionFlowState flowState(final int previousAction,
+            final int highestCurrentIndex) {
+        final ActionFlowState state = new ActionFlowState();
+        state.setPreviousAction(previousAction);
+        state.setHighestCurrentIndex(highestCurrentIndex);
+        return state;
+    }
 }
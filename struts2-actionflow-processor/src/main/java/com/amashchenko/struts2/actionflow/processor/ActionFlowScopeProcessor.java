@@ -0,0 +1,475 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generates action flow scope copiers of the action classes annotated with
+ * <code>@ActionFlowScope</code>, so the plugin doesn't have to introspect them
+ * and call their accessors reflectively. The copier calls getters and setters
+ * of the annotated fields directly. Fields are found the same way the plugin
+ * does it at runtime: the field must be annotated and must have public getter
+ * and setter declared below <code>ActionSupport</code>.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+@SupportedAnnotationTypes(ActionFlowScopeProcessor.ACTION_FLOW_SCOPE)
+public class ActionFlowScopeProcessor extends AbstractProcessor {
+
+    /** Action flow scope annotation. */
+    static final String ACTION_FLOW_SCOPE = "com.amashchenko.struts2.actionflow.ActionFlowScope";
+
+    /** Interface implemented by the generated copiers. */
+    static final String COPIER_INTERFACE = "com.amashchenko.struts2.actionflow.ActionFlowScopeCopier";
+
+    /** Postfix of the generated copier class name. */
+    static final String CLASS_POSTFIX = "_ActionFlowScopeCopier";
+
+    /** Properties of this class and its super classes are not looked at. */
+    private static final String STOP_CLASS = "com.opensymphony.xwork2.ActionSupport";
+
+    /** {@inheritDoc} */
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations,
+            final RoundEnvironment roundEnv) {
+        final TypeElement annotation = processingEnv.getElementUtils()
+                .getTypeElement(ACTION_FLOW_SCOPE);
+        if (annotation != null) {
+            // full rebuilds of the incremental compilation pass previously
+            // generated copiers as sources, they cannot be created again
+            final Set<String> sources = new HashSet<String>();
+            for (TypeElement element : ElementFilter.typesIn(roundEnv
+                    .getRootElements())) {
+                sources.add(element.getQualifiedName().toString());
+            }
+
+            for (Element element : roundEnv
+                    .getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() == ElementKind.CLASS) {
+                    generateCopier((TypeElement) element, sources);
+                }
+            }
+        }
+        // other processors may be interested in the annotation too
+        return false;
+    }
+
+    /**
+     * Generates copier of the action class.
+     * 
+     * @param type
+     *            action class.
+     * @param sources
+     *            names of the classes compiled from sources.
+     */
+    private void generateCopier(final TypeElement type,
+            final Set<String> sources) {
+        if (type.getModifiers().contains(Modifier.ABSTRACT)
+                || sources.contains(copierName(type))) {
+            return;
+        }
+        if (!isAccessible(type)) {
+            processingEnv.getMessager().printMessage(
+                    Diagnostic.Kind.NOTE,
+                    "Action flow scope copier isn't generated for not accessible class, "
+                            + "its fields are accessed reflectively.", type);
+            return;
+        }
+
+        final List<ScopeField> fields = new ArrayList<ScopeField>();
+        for (Map.Entry<String, VariableElement> entry : findFields(type)
+                .entrySet()) {
+            if (isScopeField(entry.getValue())) {
+                final ScopeField field = findAccessors(type, entry.getKey());
+                if (field == null) {
+                    processingEnv.getMessager().printMessage(
+                            Diagnostic.Kind.WARNING,
+                            "Action flow scope field '" + entry.getKey()
+                                    + "' has no public getter and setter.",
+                            entry.getValue());
+                } else {
+                    fields.add(field);
+                }
+            }
+        }
+
+        try {
+            writeCopier(type, fields);
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Cannot write action flow scope copier: " + e, type);
+        }
+    }
+
+    /**
+     * Checks whether the class can be used from the generated copier in the
+     * same package.
+     * 
+     * @param type
+     *            action class.
+     * @return <code>true</code> if the class is accessible.
+     */
+    private boolean isAccessible(final TypeElement type) {
+        Element element = type;
+        while (element.getKind().isClass()) {
+            if (element.getModifiers().contains(Modifier.PRIVATE)) {
+                return false;
+            }
+            final Element enclosing = element.getEnclosingElement();
+            if (enclosing.getKind().isClass()
+                    && !element.getModifiers().contains(Modifier.STATIC)) {
+                return false;
+            }
+            element = enclosing;
+        }
+        return true;
+    }
+
+    /**
+     * Finds fields of the class and its super classes. Same as the plugin
+     * does, the field of the class hides the field with the same name of the
+     * super class.
+     * 
+     * @param type
+     *            action class.
+     * @return Map of the fields, where key is the name of the field.
+     */
+    private Map<String, VariableElement> findFields(final TypeElement type) {
+        final Map<String, VariableElement> fields = new LinkedHashMap<String, VariableElement>();
+        TypeElement current = type;
+        while (current != null
+                && !STOP_CLASS.contentEquals(current.getQualifiedName())
+                && !Object.class.getName().contentEquals(
+                        current.getQualifiedName())) {
+            for (VariableElement field : ElementFilter.fieldsIn(current
+                    .getEnclosedElements())) {
+                final String name = field.getSimpleName().toString();
+                if (!fields.containsKey(name)) {
+                    fields.put(name, field);
+                }
+            }
+
+            final TypeMirror superclass = current.getSuperclass();
+            current = superclass.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) superclass)
+                    .asElement() : null;
+        }
+        return fields;
+    }
+
+    /**
+     * Checks whether the field is annotated with action flow scope annotation.
+     * 
+     * @param field
+     *            field of the action class.
+     * @return <code>true</code> if the field is annotated.
+     */
+    private boolean isScopeField(final VariableElement field) {
+        for (AnnotationMirror mirror : field.getAnnotationMirrors()) {
+            if (ACTION_FLOW_SCOPE.contentEquals(((TypeElement) mirror
+                    .getAnnotationType().asElement()).getQualifiedName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds public getter and setter of the property the same way
+     * <code>java.beans.Introspector</code> does.
+     * 
+     * @param type
+     *            action class.
+     * @param property
+     *            name of the property.
+     * @return Scope field or <code>null</code> if the property doesn't have
+     *         getter or setter.
+     */
+    private ScopeField findAccessors(final TypeElement type,
+            final String property) {
+        final DeclaredType declared = (DeclaredType) type.asType();
+
+        ExecutableElement getter = null;
+        TypeMirror propertyType = null;
+        final List<ExecutableElement> setters = new ArrayList<ExecutableElement>();
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv
+                .getElementUtils().getAllMembers(type))) {
+            final Set<Modifier> modifiers = method.getModifiers();
+            final TypeElement owner = (TypeElement) method
+                    .getEnclosingElement();
+            if (!modifiers.contains(Modifier.PUBLIC)
+                    || modifiers.contains(Modifier.STATIC)
+                    || STOP_CLASS.contentEquals(owner.getQualifiedName())
+                    || Object.class.getName().contentEquals(
+                            owner.getQualifiedName())) {
+                continue;
+            }
+
+            final String name = method.getSimpleName().toString();
+            final ExecutableType methodType = (ExecutableType) processingEnv
+                    .getTypeUtils().asMemberOf(declared, method);
+            final List<? extends TypeMirror> params = methodType
+                    .getParameterTypes();
+            final TypeMirror returnType = methodType.getReturnType();
+
+            if (params.isEmpty()
+                    && name.startsWith("is")
+                    && returnType.getKind() == TypeKind.BOOLEAN
+                    && property.equals(decapitalize(name.substring(2)))) {
+                // is getter is preferred for boolean properties
+                getter = method;
+                propertyType = returnType;
+            } else if (params.isEmpty() && name.startsWith("get")
+                    && returnType.getKind() != TypeKind.VOID
+                    && property.equals(decapitalize(name.substring(3)))
+                    && (getter == null || !getter.getSimpleName()
+                            .toString().startsWith("is"))) {
+                getter = method;
+                propertyType = returnType;
+            } else if (params.size() == 1 && name.startsWith("set")
+                    && returnType.getKind() == TypeKind.VOID
+                    && property.equals(decapitalize(name.substring(3)))) {
+                setters.add(method);
+            }
+        }
+
+        if (getter != null) {
+            for (ExecutableElement setter : setters) {
+                final ExecutableType setterType = (ExecutableType) processingEnv
+                        .getTypeUtils().asMemberOf(declared, setter);
+                if (processingEnv.getTypeUtils().isSameType(propertyType,
+                        setterType.getParameterTypes().get(0))) {
+                    return new ScopeField(binaryName(getter) + "."
+                            + getter.getSimpleName(), getter.getSimpleName()
+                            .toString(), setter.getSimpleName().toString(),
+                            castType(propertyType));
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Same as <code>java.beans.Introspector#decapitalize(String)</code>.
+     * 
+     * @param name
+     *            name to decapitalize.
+     * @return Decapitalized name.
+     */
+    static String decapitalize(final String name) {
+        if (name.length() == 0) {
+            return name;
+        }
+        if (name.length() > 1 && Character.isUpperCase(name.charAt(1))
+                && Character.isUpperCase(name.charAt(0))) {
+            return name;
+        }
+        return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+    }
+
+    /**
+     * Gets binary name of the class declaring the method.
+     * 
+     * @param method
+     *            getter method.
+     * @return Binary name of the class, as returned by
+     *         {@link Class#getName()}.
+     */
+    private String binaryName(final ExecutableElement method) {
+        return processingEnv.getElementUtils()
+                .getBinaryName((TypeElement) method.getEnclosingElement())
+                .toString();
+    }
+
+    /**
+     * Gets type to cast the value of the field to.
+     * 
+     * @param propertyType
+     *            type of the property.
+     * @return Name of the type.
+     */
+    private String castType(final TypeMirror propertyType) {
+        if (propertyType.getKind().isPrimitive()) {
+            return processingEnv.getTypeUtils()
+                    .boxedClass((PrimitiveType) propertyType)
+                    .getQualifiedName().toString();
+        }
+        return processingEnv.getTypeUtils().erasure(propertyType).toString();
+    }
+
+    /**
+     * Gets name of the copier of the action class.
+     * 
+     * @param type
+     *            action class.
+     * @return Qualified name of the copier class.
+     */
+    private String copierName(final TypeElement type) {
+        return processingEnv.getElementUtils().getBinaryName(type)
+                + CLASS_POSTFIX;
+    }
+
+    /**
+     * Writes source of the copier.
+     * 
+     * @param type
+     *            action class.
+     * @param fields
+     *            scope fields of the action class.
+     * @throws IOException
+     *             when source cannot be written.
+     */
+    private void writeCopier(final TypeElement type,
+            final List<ScopeField> fields) throws IOException {
+        final PackageElement pkg = processingEnv.getElementUtils()
+                .getPackageOf(type);
+        final String packageName = pkg.isUnnamed() ? "" : pkg
+                .getQualifiedName().toString();
+        final String copierName = copierName(type);
+        final String simpleName = packageName.isEmpty() ? copierName
+                : copierName.substring(packageName.length() + 1);
+        final String actionType = type.getQualifiedName().toString();
+
+        final StringBuilder src = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            src.append("package ").append(packageName).append(";\n\n");
+        }
+        src.append("/**\n * Action flow scope copier of {@link ")
+                .append(actionType)
+                .append("}.\n * Generated by ")
+                .append(ActionFlowScopeProcessor.class.getName())
+                .append(", do not edit.\n */\n");
+        src.append("@SuppressWarnings({ \"unchecked\", \"rawtypes\" })\n");
+        src.append("public final class ").append(simpleName)
+                .append(" implements ").append(COPIER_INTERFACE)
+                .append(" {\n\n");
+
+        src.append("    private static final String[] SCOPE_KEYS = {");
+        for (int i = 0; i < fields.size(); i++) {
+            src.append(i == 0 ? " \"" : ", \"").append(fields.get(i).key)
+                    .append('"');
+        }
+        src.append(" };\n\n");
+
+        src.append("    @Override\n");
+        src.append("    public String[] getScopeKeys() {\n");
+        src.append("        return SCOPE_KEYS.clone();\n");
+        src.append("    }\n\n");
+
+        src.append("    @Override\n");
+        src.append("    public void read(final Object action, final Object[] values)\n");
+        src.append("            throws Exception {\n");
+        src.append("        final ").append(actionType).append(" a = (")
+                .append(actionType).append(") action;\n");
+        for (int i = 0; i < fields.size(); i++) {
+            src.append("        values[").append(i).append("] = a.")
+                    .append(fields.get(i).getter).append("();\n");
+        }
+        src.append("    }\n\n");
+
+        src.append("    @Override\n");
+        src.append("    public void write(final Object action, final Object[] values)\n");
+        src.append("            throws Exception {\n");
+        src.append("        final ").append(actionType).append(" a = (")
+                .append(actionType).append(") action;\n");
+        for (int i = 0; i < fields.size(); i++) {
+            final ScopeField field = fields.get(i);
+            src.append("        if (values[").append(i)
+                    .append("] != null) {\n");
+            src.append("            a.").append(field.setter).append("((")
+                    .append(field.type).append(") values[").append(i)
+                    .append("]);\n");
+            src.append("        }\n");
+        }
+        src.append("    }\n");
+        src.append("}\n");
+
+        final JavaFileObject file = processingEnv.getFiler().createSourceFile(
+                copierName, type);
+        final Writer writer = file.openWriter();
+        try {
+            writer.write(src.toString());
+        } finally {
+            writer.close();
+        }
+    }
+
+    /** Action flow scope field of the generated copier. */
+    private static final class ScopeField {
+        /** Key of the field. */
+        private final String key;
+        /** Name of the getter. */
+        private final String getter;
+        /** Name of the setter. */
+        private final String setter;
+        /** Type to cast value to. */
+        private final String type;
+
+        /**
+         * 
+         * @param key
+         *            key of the field.
+         * @param getter
+         *            name of the getter.
+         * @param setter
+         *            name of the setter.
+         * @param type
+         *            type to cast value to.
+         */
+        private ScopeField(final String key, final String getter,
+                final String setter, final String type) {
+            this.key = key;
+            this.getter = getter;
+            this.setter = setter;
+            this.type = type;
+        }
+    }
+}
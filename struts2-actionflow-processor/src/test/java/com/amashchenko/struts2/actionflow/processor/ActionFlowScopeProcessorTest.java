@@ -0,0 +1,275 @@
+/*
+ * Copyright 2013-2015 Aleksandr Mashchenko.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amashchenko.struts2.actionflow.processor;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amashchenko.struts2.actionflow.ActionFlowScopeCopier;
+import com.opensymphony.xwork2.ActionSupport;
+
+/**
+ * Tests for action flow scope processor.
+ * 
+ * @author Aleksandr Mashchenko
+ * 
+ */
+public class ActionFlowScopeProcessorTest {
+
+    /** Test sources of the plugin, having the copier of the mock action. */
+    private static final File PLUGIN_TEST_SOURCES = new File(
+            "../struts2-actionflow-plugin/src/test/java");
+
+    /** Mock action of the plugin tests. */
+    private static final String MOCK_ACTION = "com.amashchenko.struts2.actionflow.mock.MockCopiedAction";
+
+    /** Compiled classes and generated sources. */
+    private File outputDir;
+
+    /** Diagnostics of the last compilation. */
+    private DiagnosticCollector<JavaFileObject> diagnostics;
+
+    @Before
+    public void setUp() throws Exception {
+        outputDir = File.createTempFile("actionflow", "");
+        Assert.assertTrue(outputDir.delete());
+        Assert.assertTrue(outputDir.mkdirs());
+    }
+
+    /**
+     * Compiles sources with the processor.
+     * 
+     * @param sources
+     *            sources, where even elements are class names and odd are
+     *            class sources.
+     * @return Class loader of the compiled classes.
+     * @throws IOException
+     *             when something goes wrong.
+     */
+    private ClassLoader compile(final String... sources) throws IOException {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        diagnostics = new DiagnosticCollector<JavaFileObject>();
+        final StandardJavaFileManager fileManager = compiler
+                .getStandardFileManager(diagnostics, null, null);
+
+        final JavaFileObject[] units = new JavaFileObject[sources.length / 2];
+        for (int i = 0; i < units.length; i++) {
+            final String source = sources[i * 2 + 1];
+            units[i] = new SimpleJavaFileObject(
+                    java.net.URI.create("string:///"
+                            + sources[i * 2].replace('.', '/') + ".java"),
+                    JavaFileObject.Kind.SOURCE) {
+                @Override
+                public CharSequence getCharContent(boolean ignoreErrors) {
+                    return source;
+                }
+            };
+        }
+
+        final String classpath = classpath(ActionFlowScopeCopier.class)
+                + File.pathSeparator + classpath(ActionSupport.class);
+        final List<String> options = Arrays.asList("-d", outputDir.getPath(),
+                "-s", outputDir.getPath(), "-classpath", classpath);
+
+        final JavaCompiler.CompilationTask task = compiler.getTask(null,
+                fileManager, diagnostics, options, null, Arrays.asList(units));
+        task.setProcessors(Collections
+                .singletonList(new ActionFlowScopeProcessor()));
+        final boolean success = task.call();
+        fileManager.close();
+        Assert.assertTrue(diagnostics.getDiagnostics().toString(), success);
+
+        return new URLClassLoader(new URL[] { outputDir.toURI().toURL() },
+                getClass().getClassLoader());
+    }
+
+    private String classpath(final Class<?> clazz) {
+        return new File(clazz.getProtectionDomain().getCodeSource()
+                .getLocation().getPath()).getPath();
+    }
+
+    private String read(final File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()),
+                Charset.forName("UTF-8"));
+    }
+
+    private ActionFlowScopeCopier copier(final ClassLoader loader,
+            final String actionClassName) throws Exception {
+        return (ActionFlowScopeCopier) loader.loadClass(
+                actionClassName + ActionFlowScopeProcessor.CLASS_POSTFIX)
+                .newInstance();
+    }
+
+    private boolean hasWarning() {
+        for (Diagnostic<? extends JavaFileObject> d : diagnostics
+                .getDiagnostics()) {
+            if (d.getKind() == Diagnostic.Kind.WARNING) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testCopier() throws Exception {
+        final ClassLoader loader = compile(
+                "example.FlowAction",
+                "package example;\n"
+                        + "import com.amashchenko.struts2.actionflow.ActionFlowScope;\n"
+                        + "@ActionFlowScope\n"
+                        + "public class FlowAction {\n"
+                        + "    @ActionFlowScope private String name;\n"
+                        + "    @ActionFlowScope private int count;\n"
+                        + "    @ActionFlowScope private java.util.List<String> items;\n"
+                        + "    private String other;\n"
+                        + "    public String getName() { return name; }\n"
+                        + "    public void setName(String name) { this.name = name; }\n"
+                        + "    public int getCount() { return count; }\n"
+                        + "    public void setCount(int count) { this.count = count; }\n"
+                        + "    public java.util.List<String> getItems() { return items; }\n"
+                        + "    public void setItems(java.util.List<String> items) { this.items = items; }\n"
+                        + "    public String getOther() { return other; }\n"
+                        + "    public void setOther(String other) { this.other = other; }\n"
+                        + "}\n");
+        Assert.assertFalse(hasWarning());
+
+        final ActionFlowScopeCopier copier = copier(loader,
+                "example.FlowAction");
+        Assert.assertArrayEquals(new String[] { "example.FlowAction.getName",
+                "example.FlowAction.getCount", "example.FlowAction.getItems" },
+                copier.getScopeKeys());
+
+        final Object action = loader.loadClass("example.FlowAction")
+                .newInstance();
+        copier.write(action, new Object[] { "name", Integer.valueOf(3),
+                Arrays.asList("item") });
+
+        final Object[] values = new Object[3];
+        copier.read(action, values);
+        Assert.assertArrayEquals(new Object[] { "name", Integer.valueOf(3),
+                Arrays.asList("item") }, values);
+
+        // null values are skipped
+        copier.write(action, new Object[3]);
+        copier.read(action, values);
+        Assert.assertEquals("name", values[0]);
+    }
+
+    @Test
+    public void testInheritedFields() throws Exception {
+        final ClassLoader loader = compile(
+                "example.BaseAction",
+                "package example;\n"
+                        + "import com.amashchenko.struts2.actionflow.ActionFlowScope;\n"
+                        + "public class BaseAction<T> {\n"
+                        + "    @ActionFlowScope private T value;\n"
+                        + "    @ActionFlowScope private boolean done;\n"
+                        + "    public T getValue() { return value; }\n"
+                        + "    public void setValue(T value) { this.value = value; }\n"
+                        + "    public boolean isDone() { return done; }\n"
+                        + "    public void setDone(boolean done) { this.done = done; }\n"
+                        + "}\n",
+                "example.Outer",
+                "package example;\n"
+                        + "import com.amashchenko.struts2.actionflow.ActionFlowScope;\n"
+                        + "public class Outer {\n"
+                        + "    @ActionFlowScope\n"
+                        + "    public static class Inner extends BaseAction<String> {\n"
+                        + "    }\n"
+                        + "    @ActionFlowScope\n"
+                        + "    private static class Hidden {\n"
+                        + "    }\n"
+                        + "}\n");
+
+        final ActionFlowScopeCopier copier = copier(loader,
+                "example.Outer$Inner");
+        Assert.assertArrayEquals(new String[] { "example.BaseAction.getValue",
+                "example.BaseAction.isDone" }, copier.getScopeKeys());
+
+        final Object action = loader.loadClass("example.Outer$Inner")
+                .newInstance();
+        copier.write(action, new Object[] { "value", Boolean.TRUE });
+        final Object[] values = new Object[2];
+        copier.read(action, values);
+        Assert.assertArrayEquals(new Object[] { "value", Boolean.TRUE },
+                values);
+
+        // private class is left to reflection
+        try {
+            copier(loader, "example.Outer$Hidden");
+            Assert.fail();
+        } catch (ClassNotFoundException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testFieldWithoutSetter() throws Exception {
+        final ClassLoader loader = compile(
+                "example.ReadOnlyAction",
+                "package example;\n"
+                        + "import com.amashchenko.struts2.actionflow.ActionFlowScope;\n"
+                        + "@ActionFlowScope\n"
+                        + "public class ReadOnlyAction {\n"
+                        + "    @ActionFlowScope private String name;\n"
+                        + "    public String getName() { return name; }\n"
+                        + "}\n");
+        Assert.assertTrue(hasWarning());
+        Assert.assertEquals(0, copier(loader, "example.ReadOnlyAction")
+                .getScopeKeys().length);
+    }
+
+    // copier used by the plugin tests is the output of the processor
+    @Test
+    public void testPluginTestCopier() throws Exception {
+        final String path = MOCK_ACTION.replace('.', File.separatorChar);
+        compile(MOCK_ACTION, read(new File(PLUGIN_TEST_SOURCES, path
+                + ".java")));
+
+        Assert.assertEquals(read(new File(outputDir, path
+                + ActionFlowScopeProcessor.CLASS_POSTFIX + ".java")),
+                read(new File(PLUGIN_TEST_SOURCES, path
+                        + ActionFlowScopeProcessor.CLASS_POSTFIX + ".java")));
+    }
+
+    @Test
+    public void testDecapitalize() throws Exception {
+        Assert.assertEquals("name", ActionFlowScopeProcessor.decapitalize("Name"));
+        Assert.assertEquals("URL", ActionFlowScopeProcessor.decapitalize("URL"));
+        Assert.assertEquals("xCoord",
+                ActionFlowScopeProcessor.decapitalize("xCoord"));
+        Assert.assertEquals("", ActionFlowScopeProcessor.decapitalize(""));
+    }
+}
@@ -5,7 +5,7 @@
 <s:include value="steps.jsp"/>
 
 <s:form action="nextAction">
-	<s:hidden name="step" value="%{#session['actionFlowPreviousAction']}"/>
+	<s:hidden name="step" value="%{#actionFlowPreviousAction}"/>
 
 	<s:textfield key="name" label="Name" />
 	
@@ -21,7 +21,7 @@
     <i>Form:</i>
 <pre>
 &lt;s:form action="nextAction"&gt;
-    &lt;s:hidden name="step" value="%{#session['actionFlowPreviousAction']}" /&gt;
+    &lt;s:hidden name="step" value="%{#actionFlowPreviousAction}" /&gt;
 
     &lt;s:textfield key="name" label="Name" /&gt;
 